@@ -0,0 +1,88 @@
+package com.agung.restful;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Second-level cache Hibernate (JCache, Caffeine) untuk Contact, Address, User, Contact.addresses dan query cache.
+ * <p>
+ * Semua region dibuat di sini dengan ukuran maksimal dan ttl, region yang tidak terdaftar membuat startup gagal
+ * (missing_cache_strategy=fail) supaya tidak ada cache tanpa batas. Cache ada di memori tiap node: penulisan lewat
+ * Hibernate di node ini langsung terlihat, penulisan dari node lain baru terlihat setelah ttl habis.
+ */
+@Configuration
+public class SecondLevelCacheConfiguration {
+
+    public static final String CONTACT = "contact";
+
+    public static final String ADDRESS = "address";
+
+    public static final String USER = "user";
+
+    public static final String CONTACT_ADDRESSES = "contact.addresses";
+
+    private static final List<String> REGIONS = List.of(CONTACT, ADDRESS, USER, CONTACT_ADDRESSES,
+            RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME);
+
+    @Value("${app.second-level-cache.maximum-size:10000}")
+    private long maximumSize;
+
+    @Value("${app.second-level-cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    // satu CacheManager per application context, test yang membuat beberapa context tidak berbagi region
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(MeterRegistry meterRegistry) {
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("hibernate-" + UUID.randomUUID()), getClass().getClassLoader());
+        for (String region : REGIONS) {
+            CaffeineConfiguration<Object, Object> configuration = configuration();
+            configuration.setMaximumSize(OptionalLong.of(maximumSize));
+            configuration.setExpireAfterWrite(OptionalLong.of(TimeUnit.SECONDS.toNanos(ttlSeconds)));
+            bind(cacheManager.createCache(region, configuration), meterRegistry);
+        }
+        // timestamp terakhir tiap tabel ditulis, penentu query cache masih valid; tidak boleh hilang lebih dulu
+        bind(cacheManager.createCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME,
+                configuration()), meterRegistry);
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCache(CacheManager hibernateCacheManager) {
+        return properties -> {
+            properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+        };
+    }
+
+    private static CaffeineConfiguration<Object, Object> configuration() {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        // entry Hibernate sudah berupa salinan (disassembled state), tidak perlu diserialisasi ulang setiap get/put
+        configuration.setStoreByValue(false);
+        configuration.setStatisticsEnabled(true);
+        return configuration;
+    }
+
+    // cache.gets{result=hit|miss}, cache.puts, cache.removals per region
+    private static void bind(Cache<?, ?> cache, MeterRegistry meterRegistry) {
+        new JCacheMetrics<>(cache, Tags.empty()).bindTo(meterRegistry);
+    }
+}
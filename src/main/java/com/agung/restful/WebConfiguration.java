@@ -1,11 +1,14 @@
 package com.agung.restful;
 
 import com.agung.restful.resolver.UserArgumentResolver;
+import jakarta.persistence.EntityManagerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
 import org.springframework.web.method.support.HandlerMethodArgumentResolver;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 import java.util.List;
@@ -19,12 +22,31 @@ public class WebConfiguration implements WebMvcConfigurer {
     @Autowired
     private UserArgumentResolver userArgumentResolver;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     @Override
     public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
         WebMvcConfigurer.super.addArgumentResolvers(resolvers);
         resolvers.add(userArgumentResolver);
     }
 
+    /**
+     * Pengganti open-in-view bawaan Spring Boot (spring.jpa.open-in-view=false), kecuali untuk stream SSE: EntityManager
+     * open-in-view memegang koneksi database sampai request async selesai, jadi setiap stream yang terbuka akan
+     * menahan satu koneksi pool.
+     * <p>
+     * Endpoint yang menjalankan BCrypt (login, register, update user) juga tanpa open-in-view: koneksi yang sudah dipakai
+     * EntityManager baru dilepas di akhir request, jadi tertahan selama menunggu hash.
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        OpenEntityManagerInViewInterceptor interceptor = new OpenEntityManagerInViewInterceptor();
+        interceptor.setEntityManagerFactory(entityManagerFactory);
+        registry.addWebRequestInterceptor(interceptor).excludePathPatterns(
+                "/api/contacts/events", "/api/auth/login", "/api/users", "/api/users/current");
+    }
+
     @Override
     public void addCorsMappings(CorsRegistry registry) {
         registry.addMapping("/**")
@@ -6,11 +6,15 @@ import com.agung.restful.model.request.CreateAddressRequest;
 import com.agung.restful.model.request.UpdateAddressRequest;
 import com.agung.restful.model.response.WebResponse;
 import com.agung.restful.service.AddressService;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import java.util.List;
+import java.util.Objects;
 
 
 @RestController
@@ -42,8 +46,15 @@ public class AddressController {
     )
     public WebResponse<AddressResponse> get(User user,
                                             @PathVariable("contactId") String contactId,
-                                            @PathVariable("addressId") String addressId) {
+                                            @PathVariable("addressId") String addressId,
+                                            ServletWebRequest webRequest) {
+        // polling dengan If-None-Match cukup dicek dari version, address tidak dimuat dan body tidak diserialisasi
+        if (Objects.nonNull(webRequest.getHeader(HttpHeaders.IF_NONE_MATCH))
+                && webRequest.checkNotModified(ETags.of(addressService.version(user, contactId, addressId)))) {
+            return null;
+        }
         AddressResponse addressResponse = addressService.get(user, contactId, addressId);
+        webRequest.getResponse().setHeader(HttpHeaders.ETAG, ETags.of(addressResponse.getVersion()));
         return WebResponse.<AddressResponse>builder()
                 .data(addressResponse)
                 .status(true)
@@ -58,11 +69,14 @@ public class AddressController {
     public WebResponse<AddressResponse> update(User user,
                                                @RequestBody UpdateAddressRequest request,
                                                @PathVariable("contactId") String contactId,
-                                               @PathVariable("addressId") String addressId) {
+                                               @PathVariable("addressId") String addressId,
+                                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                               HttpServletResponse response) {
         request.setContactId(contactId);
         request.setAddressId(addressId);
 
-        AddressResponse addressResponse = addressService.update(user, request);
+        AddressResponse addressResponse = addressService.update(user, request, ETags.ifMatch(ifMatch));
+        response.setHeader(HttpHeaders.ETAG, ETags.of(addressResponse.getVersion()));
         return WebResponse.<AddressResponse>builder()
                 .data(addressResponse)
                 .status(true)
@@ -75,9 +89,10 @@ public class AddressController {
     )
     public WebResponse<String> delete(User user,
                                       @PathVariable("contactId") String contactId,
-                                      @PathVariable("addressId") String addressId) {
+                                      @PathVariable("addressId") String addressId,
+                                      @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 
-        addressService.remove(user, contactId, addressId);
+        addressService.remove(user, contactId, addressId, ETags.ifMatch(ifMatch));
         return WebResponse.<String>builder()
                 .data("OK")
                 .status(true)
@@ -89,8 +104,14 @@ public class AddressController {
             produces = MediaType.APPLICATION_JSON_VALUE
     )
     public WebResponse<List<AddressResponse>> list(User user,
-                                            @PathVariable("contactId") String contactId) {
+                                            @PathVariable("contactId") String contactId,
+                                            ServletWebRequest webRequest) {
+        if (Objects.nonNull(webRequest.getHeader(HttpHeaders.IF_NONE_MATCH))
+                && webRequest.checkNotModified(ETags.of(addressService.versions(user, contactId)))) {
+            return null;
+        }
         List<AddressResponse> addressResponse = addressService.list(user, contactId);
+        webRequest.getResponse().setHeader(HttpHeaders.ETAG, ETags.of(ETags.versions(addressResponse)));
         return WebResponse.<List<AddressResponse>>builder()
                 .data(addressResponse)
                 .status(true)
@@ -10,6 +10,7 @@ import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
 
 @RestController
@@ -32,8 +33,8 @@ public class AuthController {
             path = "/api/auth/logout",
             produces = MediaType.APPLICATION_JSON_VALUE
     )
-    public WebResponse<String> logout( User user){
-        authService.logout(user);
+    public WebResponse<String> logout(User user, @RequestHeader("X-API-TOKEN") String token){
+        authService.logout(user, token);
         return WebResponse.<String>builder().data("Ok").status(true).build();
     }
 }
@@ -1,26 +1,67 @@
 package com.agung.restful.controller;
 
 import com.agung.restful.entity.User;
+import com.agung.restful.model.request.BulkContactRequest;
 import com.agung.restful.model.request.CreateContactRequest;
 import com.agung.restful.model.request.SearchContactRequest;
 import com.agung.restful.model.request.UpdateContactRequest;
+import com.agung.restful.model.response.BulkContactResult;
 import com.agung.restful.model.response.ContactResponse;
+import com.agung.restful.model.response.ImportJobResponse;
 import com.agung.restful.model.response.PagingResponse;
 import com.agung.restful.model.response.WebResponse;
+import com.agung.restful.service.ContactExportService;
+import com.agung.restful.service.ContactImportService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import com.agung.restful.service.AddressService;
+import com.agung.restful.service.ContactChangeService;
+import com.agung.restful.service.ContactEventBus;
 import com.agung.restful.service.ContactService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Window;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
 @RestController
 public class ContactController {
 
+    public static final String CHANGE_WATERMARK_HEADER = "X-Change-Watermark";
+
     @Autowired
     private ContactService contactService;
 
+    @Autowired
+    private ContactExportService contactExportService;
+
+    @Autowired
+    private ContactImportService contactImportService;
+
+    @Autowired
+    private AddressService addressService;
+
+    @Autowired
+    private ContactChangeService contactChangeService;
+
+    @Autowired
+    private ContactEventBus contactEventBus;
+
     @PostMapping(
             path = "/api/contacts",
             consumes = MediaType.APPLICATION_JSON_VALUE,
@@ -31,12 +72,111 @@ public class ContactController {
         return WebResponse.<ContactResponse>builder().data(contactResponse).status(true).build();
     }
 
+    @PostMapping(
+            path = "/api/contacts/bulk",
+            consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public WebResponse<List<BulkContactResult>> bulk(User user, @RequestBody BulkContactRequest request){
+        List<BulkContactResult> results = contactService.bulk(user, request);
+        return WebResponse.<List<BulkContactResult>>builder().data(results).status(true).build();
+    }
+
+    @GetMapping(
+            path = "/api/contacts/export",
+            produces = MediaType.APPLICATION_NDJSON_VALUE
+    )
+    public ResponseEntity<StreamingResponseBody> export(User user, ServletWebRequest webRequest){
+        String username = user.getUsername();
+        // menggantikan spring.mvc.async.request-timeout untuk request ini
+        WebAsyncUtils.getAsyncManager(webRequest).getAsyncWebRequest().setTimeout(contactExportService.timeoutMs());
+        ContactExportService.Slot slot = contactExportService.acquire(username);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"contacts.ndjson\"")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(outputStream -> {
+                    try (slot) {
+                        contactExportService.export(username, outputStream);
+                    }
+                });
+    }
+
+    /**
+     * Contact yang berubah setelah since (NDJSON). Header X-Change-Watermark dipakai sebagai since berikutnya.
+     */
+    @GetMapping(
+            path = "/api/contacts/changes",
+            produces = MediaType.APPLICATION_NDJSON_VALUE
+    )
+    public ResponseEntity<StreamingResponseBody> changes(User user, @RequestParam(value = "since", required = false) Long since){
+        String username = user.getUsername();
+        long watermark = contactChangeService.watermark(username, since);
+        return ResponseEntity.ok()
+                .header(CHANGE_WATERMARK_HEADER, String.valueOf(watermark))
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(outputStream -> contactChangeService.changes(username, since, watermark, outputStream));
+    }
+
+    /**
+     * Stream SSE perubahan contact milik user; id event sama dengan since untuk /api/contacts/changes.
+     */
+    @GetMapping(
+            path = "/api/contacts/events",
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE
+    )
+    public SseEmitter events(User user,
+                             @RequestHeader("X-API-TOKEN") String token,
+                             @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId){
+        return contactEventBus.subscribe(user.getUsername(), token, lastEventId);
+    }
+
+    @PostMapping(
+            path = "/api/contacts/import",
+            consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE},
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public WebResponse<ImportJobResponse> importContacts(User user, HttpServletRequest request) throws IOException {
+        String format = MediaType.APPLICATION_NDJSON.isCompatibleWith(MediaType.parseMediaType(request.getContentType()))
+                ? ContactImportService.NDJSON
+                : ContactImportService.CSV;
+        // body dibaca langsung dari stream, tidak lewat @RequestBody supaya tidak ditampung di memori
+        ImportJobResponse response = contactImportService.importContacts(user, format, request.getInputStream());
+        return WebResponse.<ImportJobResponse>builder().data(response).status(true).build();
+    }
+
+    @GetMapping(
+            path = "/api/contacts/import",
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public WebResponse<List<ImportJobResponse>> listImports(User user){
+        List<ImportJobResponse> responses = contactImportService.list(user);
+        return WebResponse.<List<ImportJobResponse>>builder().data(responses).status(true).build();
+    }
+
+    @GetMapping(
+            path = "/api/contacts/import/{jobId}",
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public WebResponse<ImportJobResponse> getImport(User user, @PathVariable("jobId") String jobId){
+        ImportJobResponse response = contactImportService.get(user, jobId);
+        return WebResponse.<ImportJobResponse>builder().data(response).status(true).build();
+    }
+
     @GetMapping(
             path = "/api/contacts/{contactId}",
             produces = MediaType.APPLICATION_JSON_VALUE
     )
-    public WebResponse<ContactResponse> getContact(User user, @PathVariable("contactId") String contactId){
-        ContactResponse contactResponse = contactService.get(user, contactId);
+    public WebResponse<ContactResponse> getContact(User user, @PathVariable("contactId") String contactId,
+                                                   @RequestParam(value = "include", required = false) String include,
+                                                   ServletWebRequest webRequest){
+        boolean includeAddresses = includeAddresses(include);
+        // polling dengan If-None-Match cukup dicek dari version, contact tidak dimuat dan body tidak diserialisasi
+        if (Objects.nonNull(webRequest.getHeader(HttpHeaders.IF_NONE_MATCH))
+                && webRequest.checkNotModified(etag(user, contactId, includeAddresses))) {
+            return null;
+        }
+        ContactResponse contactResponse = contactService.get(user, contactId, includeAddresses);
+        webRequest.getResponse().setHeader(HttpHeaders.ETAG, ETags.of(contactResponse));
         return WebResponse.<ContactResponse>builder()
                 .data(contactResponse)
                 .status(true)
@@ -50,9 +190,12 @@ public class ContactController {
             produces = MediaType.APPLICATION_JSON_VALUE
     )
     public WebResponse<ContactResponse> update(User user,@RequestBody UpdateContactRequest request,
-                                               @PathVariable("contactId")String contactId){
+                                               @PathVariable("contactId")String contactId,
+                                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                               HttpServletResponse response){
         request.setId(contactId);
-        ContactResponse contactResponse = contactService.update(user, request);
+        ContactResponse contactResponse = contactService.update(user, request, ETags.ifMatch(ifMatch));
+        response.setHeader(HttpHeaders.ETAG, ETags.of(contactResponse));
         return WebResponse.<ContactResponse>builder().data(contactResponse).status(true).build();
     }
 
@@ -60,8 +203,9 @@ public class ContactController {
             path = "/api/contacts/{contactId}",
             produces = MediaType.APPLICATION_JSON_VALUE
     )
-    public WebResponse<String> deleteContact(User user, @PathVariable("contactId") String contactId){
-        contactService.delete(user, contactId);
+    public WebResponse<String> deleteContact(User user, @PathVariable("contactId") String contactId,
+                                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
+        contactService.delete(user, contactId, ETags.ifMatch(ifMatch));
         return WebResponse.<String>builder()
                 .data("OK")
                 .status(true)
@@ -78,7 +222,11 @@ public class ContactController {
                                                      @RequestParam(value = "email",required = false)String email,
                                                      @RequestParam(value = "phone",required = false)String phone,
                                                      @RequestParam(value = "page",required = false, defaultValue = "0") Integer page,
-                                                     @RequestParam(value = "size",required = false,defaultValue = "4")Integer size){
+                                                     @RequestParam(value = "size",required = false,defaultValue = "4")Integer size,
+                                                     @RequestParam(value = "cursor",required = false)String cursor,
+                                                     @RequestParam(value = "count",required = false,defaultValue = "false")Boolean count,
+                                                     @RequestParam(value = "include",required = false)String include,
+                                                     @RequestParam(value = "fields",required = false)String fields){
 
         SearchContactRequest request = SearchContactRequest.builder()
                 .page(page)
@@ -86,16 +234,83 @@ public class ContactController {
                 .name(name)
                 .email(email)
                 .phone(phone)
+                .cursor(cursor)
+                .count(count)
+                .includeAddresses(includeAddresses(include))
+                .fields(fields(fields))
                 .build();
+        if (request.getIncludeAddresses() && Objects.nonNull(request.getFields())){
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "include cannot be combined with fields");
+        }
 
-        Page<ContactResponse> contactResponses = contactService.search(user,request);
+        if (Objects.nonNull(cursor)){
+            return searchAfter(user, request);
+        }
+
+        Slice<ContactResponse> contactResponses = contactService.search(user,request);
+        Integer totalPage = null;
+        if (contactResponses instanceof Page<ContactResponse> contactPage){
+            totalPage = contactPage.getTotalPages();
+        }
         return WebResponse.<List<ContactResponse>>builder()
                 .data(contactResponses.getContent())
                 .paging(PagingResponse.builder()
                         .currentPage(contactResponses.getNumber()+1)
-                        .totalPage(contactResponses.getTotalPages())
+                        .totalPage(totalPage)
                         .size(contactResponses.getSize())
                         .build())
                 .build();
     }
+
+    private WebResponse<List<ContactResponse>> searchAfter(User user, SearchContactRequest request){
+        Window<ContactResponse> contactResponses = contactService.searchAfter(user, request);
+        Integer totalPage = null;
+        if (request.getCount()){
+            totalPage = (int) Math.ceilDiv(contactService.count(user, request), request.getSize());
+        }
+        return WebResponse.<List<ContactResponse>>builder()
+                .data(contactResponses.getContent())
+                .paging(PagingResponse.builder()
+                        .totalPage(totalPage)
+                        .size(request.getSize())
+                        .nextCursor(contactService.nextCursor(contactResponses))
+                        .build())
+                .build();
+    }
+
+    private String etag(User user, String contactId, boolean includeAddresses){
+        long version = contactService.version(user, contactId);
+        if (!includeAddresses){
+            return ETags.of(version);
+        }
+        return ETags.of(version, addressService.versions(user, contactId));
+    }
+
+    // fields=id,firstName,... ; null jika tidak diisi (semua field)
+    private Set<String> fields(String fields){
+        if (Objects.isNull(fields) || fields.isBlank()){
+            return null;
+        }
+        Set<String> result = new LinkedHashSet<>();
+        for (String value : fields.split(",")){
+            if (!ContactService.SEARCH_FIELDS.contains(value.trim())){
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported field: " + value.trim());
+            }
+            result.add(value.trim());
+        }
+        return result;
+    }
+
+    // include=addresses, nilai lain ditolak supaya salah ketik tidak diam-diam diabaikan
+    private boolean includeAddresses(String include){
+        if (Objects.isNull(include) || include.isBlank()){
+            return false;
+        }
+        for (String value : include.split(",")){
+            if (!value.trim().equals("addresses")){
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported include: " + value.trim());
+            }
+        }
+        return true;
+    }
 }
@@ -0,0 +1,90 @@
+package com.agung.restful.controller;
+
+import com.agung.restful.model.response.AddressResponse;
+import com.agung.restful.model.response.ContactResponse;
+import com.agung.restful.repository.EntityVersion;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * ETag kuat dari kolom version (@Version) contact dan address.
+ * <p>
+ * Satu entity cukup version-nya. Daftar address (dan contact dengan include=addresses) memakai hash dari pasangan
+ * id:version, karena address yang ditambah atau dihapus tidak mengubah version siapa pun.
+ */
+final class ETags {
+
+    private ETags() {
+    }
+
+    static String of(long version) {
+        return quote(String.valueOf(version));
+    }
+
+    static String of(List<EntityVersion> addresses) {
+        return quote(digest(addresses));
+    }
+
+    static String of(long contactVersion, List<EntityVersion> addresses) {
+        return quote(contactVersion + "-" + digest(addresses));
+    }
+
+    static String of(ContactResponse contact) {
+        if (Objects.isNull(contact.getAddresses())) {
+            return of(contact.getVersion());
+        }
+        return of(contact.getVersion(), versions(contact.getAddresses()));
+    }
+
+    static List<EntityVersion> versions(List<AddressResponse> addresses) {
+        return addresses.stream().map(address -> new EntityVersion(address.getId(), address.getVersion())).toList();
+    }
+
+    /**
+     * Version dari header If-Match, null jika header tidak dikirim atau *. ETag lemah (W/) dan nilai yang bukan
+     * version tidak pernah cocok (perbandingan kuat), jadi hasilnya bisa set kosong.
+     */
+    static Set<Long> ifMatch(String header) {
+        if (Objects.isNull(header) || header.isBlank() || header.trim().equals("*")) {
+            return null;
+        }
+        Set<Long> versions = new HashSet<>();
+        for (String value : header.split(",")) {
+            String etag = value.trim();
+            if (etag.length() < 2 || !etag.startsWith("\"") || !etag.endsWith("\"")) {
+                continue;
+            }
+            try {
+                versions.add(Long.parseLong(etag.substring(1, etag.length() - 1)));
+            } catch (NumberFormatException e) {
+                // bukan ETag satu entity
+            }
+        }
+        return versions;
+    }
+
+    private static String quote(String value) {
+        return "\"" + value + "\"";
+    }
+
+    private static String digest(List<EntityVersion> versions) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (EntityVersion version : versions) {
+            digest.update((version.id() + ":" + version.version() + ";").getBytes(StandardCharsets.UTF_8));
+        }
+        // 64 bit cukup untuk membedakan versi daftar address yang sama
+        return HexFormat.of().formatHex(digest.digest(), 0, 8);
+    }
+}
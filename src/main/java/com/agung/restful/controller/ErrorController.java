@@ -1,13 +1,18 @@
 package com.agung.restful.controller;
 
 import com.agung.restful.model.response.WebResponse;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.ConstraintViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.util.Objects;
+
 @RestControllerAdvice
 public class ErrorController {
 
@@ -17,6 +22,16 @@ public class ErrorController {
                 .body(WebResponse.<String>builder().errors(exception.getMessage()).status(false).build());
     }
 
+    // contact/address diubah request lain di antara dibaca dan ditulis (@Version)
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<WebResponse<String>>optimisticLockingFailure(HttpServletRequest request){
+        HttpStatus status = Objects.nonNull(request.getHeader(HttpHeaders.IF_MATCH))
+                ? HttpStatus.PRECONDITION_FAILED
+                : HttpStatus.CONFLICT;
+        return ResponseEntity.status(status)
+                .body(WebResponse.<String>builder().status(false).errors("Data has been modified, please retry").build());
+    }
+
     @ExceptionHandler(ResponseStatusException.class)
     public ResponseEntity<WebResponse<String>>apiException(ResponseStatusException exception){
         return ResponseEntity.status(exception.getStatusCode())
@@ -1,10 +1,15 @@
 package com.agung.restful.entity;
 
+import com.agung.restful.SecondLevelCacheConfiguration;
+import com.agung.restful.id.UuidBinaryType;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Type;
 
 @Getter
 @Setter
@@ -12,9 +17,12 @@ import lombok.Setter;
 @NoArgsConstructor
 @Table(name = "addresses")
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfiguration.ADDRESS)
 public class Address {
 
     @Id
+    @Type(UuidBinaryType.class)
     private String id;
 
     private String street;
@@ -28,7 +36,11 @@ public class Address {
     @Column(name = "postal_code")
     private String postalCode;
 
-    @ManyToOne
+    // naik setiap update, dipakai sebagai ETag. Masih null untuk address baru, jadi save() langsung persist
+    @Version
+    private Long version;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "contact_id", referencedColumnName = "id")
     private Contact contact;
 }
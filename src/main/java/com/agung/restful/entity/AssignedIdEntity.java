@@ -0,0 +1,30 @@
+package com.agung.restful.entity;
+
+import jakarta.persistence.MappedSuperclass;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Transient;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * Entity dengan id dari aplikasi dan tanpa kolom {@code @Version}. Spring Data tidak bisa membedakan entity baru dari
+ * id-nya, jadi tanpa ini save() memanggil merge yang SELECT dulu. Entity yang punya {@code @Version Long} tidak perlu
+ * ini: version yang masih null sudah menandai entity baru.
+ */
+@MappedSuperclass
+public abstract class AssignedIdEntity implements Persistable<String> {
+
+    @Transient
+    private boolean persisted;
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        persisted = true;
+    }
+}
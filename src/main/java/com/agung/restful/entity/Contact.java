@@ -1,11 +1,16 @@
 package com.agung.restful.entity;
 
 
+import com.agung.restful.SecondLevelCacheConfiguration;
+import com.agung.restful.id.UuidBinaryType;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Type;
 
 import java.util.List;
 
@@ -15,9 +20,12 @@ import java.util.List;
 @NoArgsConstructor
 @Table(name = "contact")
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfiguration.CONTACT)
 public class Contact {
 
     @Id
+    @Type(UuidBinaryType.class)
     private String id;
 
     @Column(name = "first_name")
@@ -30,10 +38,19 @@ public class Contact {
 
     private String email;
 
-    @ManyToOne
+    // naik setiap update, dipakai sebagai ETag. Masih null untuk contact baru, jadi save() langsung persist
+    @Version
+    private Long version;
+
+    // lazy: yang biasanya dibutuhkan hanya username, dan itu id proxy-nya
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "username", referencedColumnName = "username")
     private User user;
 
+    // yang di-cache hanya daftar id address, isinya dari region address. Address yang ditambah/dihapus dari sisi
+    // Address.contact meng-evict cache ini lewat hibernate.cache.auto_evict_collection_cache
     @OneToMany(mappedBy = "contact")
+    @OrderBy("id")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfiguration.CONTACT_ADDRESSES)
     private List<Address> addresses;
 }
@@ -0,0 +1,56 @@
+package com.agung.restful.entity;
+
+import com.agung.restful.id.UuidBinaryType;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.Type;
+
+import java.io.Serializable;
+
+/**
+ * Satu baris index trigram pencarian contact. Ditulis lewat JDBC oleh ContactSearchIndex, entity ini hanya dipakai
+ * untuk subquery di Specification.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "contact_ngram")
+@Entity
+@IdClass(ContactNgram.Key.class)
+public class ContactNgram {
+
+    @Id
+    private String username;
+
+    @Id
+    private String field;
+
+    @Id
+    private String gram;
+
+    @Id
+    @Column(name = "contact_id")
+    @Type(UuidBinaryType.class)
+    private String contactId;
+
+    @Getter
+    @Setter
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Key implements Serializable {
+
+        private String username;
+
+        private String field;
+
+        private String gram;
+
+        private String contactId;
+    }
+}
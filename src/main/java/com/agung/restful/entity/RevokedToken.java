@@ -0,0 +1,28 @@
+package com.agung.restful.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "revoked_tokens")
+public class RevokedToken {
+
+    @Id
+    private String jti;
+
+    @Column(name = "revoked_at")
+    private Long revokedAt;
+
+    @Column(name = "expired_at")
+    private Long expiredAt;
+}
@@ -1,10 +1,13 @@
 package com.agung.restful.entity;
 
+import com.agung.restful.SecondLevelCacheConfiguration;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.List;
 
@@ -14,18 +17,20 @@ import java.util.List;
 @NoArgsConstructor
 @Entity
 @Table(name = "users")
-public class User {
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfiguration.USER)
+public class User extends AssignedIdEntity {
 
     @Id
     private String username;
     private String password;
     private String name;
 
-    private String token;
-
-    @Column(name = "token_expired_at")
-    private Long tokenExpiredAt;
-
     @OneToMany(mappedBy = "user")
     private List<Contact> contacts;
+
+    @Override
+    public String getId() {
+        return username;
+    }
 }
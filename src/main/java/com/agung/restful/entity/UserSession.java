@@ -0,0 +1,35 @@
+package com.agung.restful.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "sessions")
+public class UserSession extends AssignedIdEntity {
+
+    @Id
+    private String token;
+
+    private String username;
+
+    @Column(name = "created_at")
+    private Long createdAt;
+
+    @Column(name = "expired_at")
+    private Long expiredAt;
+
+    @Override
+    public String getId() {
+        return token;
+    }
+}
@@ -0,0 +1,104 @@
+package com.agung.restful.id;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.usertype.UserType;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Id tetap String di entity dan API, tetapi disimpan sebagai BINARY(16).
+ * <p>
+ * Dipakai lewat {@code @Type(UuidBinaryType.class)} karena JPA AttributeConverter tidak berlaku untuk kolom @Id.
+ * String yang bukan UUID dikonversi menjadi null, jadi lookup dengan id asal-asalan dari path cukup tidak menemukan
+ * data (404) dan tidak error.
+ */
+public class UuidBinaryType implements UserType<String> {
+
+    @Override
+    public int getSqlType() {
+        return Types.BINARY;
+    }
+
+    @Override
+    public Class<String> returnedClass() {
+        return String.class;
+    }
+
+    @Override
+    public String nullSafeGet(ResultSet rs, int position, SharedSessionContractImplementor session, Object owner)
+            throws SQLException {
+        return toString(rs.getBytes(position));
+    }
+
+    @Override
+    public void nullSafeSet(PreparedStatement st, String value, int index, SharedSessionContractImplementor session)
+            throws SQLException {
+        byte[] bytes = toBytes(value);
+        if (Objects.isNull(bytes)) {
+            st.setNull(index, Types.BINARY);
+        } else {
+            st.setBytes(index, bytes);
+        }
+    }
+
+    @Override
+    public boolean equals(String x, String y) {
+        return Objects.equals(x, y);
+    }
+
+    @Override
+    public int hashCode(String x) {
+        return Objects.hashCode(x);
+    }
+
+    @Override
+    public String deepCopy(String value) {
+        return value;
+    }
+
+    @Override
+    public boolean isMutable() {
+        return false;
+    }
+
+    @Override
+    public Serializable disassemble(String value) {
+        return value;
+    }
+
+    @Override
+    public String assemble(Serializable cached, Object owner) {
+        return (String) cached;
+    }
+
+    public static byte[] toBytes(String id) {
+        if (Objects.isNull(id) || id.length() != 36) {
+            return null;
+        }
+        UUID uuid;
+        try {
+            uuid = UUID.fromString(id);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    public static String toString(byte[] bytes) {
+        if (Objects.isNull(bytes)) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong()).toString();
+    }
+}
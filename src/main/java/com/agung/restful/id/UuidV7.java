@@ -0,0 +1,37 @@
+package com.agung.restful.id;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+
+/**
+ * Generator UUID versi 7 (RFC 9562): 48 bit epoch millis di depan, sisanya acak.
+ * <p>
+ * Karena diawali waktu, id baru selalu masuk di ujung kanan index InnoDB sehingga tidak terjadi page split acak seperti
+ * UUID versi 4. Urutan string dan urutan 16 byte-nya sama.
+ */
+public final class UuidV7 {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private UuidV7() {
+    }
+
+    public static String generate() {
+        return create(System.currentTimeMillis()).toString();
+    }
+
+    static UUID create(long epochMillis) {
+        byte[] random = new byte[10];
+        RANDOM.nextBytes(random);
+
+        long msb = (epochMillis & 0xFFFF_FFFF_FFFFL) << 16;
+        msb |= 0x7000L;
+        msb |= ((random[0] & 0x0FL) << 8) | (random[1] & 0xFFL);
+
+        long lsb = 0x8000_0000_0000_0000L | ((random[2] & 0x3FL) << 56);
+        for (int i = 3; i < 10; i++) {
+            lsb |= (random[i] & 0xFFL) << (8 * (9 - i));
+        }
+        return new UUID(msb, lsb);
+    }
+}
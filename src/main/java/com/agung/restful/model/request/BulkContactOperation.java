@@ -0,0 +1,33 @@
+package com.agung.restful.model.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Satu operasi di dalam bulk request. Field lain divalidasi sesuai action lewat CreateContactRequest/UpdateContactRequest.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BulkContactOperation {
+
+    public static final String CREATE = "create";
+    public static final String UPDATE = "update";
+    public static final String DELETE = "delete";
+
+    private String action;
+
+    // wajib untuk update dan delete
+    private String id;
+
+    private String firstName;
+
+    private String lastName;
+
+    private String email;
+
+    private String phone;
+}
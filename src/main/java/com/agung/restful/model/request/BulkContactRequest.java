@@ -0,0 +1,19 @@
+package com.agung.restful.model.request;
+
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BulkContactRequest {
+
+    @NotEmpty
+    private List<BulkContactOperation> operations;
+}
@@ -0,0 +1,41 @@
+package com.agung.restful.model.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Satu baris import (CSV atau NDJSON).
+ * <p>
+ * CSV hanya bisa membawa satu address lewat kolom street..postalCode, NDJSON boleh memakai kolom yang sama atau
+ * array addresses.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ImportContactRequest {
+
+    private String firstName;
+
+    private String lastName;
+
+    private String email;
+
+    private String phone;
+
+    private String street;
+
+    private String city;
+
+    private String province;
+
+    private String country;
+
+    private String postalCode;
+
+    private List<CreateAddressRequest> addresses;
+}
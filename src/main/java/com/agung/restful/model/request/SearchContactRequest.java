@@ -6,6 +6,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.Set;
+
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -21,4 +23,14 @@ public class SearchContactRequest {
 
     @NotNull
     private Integer size;
+
+    // mode keyset: null = pakai page, "" = halaman pertama
+    private String cursor;
+
+    private Boolean count;
+
+    private Boolean includeAddresses;
+
+    // null = semua field
+    private Set<String> fields;
 }
@@ -1,5 +1,6 @@
 package com.agung.restful.model.response;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -22,4 +23,8 @@ public class AddressResponse {
     private String country;
 
     private String postalCode;
+
+    // untuk header ETag, tidak ikut body
+    @JsonIgnore
+    private Long version;
 }
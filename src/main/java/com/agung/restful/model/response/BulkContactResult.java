@@ -0,0 +1,27 @@
+package com.agung.restful.model.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkContactResult {
+
+    // posisi operasi di request
+    private Integer index;
+
+    private String action;
+
+    private String id;
+
+    // 200 berhasil, 400 tidak valid, 404 contact tidak ditemukan
+    private Integer status;
+
+    private String errors;
+}
@@ -0,0 +1,39 @@
+package com.agung.restful.model.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Satu baris NDJSON di GET /api/contacts/changes: contact lengkap dengan address-nya, atau tombstone (deleted=true,
+ * hanya id dan seq) untuk contact yang dihapus.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ContactChangeResponse {
+
+    private String id;
+
+    private Long seq;
+
+    private Boolean deleted;
+
+    private Long updatedAt;
+
+    private String firstName;
+
+    private String lastName;
+
+    private String email;
+
+    private String phone;
+
+    private List<AddressResponse> addresses;
+}
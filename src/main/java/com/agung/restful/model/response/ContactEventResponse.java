@@ -0,0 +1,29 @@
+package com.agung.restful.model.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Data event di GET /api/contacts/events: event change berisi seq dan id contact yang berubah/dihapus, event resync
+ * hanya since (client membaca GET /api/contacts/changes?since=...).
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ContactEventResponse {
+
+    private Long seq;
+
+    private List<String> changed;
+
+    private List<String> deleted;
+
+    private Long since;
+}
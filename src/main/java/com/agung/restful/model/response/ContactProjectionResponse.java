@@ -0,0 +1,11 @@
+package com.agung.restful.model.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Hasil pencarian dengan fields=: field yang tidak dipilih (null) tidak ikut di payload. Response contact lain tetap
+ * mengirim semua field, termasuk yang null.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ContactProjectionResponse extends ContactResponse {
+}
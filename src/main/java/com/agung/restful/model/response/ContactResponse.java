@@ -1,10 +1,14 @@
 package com.agung.restful.model.response;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -20,4 +24,12 @@ public class ContactResponse {
     private String email;
 
     private String phone;
+
+    // untuk header ETag, tidak ikut body
+    @JsonIgnore
+    private Long version;
+
+    // hanya diisi jika include=addresses
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<AddressResponse> addresses;
 }
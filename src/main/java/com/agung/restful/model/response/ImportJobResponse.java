@@ -0,0 +1,40 @@
+package com.agung.restful.model.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ImportJobResponse {
+
+    private String id;
+
+    // RUNNING, COMPLETED, FAILED
+    private String status;
+
+    private String format;
+
+    // jumlah baris yang sudah dibaca
+    private Long processed;
+
+    // jumlah contact yang sudah di-commit
+    private Long imported;
+
+    // jumlah baris yang ditolak
+    private Long failed;
+
+    // contoh error per baris (dibatasi), dan pesan error jika status FAILED
+    private List<String> errors;
+
+    private Long startedAt;
+
+    private Long finishedAt;
+}
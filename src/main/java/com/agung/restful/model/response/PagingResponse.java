@@ -1,5 +1,6 @@
 package com.agung.restful.model.response;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -11,7 +12,14 @@ import lombok.NoArgsConstructor;
 @Builder
 public class PagingResponse {
 
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private Integer currentPage;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private Integer totalPage;
+
     private Integer size;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
 }
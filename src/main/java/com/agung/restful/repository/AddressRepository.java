@@ -2,16 +2,56 @@ package com.agung.restful.repository;
 
 import com.agung.restful.entity.Address;
 import com.agung.restful.entity.Contact;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface AddressRepository extends JpaRepository<Address,String> {
 
-    Optional<Address> findFirstByContactAndId(Contact contact,String id);
+    // hanya untuk jalur GET: entity read-only tidak disimpan snapshot-nya untuk dirty checking
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    List<Address> findAllByContactInOrderByIdAsc(Collection<Contact> contacts);
 
-    List<Address> findAllByContact(Contact contact);
+    // contact.username cukup dibaca dari tabel contact, tanpa join ke users.
+    // Query cache menyimpan id hasilnya, isinya dari region address; hasil ikut tidak valid setiap kali tabel
+    // contact atau addresses ditulis
+    @Query("select a from Address a join a.contact c " +
+            "where c.user.username = :username and c.id = :contactId and a.id = :addressId")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    Optional<Address> findScoped(@Param("username") String username, @Param("contactId") String contactId,
+                                 @Param("addressId") String addressId);
+
+    @Query("select a from Address a join a.contact c " +
+            "where c.user.username = :username and c.id = :contactId order by a.id")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true")
+    })
+    List<Address> findAllScoped(@Param("username") String username, @Param("contactId") String contactId);
+
+    // version-only untuk ETag, address tidak dimuat
+    @Query("select a.version from Address a join a.contact c " +
+            "where c.user.username = :username and c.id = :contactId and a.id = :addressId")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    Optional<Long> findVersionScoped(@Param("username") String username, @Param("contactId") String contactId,
+                                     @Param("addressId") String addressId);
+
+    // urutan sama dengan findAllScoped supaya ETag dari hasil query ini sama dengan ETag dari address yang dimuat
+    @Query("select new com.agung.restful.repository.EntityVersion(a.id, a.version) from Address a join a.contact c " +
+            "where c.user.username = :username and c.id = :contactId order by a.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<EntityVersion> findAllVersionsScoped(@Param("username") String username, @Param("contactId") String contactId);
+
+    // untuk dihapus lewat entity: DELETE HQL meng-evict seluruh region address dan Contact.addresses (semua user),
+    // remove() per entity hanya meng-evict address yang dihapus dan daftar address contact-nya
+    List<Address> findAllByContactIn(Collection<Contact> contacts);
 }
@@ -0,0 +1,18 @@
+package com.agung.restful.repository;
+
+import com.agung.restful.entity.Contact;
+import com.agung.restful.model.response.ContactResponse;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ContactProjectionRepository {
+
+    /**
+     * SELECT hanya kolom di fields (id selalu ikut) langsung ke ContactResponse, urut berdasarkan id.
+     * Tidak ada entity Contact/User yang dibuat, jadi juga tidak ada snapshot dirty checking.
+     */
+    List<ContactResponse> findProjected(Specification<Contact> specification, Collection<String> fields,
+                                        long offset, int limit);
+}
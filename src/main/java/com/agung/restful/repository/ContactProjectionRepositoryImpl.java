@@ -0,0 +1,70 @@
+package com.agung.restful.repository;
+
+import com.agung.restful.entity.Contact;
+import com.agung.restful.model.response.ContactProjectionResponse;
+import com.agung.restful.model.response.ContactResponse;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+public class ContactProjectionRepositoryImpl implements ContactProjectionRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<ContactResponse> findProjected(Specification<Contact> specification, Collection<String> fields,
+                                               long offset, int limit) {
+        // id dibutuhkan untuk urutan dan cursor
+        Set<String> columns = new LinkedHashSet<>();
+        columns.add("id");
+        columns.addAll(fields);
+
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = builder.createTupleQuery();
+        Root<Contact> root = query.from(Contact.class);
+        query.multiselect(columns.stream()
+                .<Selection<?>>map(column -> root.get(column).alias(column))
+                .toList());
+        Predicate predicate = specification.toPredicate(root, query, builder);
+        if (Objects.nonNull(predicate)) {
+            query.where(predicate);
+        }
+        query.orderBy(builder.asc(root.get("id")));
+
+        return entityManager.createQuery(query)
+                .setFirstResult((int) offset)
+                .setMaxResults(limit)
+                .getResultStream()
+                .map(tuple -> toContactResponse(tuple, columns))
+                .toList();
+    }
+
+    private ContactResponse toContactResponse(Tuple tuple, Set<String> columns) {
+        ContactResponse response = new ContactProjectionResponse();
+        for (String column : columns) {
+            String value = tuple.get(column, String.class);
+            switch (column) {
+                case "id" -> response.setId(value);
+                case "firstName" -> response.setFirstName(value);
+                case "lastName" -> response.setLastName(value);
+                case "email" -> response.setEmail(value);
+                case "phone" -> response.setPhone(value);
+                default -> throw new IllegalArgumentException("Unknown contact field: " + column);
+            }
+        }
+        return response;
+    }
+}
@@ -2,14 +2,44 @@ package com.agung.restful.repository;
 
 import com.agung.restful.entity.Contact;
 import com.agung.restful.entity.User;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface ContactRepository extends JpaRepository<Contact,String>, JpaSpecificationExecutor<Contact> {
+public interface ContactRepository extends JpaRepository<Contact,String>, JpaSpecificationExecutor<Contact>,
+        ContactProjectionRepository {
 
-    Optional<Contact>findFirstByUserAndId(User user,String id);
+    /**
+     * Lookup by id supaya bisa dilayani second-level cache (query finder berdasarkan user dan id selalu ke database),
+     * kepemilikan dicek dari username yang ada di proxy user tanpa memuat user.
+     */
+    default Optional<Contact> findOwned(User user, String id) {
+        return findById(id).filter(contact -> contact.getUser().getUsername().equals(user.getUsername()));
+    }
+
+    // ETag tanpa memuat contact; query cache membuat polling yang tidak berubah tidak ke database
+    @Query("select c.version from Contact c where c.user.username = :username and c.id = :id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    Optional<Long> findVersion(@Param("username") String username, @Param("id") String id);
+
+    boolean existsByUserAndId(User user, String id);
+
+    // SELECT ... FOR UPDATE, baris contact dikunci sebelum address-nya ditulis (lihat ContactChangeLog)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<Contact> findLockedByUserAndId(User user, String id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<Contact> findLockedByUserAndIdIn(User user, Collection<String> ids);
 }
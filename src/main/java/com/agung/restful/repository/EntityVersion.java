@@ -0,0 +1,7 @@
+package com.agung.restful.repository;
+
+/**
+ * Id dan version sebuah entity, hasil query version-only untuk ETag tanpa memuat entity-nya.
+ */
+public record EntityVersion(String id, Long version) {
+}
@@ -0,0 +1,20 @@
+package com.agung.restful.repository;
+
+import com.agung.restful.entity.RevokedToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken,String> {
+
+    List<RevokedToken> findAllByRevokedAtGreaterThanEqualAndExpiredAtGreaterThan(Long revokedAt, Long now);
+
+    @Modifying
+    @Query("delete from RevokedToken r where r.expiredAt < :now")
+    int deleteExpired(@Param("now") Long now);
+}
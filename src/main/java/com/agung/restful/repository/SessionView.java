@@ -0,0 +1,7 @@
+package com.agung.restful.repository;
+
+/**
+ * Pemilik dan expiry sebuah session, satu-satunya yang dibaca UserArgumentResolver per request.
+ */
+public record SessionView(String username, Long expiredAt) {
+}
@@ -1,7 +1,9 @@
 package com.agung.restful.repository;
 
 import com.agung.restful.entity.User;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -9,6 +11,8 @@ import java.util.Optional;
 @Repository
 public interface UserRepository extends JpaRepository<User,String> {
 
-    Optional<User> findFirstByToken(String token);
+    // SELECT ... FOR UPDATE, langsung ke database tanpa second-level cache
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<User> findLockedByUsername(String username);
 
 }
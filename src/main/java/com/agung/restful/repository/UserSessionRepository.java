@@ -0,0 +1,33 @@
+package com.agung.restful.repository;
+
+import com.agung.restful.entity.UserSession;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UserSessionRepository extends JpaRepository<UserSession,String> {
+
+    // lewat primary key, hanya username dan expired_at yang dibaca
+    @Query("select new com.agung.restful.repository.SessionView(s.username, s.expiredAt) from UserSession s where s.token = :token")
+    Optional<SessionView> findViewByToken(@Param("token") String token);
+
+    @Modifying
+    @Query("delete from UserSession s where s.token = :token")
+    int deleteByToken(@Param("token") String token);
+
+    // lewat idx_sessions_expired_at, dihapus per batch dengan deleteByTokenIn
+    @Query("select s.token from UserSession s where s.expiredAt < :now")
+    List<String> findExpiredTokens(@Param("now") Long now, Pageable pageable);
+
+    @Modifying
+    @Query("delete from UserSession s where s.token in :tokens")
+    int deleteByTokenIn(@Param("tokens") Collection<String> tokens);
+}
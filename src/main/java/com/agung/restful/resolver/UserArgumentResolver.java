@@ -1,7 +1,13 @@
 package com.agung.restful.resolver;
 
 import com.agung.restful.entity.User;
+import com.agung.restful.repository.SessionView;
 import com.agung.restful.repository.UserRepository;
+import com.agung.restful.repository.UserSessionRepository;
+import com.agung.restful.security.SessionCache;
+import com.agung.restful.security.TokenRevocationList;
+import com.agung.restful.security.TokenSigner;
+import com.agung.restful.security.TokenWriteBehind;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.MethodParameter;
@@ -19,6 +25,21 @@ public class UserArgumentResolver implements HandlerMethodArgumentResolver {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserSessionRepository userSessionRepository;
+
+    @Autowired
+    private SessionCache sessionCache;
+
+    @Autowired
+    private TokenSigner tokenSigner;
+
+    @Autowired
+    private TokenRevocationList tokenRevocationList;
+
+    @Autowired
+    private TokenWriteBehind tokenWriteBehind;
+
     @Override
     public boolean supportsParameter(MethodParameter parameter) {
         return User.class.equals(parameter.getParameterType());
@@ -31,14 +52,40 @@ public class UserArgumentResolver implements HandlerMethodArgumentResolver {
         if (token == null){
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED,"Unauthorized");
         }
-        User user = userRepository.findFirstByToken(token)
-                .orElseThrow(()->new ResponseStatusException(HttpStatus.UNAUTHORIZED,"Unauthorized"));
+        if (tokenSigner.isEnabled() && tokenSigner.isSigned(token)){
+            return resolveSignedToken(token);
+        }
+
+        SessionView session = sessionCache.get(token).orElseGet(() -> {
+            // token dari login yang belum ditulis ke tabel sessions (write-behind)
+            SessionView sessionDb = tokenWriteBehind.find(token)
+                    .or(() -> userSessionRepository.findViewByToken(token))
+                    .orElseThrow(()->new ResponseStatusException(HttpStatus.UNAUTHORIZED,"Unauthorized"));
+            sessionCache.put(token, sessionDb);
+            return sessionDb;
+        });
 
         //cek expired
-        if (user.getTokenExpiredAt() < System.currentTimeMillis()){
+        if (session.expiredAt() < System.currentTimeMillis()){
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED,"Token Expired");
         }
 
-        return user;
+        // sama seperti token signed: data user baru di-load kalau memang dibaca
+        return userRepository.getReferenceById(session.username());
+    }
+
+    private User resolveSignedToken(String token){
+        TokenSigner.SignedToken signedToken = tokenSigner.verify(token)
+                .orElseThrow(()->new ResponseStatusException(HttpStatus.UNAUTHORIZED,"Unauthorized"));
+
+        if (signedToken.expiredAt() < System.currentTimeMillis()){
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED,"Token Expired");
+        }
+        if (tokenRevocationList.isRevoked(signedToken.jti())){
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED,"Unauthorized");
+        }
+
+        // cukup referensi, data user baru di-load kalau memang dibaca (misal GET /api/users/current)
+        return userRepository.getReferenceById(signedToken.username());
     }
 }
@@ -16,7 +16,6 @@ package com.agung.restful.security;
 
 
 import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
 import java.security.SecureRandom;
 import java.util.Arrays;
 
@@ -210,10 +209,32 @@ public class BCrypt {
     static final int MIN_LOG_ROUNDS = 4;
     static final int MAX_LOG_ROUNDS = 31;
 
+    // "$2a$10$" + 22 characters of salt + 31 characters of hash
+    private static final int HASH_LENGTH = 60;
+
+    // State reused by every hash on the same thread; PasswordHasher runs BCrypt on a fixed pool of platform threads
+    private static final ThreadLocal<BCrypt> STATE = ThreadLocal.withInitial(BCrypt::new);
+
     // Expanded Blowfish key
-    private int P[];
+    private final int P[] = new int[P_orig.length];
+
+    private final int S[] = new int[S_orig.length];
+
+    // The first P.length words of key material, identical for every key() call of one hash
+    private final int keyWords[] = new int[P_orig.length];
+
+    private final int saltWords[] = new int[P_orig.length];
+
+    // Password plus the terminating NUL of the $2a$/$2b$/$2x$/$2y$ revisions
+    private final byte key[] = new byte[73];
 
-    private int S[];
+    private final byte salt[] = new byte[BCRYPT_SALT_LEN];
+
+    private final int cdata[] = new int[bf_crypt_ciphertext.length];
+
+    private final byte hashed[] = new byte[bf_crypt_ciphertext.length * 4];
+
+    private final char out[] = new char[HASH_LENGTH];
 
     /**
      * Encode a byte array using bcrypt's slightly-modified base64 encoding scheme. Note
@@ -226,6 +247,21 @@ public class BCrypt {
      * @throws IllegalArgumentException if the length is invalid
      */
     static void encode_base64(byte d[], int len, StringBuilder rs) throws IllegalArgumentException {
+        char buf[] = new char[(d.length * 4 + 2) / 3];
+        rs.append(buf, 0, encode_base64(d, len, buf, 0));
+    }
+
+    /**
+     * Encode a byte array using bcrypt's base64 scheme into a char array
+     *
+     * @param d   the byte array to encode
+     * @param len the number of bytes to encode
+     * @param rs  the destination buffer
+     * @param pos the position in rs to start writing at
+     * @return the position in rs after the last character written
+     * @throws IllegalArgumentException if the length is invalid
+     */
+    private static int encode_base64(byte d[], int len, char rs[], int pos) throws IllegalArgumentException {
         int off = 0;
         int c1, c2;
 
@@ -235,25 +271,26 @@ public class BCrypt {
 
         while (off < len) {
             c1 = d[off++] & 0xff;
-            rs.append(base64_code[(c1 >> 2) & 0x3f]);
+            rs[pos++] = base64_code[(c1 >> 2) & 0x3f];
             c1 = (c1 & 0x03) << 4;
             if (off >= len) {
-                rs.append(base64_code[c1 & 0x3f]);
+                rs[pos++] = base64_code[c1 & 0x3f];
                 break;
             }
             c2 = d[off++] & 0xff;
             c1 |= (c2 >> 4) & 0x0f;
-            rs.append(base64_code[c1 & 0x3f]);
+            rs[pos++] = base64_code[c1 & 0x3f];
             c1 = (c2 & 0x0f) << 2;
             if (off >= len) {
-                rs.append(base64_code[c1 & 0x3f]);
+                rs[pos++] = base64_code[c1 & 0x3f];
                 break;
             }
             c2 = d[off++] & 0xff;
             c1 |= (c2 >> 6) & 0x03;
-            rs.append(base64_code[c1 & 0x3f]);
-            rs.append(base64_code[c2 & 0x3f]);
+            rs[pos++] = base64_code[c1 & 0x3f];
+            rs[pos++] = base64_code[c2 & 0x3f];
         }
+        return pos;
     }
 
     /**
@@ -280,14 +317,27 @@ public class BCrypt {
      * @throws IllegalArgumentException if maxolen is invalid
      */
     static byte[] decode_base64(String s, int maxolen) throws IllegalArgumentException {
-        StringBuilder rs = new StringBuilder();
-        int off = 0, slen = s.length(), olen = 0;
-        byte ret[];
-        byte c1, c2, c3, c4, o;
-
         if (maxolen <= 0) {
             throw new IllegalArgumentException("Invalid maxolen");
         }
+        byte ret[] = new byte[maxolen];
+        int olen = decode_base64(s, 0, s.length(), ret, maxolen);
+        return olen == maxolen ? ret : Arrays.copyOf(ret, olen);
+    }
+
+    /**
+     * Decode part of a string encoded using bcrypt's base64 scheme into a byte array
+     *
+     * @param s       the string to decode
+     * @param off     the position of the first character to decode
+     * @param slen    the position after the last character to decode
+     * @param ret     the destination buffer
+     * @param maxolen the maximum number of bytes to decode
+     * @return the number of bytes decoded
+     */
+    private static int decode_base64(String s, int off, int slen, byte ret[], int maxolen) {
+        int olen = 0;
+        byte c1, c2, c3, c4, o;
 
         while (off < slen - 1 && olen < maxolen) {
             c1 = char64(s.charAt(off++));
@@ -297,7 +347,7 @@ public class BCrypt {
             }
             o = (byte) (c1 << 2);
             o |= (c2 & 0x30) >> 4;
-            rs.append((char) o);
+            ret[olen] = o;
             if (++olen >= maxolen || off >= slen) {
                 break;
             }
@@ -307,145 +357,111 @@ public class BCrypt {
             }
             o = (byte) ((c2 & 0x0f) << 4);
             o |= (c3 & 0x3c) >> 2;
-            rs.append((char) o);
+            ret[olen] = o;
             if (++olen >= maxolen || off >= slen) {
                 break;
             }
             c4 = char64(s.charAt(off++));
             o = (byte) ((c3 & 0x03) << 6);
             o |= c4;
-            rs.append((char) o);
+            ret[olen] = o;
             ++olen;
         }
-
-        ret = new byte[olen];
-        for (off = 0; off < olen; off++) {
-            ret[off] = (byte) rs.charAt(off);
-        }
-        return ret;
+        return olen;
     }
 
     /**
-     * Blowfish encipher a single 64-bit block encoded as two 32-bit halves
+     * Blowfish encipher a single 64-bit block encoded as two 32-bit halves. The arrays
+     * are passed in so the JIT keeps them in registers across the rounds.
      *
-     * @param lr  an array containing the two 32-bit half blocks
-     * @param off the position in the array of the blocks
+     * @param P the expanded P-array
+     * @param S the expanded S-boxes
+     * @param l the left half block
+     * @param r the right half block
+     * @return the enciphered left half in the upper 32 bits, the right half in the lower
      */
-    private void encipher(int lr[], int off) {
-        int i, n, l = lr[off], r = lr[off + 1];
-
-        l ^= this.P[0];
-        for (i = 0; i <= BLOWFISH_NUM_ROUNDS - 2; ) {
+    private static long encipher(int P[], int S[], int l, int r) {
+        l ^= P[0];
+        for (int i = 1; i < BLOWFISH_NUM_ROUNDS; i += 2) {
             // Feistel substitution on left word
-            n = this.S[(l >> 24) & 0xff];
-            n += this.S[0x100 | ((l >> 16) & 0xff)];
-            n ^= this.S[0x200 | ((l >> 8) & 0xff)];
-            n += this.S[0x300 | (l & 0xff)];
-            r ^= n ^ this.P[++i];
+            r ^= (((S[l >>> 24] + S[0x100 | ((l >> 16) & 0xff)]) ^ S[0x200 | ((l >> 8) & 0xff)])
+                    + S[0x300 | (l & 0xff)]) ^ P[i];
 
             // Feistel substitution on right word
-            n = this.S[(r >> 24) & 0xff];
-            n += this.S[0x100 | ((r >> 16) & 0xff)];
-            n ^= this.S[0x200 | ((r >> 8) & 0xff)];
-            n += this.S[0x300 | (r & 0xff)];
-            l ^= n ^ this.P[++i];
-        }
-        lr[off] = r ^ this.P[BLOWFISH_NUM_ROUNDS + 1];
-        lr[off + 1] = l;
+            l ^= (((S[r >>> 24] + S[0x100 | ((r >> 16) & 0xff)]) ^ S[0x200 | ((r >> 8) & 0xff)])
+                    + S[0x300 | (r & 0xff)]) ^ P[i + 1];
+        }
+        return ((long) (r ^ P[BLOWFISH_NUM_ROUNDS + 1]) << 32) | (l & 0xffffffffL);
     }
 
     /**
-     * Cycically extract a word of key material
+     * Cycically extract the first words of key material into words, with or without the
+     * sign-extension bug
      *
-     * @param data  the string to extract the data from
-     * @param offp  a "pointer" (as a one-entry array) to the current offset into data
-     * @param signp a "pointer" (as a one-entry array) to the cumulative flag for
-     *              non-benign sign extension
-     * @return correct and buggy next word of material from data as int[2]
+     * @param data         the bytes to extract the data from
+     * @param len          the number of bytes of data to use
+     * @param words        the destination, filled completely
+     * @param sign_ext_bug true to implement the 2x bug
+     * @return the non-benign sign extension flag in bit 7, and in bit 16 whether the
+     * correct and buggy words differ
      */
-    private static int[] streamtowords(byte data[], int offp[], int signp[]) {
-        int i;
-        int words[] = {0, 0};
-        int off = offp[0];
-        int sign = signp[0];
-
-        for (i = 0; i < 4; i++) {
-            words[0] = (words[0] << 8) | (data[off] & 0xff);
-            words[1] = (words[1] << 8) | data[off]; // sign extension bug
-            if (i > 0) {
-                sign |= words[1] & 0x80;
+    private static int streamtowords(byte data[], int len, int words[], boolean sign_ext_bug) {
+        int off = 0, sign = 0, diff = 0;
+
+        for (int i = 0; i < words.length; i++) {
+            int word = 0, bug = 0;
+            for (int j = 0; j < 4; j++) {
+                word = (word << 8) | (data[off] & 0xff);
+                bug = (bug << 8) | data[off]; // sign extension bug
+                if (j > 0) {
+                    sign |= bug & 0x80;
+                }
+                if (++off == len) {
+                    off = 0;
+                }
             }
-            off = (off + 1) % data.length;
+            diff |= word ^ bug;
+            words[i] = sign_ext_bug ? bug : word;
         }
 
-        offp[0] = off;
-        signp[0] = sign;
-        return words;
-    }
-
-    /**
-     * Cycically extract a word of key material
-     *
-     * @param data the string to extract the data from
-     * @param offp a "pointer" (as a one-entry array) to the current offset into data
-     * @return the next word of material from data
-     */
-    private static int streamtoword(byte data[], int offp[]) {
-        int signp[] = {0};
-        return streamtowords(data, offp, signp)[0];
-    }
-
-    /**
-     * Cycically extract a word of key material, with sign-extension bug
-     *
-     * @param data the string to extract the data from
-     * @param offp a "pointer" (as a one-entry array) to the current offset into data
-     * @return the next word of material from data
-     */
-    private static int streamtoword_bug(byte data[], int offp[]) {
-        int signp[] = {0};
-        return streamtowords(data, offp, signp)[1];
+        diff |= diff >> 16; /* still zero iff exact match */
+        diff &= 0xffff; /* ditto */
+        diff += 0xffff; /* bit 16 set iff "diff" was non-zero (on non-match) */
+        return sign | (diff & 0x10000);
     }
 
     /**
      * Initialise the Blowfish key schedule
      */
     private void init_key() {
-        this.P = P_orig.clone();
-        this.S = S_orig.clone();
+        System.arraycopy(P_orig, 0, this.P, 0, P_orig.length);
+        System.arraycopy(S_orig, 0, this.S, 0, S_orig.length);
     }
 
     /**
      * Key the Blowfish cipher
      *
-     * @param key          an array containing the key
-     * @param sign_ext_bug true to implement the 2x bug
-     * @param safety       bit 16 is set when the safety measure is requested
+     * @param words the first P.length words of key material
      */
-    private void key(byte key[], boolean sign_ext_bug, int safety) {
-        int i;
-        int koffp[] = {0};
-        int lr[] = {0, 0};
-        int plen = this.P.length, slen = this.S.length;
-
-        for (i = 0; i < plen; i++) {
-            if (!sign_ext_bug) {
-                this.P[i] = this.P[i] ^ streamtoword(key, koffp);
-            } else {
-                this.P[i] = this.P[i] ^ streamtoword_bug(key, koffp);
-            }
+    private void key(int words[]) {
+        int P[] = this.P, S[] = this.S;
+        int l = 0, r = 0;
+        long lr;
+
+        for (int i = 0; i < P.length; i++) {
+            P[i] ^= words[i];
         }
 
-        for (i = 0; i < plen; i += 2) {
-            encipher(lr, 0);
-            this.P[i] = lr[0];
-            this.P[i + 1] = lr[1];
+        for (int i = 0; i < P.length; i += 2) {
+            lr = encipher(P, S, l, r);
+            P[i] = l = (int) (lr >>> 32);
+            P[i + 1] = r = (int) lr;
         }
 
-        for (i = 0; i < slen; i += 2) {
-            encipher(lr, 0);
-            this.S[i] = lr[0];
-            this.S[i + 1] = lr[1];
+        for (int i = 0; i < S.length; i += 2) {
+            lr = encipher(P, S, l, r);
+            S[i] = l = (int) (lr >>> 32);
+            S[i + 1] = r = (int) lr;
         }
     }
 
@@ -453,43 +469,28 @@ public class BCrypt {
      * Perform the "enhanced key schedule" step described by Provos and Mazieres in "A
      * Future-Adaptable Password Scheme" https://www.openbsd.org/papers/bcrypt-paper.ps
      *
-     * @param data         salt information
-     * @param key          password information
-     * @param sign_ext_bug true to implement the 2x bug
-     * @param safety       bit 16 is set when the safety measure is requested
+     * @param sign   the non-benign sign extension flag in bit 7 and the mismatch flag in
+     *               bit 16, as returned by streamtowords for the password
+     * @param safety bit 16 is set when the safety measure is requested
      */
-    private void ekskey(byte data[], byte key[], boolean sign_ext_bug, int safety) {
-        int i;
-        int koffp[] = {0}, doffp[] = {0};
-        int lr[] = {0, 0};
-        int plen = this.P.length, slen = this.S.length;
-        int signp[] = {0}; // non-benign sign-extension flag
-        int diff = 0; // zero iff correct and buggy are same
+    private void ekskey(int sign, int safety) {
+        int P[] = this.P, S[] = this.S, key[] = this.keyWords, data[] = this.saltWords;
+        int l = 0, r = 0, d = 0;
+        long lr;
 
-        for (i = 0; i < plen; i++) {
-            int words[] = streamtowords(key, koffp, signp);
-            diff |= words[0] ^ words[1];
-            this.P[i] = this.P[i] ^ words[sign_ext_bug ? 1 : 0];
+        for (int i = 0; i < P.length; i++) {
+            P[i] ^= key[i];
         }
 
-        int sign = signp[0];
-
-        /*
-         * At this point, "diff" is zero iff the correct and buggy algorithms produced
-         * exactly the same result. If so and if "sign" is non-zero, which indicates that
-         * there was a non-benign sign extension, this means that we have a collision
-         * between the correctly computed hash for this password and a set of passwords
-         * that could be supplied to the buggy algorithm. Our safety measure is meant to
-         * protect from such many-buggy to one-correct collisions, by deviating from the
-         * correct algorithm in such cases. Let's check for this.
-         */
-        diff |= diff >> 16; /* still zero iff exact match */
-        diff &= 0xffff; /* ditto */
-        diff += 0xffff; /* bit 16 set iff "diff" was non-zero (on non-match) */
-        sign <<= 9; /* move the non-benign sign extension flag to bit 16 */
-        sign &= ~diff & safety; /* action needed? */
-
         /*
+         * At this point, bit 16 of "sign" is zero iff the correct and buggy algorithms
+         * produced exactly the same result. If so and if the non-benign sign extension
+         * flag is set, this means that we have a collision between the correctly computed
+         * hash for this password and a set of passwords that could be supplied to the
+         * buggy algorithm. Our safety measure is meant to protect from such many-buggy to
+         * one-correct collisions, by deviating from the correct algorithm in such cases.
+         * Let's check for this.
+         *
          * If we have determined that we need to deviate from the correct algorithm, flip
          * bit 16 in initial expanded key. (The choice of 16 is arbitrary, but let's stick
          * to it now. It came out of the approach we used above, and it's not any worse
@@ -500,22 +501,21 @@ public class BCrypt {
          * that could be directly specified by a password to the buggy algorithm (and to
          * the fully correct one as well, but that's a side-effect).
          */
-        this.P[0] ^= sign;
+        P[0] ^= ((sign & 0x80) << 9) & ~sign & safety;
 
-        for (i = 0; i < plen; i += 2) {
-            lr[0] ^= streamtoword(data, doffp);
-            lr[1] ^= streamtoword(data, doffp);
-            encipher(lr, 0);
-            this.P[i] = lr[0];
-            this.P[i + 1] = lr[1];
+        // The 16-byte salt repeats every 4 words
+        for (int i = 0; i < P.length; i += 2) {
+            lr = encipher(P, S, l ^ data[d], r ^ data[d + 1]);
+            d ^= 2;
+            P[i] = l = (int) (lr >>> 32);
+            P[i + 1] = r = (int) lr;
         }
 
-        for (i = 0; i < slen; i += 2) {
-            lr[0] ^= streamtoword(data, doffp);
-            lr[1] ^= streamtoword(data, doffp);
-            encipher(lr, 0);
-            this.S[i] = lr[0];
-            this.S[i + 1] = lr[1];
+        for (int i = 0; i < S.length; i += 2) {
+            lr = encipher(P, S, l ^ data[d], r ^ data[d + 1]);
+            d ^= 2;
+            S[i] = l = (int) (lr >>> 32);
+            S[i + 1] = r = (int) lr;
         }
     }
 
@@ -527,18 +527,18 @@ public class BCrypt {
     }
 
     /**
-     * Perform the central password hashing step in the bcrypt scheme
+     * Perform the central password hashing step in the bcrypt scheme, leaving the binary
+     * hashed password in hashed
      *
-     * @param password     the password to hash
-     * @param salt         the binary salt to hash with the password
+     * @param keylen       the length of the password in key
+     * @param saltlen      the length of the binary salt in salt
      * @param log_rounds   the binary logarithm of the number of rounds of hashing to apply
      * @param sign_ext_bug true to implement the 2x bug
      * @param safety       bit 16 is set when the safety measure is requested
-     * @return an array containing the binary hashed password
      */
-    private byte[] crypt_raw(byte password[], byte salt[], int log_rounds, boolean sign_ext_bug, int safety,
-                             boolean for_check) {
-        int cdata[] = bf_crypt_ciphertext.clone();
+    private void crypt_raw(int keylen, int saltlen, int log_rounds, boolean sign_ext_bug, int safety,
+                           boolean for_check) {
+        int cdata[] = this.cdata;
         int clen = cdata.length;
 
         long rounds;
@@ -557,35 +557,39 @@ public class BCrypt {
             }
         }
 
-        if (salt.length != BCRYPT_SALT_LEN) {
+        if (saltlen != BCRYPT_SALT_LEN) {
             throw new IllegalArgumentException("Bad salt length");
         }
+        if (keylen == 0) {
+            throw new IllegalArgumentException("password cannot be empty");
+        }
+
+        int sign = streamtowords(this.key, keylen, this.keyWords, sign_ext_bug);
+        streamtowords(this.salt, BCRYPT_SALT_LEN, this.saltWords, false);
 
         init_key();
-        ekskey(salt, password, sign_ext_bug, safety);
-        for (int i = 0; i < rounds; i++) {
-            key(password, sign_ext_bug, safety);
-            key(salt, false, safety);
+        ekskey(sign, safety);
+        for (long i = 0; i < rounds; i++) {
+            key(this.keyWords);
+            key(this.saltWords);
         }
 
+        System.arraycopy(bf_crypt_ciphertext, 0, cdata, 0, clen);
         for (int i = 0; i < 64; i++) {
-            for (int j = 0; j < (clen >> 1); j++) {
-                encipher(cdata, j << 1);
+            for (int j = 0; j < clen; j += 2) {
+                long lr = encipher(this.P, this.S, cdata[j], cdata[j + 1]);
+                cdata[j] = (int) (lr >>> 32);
+                cdata[j + 1] = (int) lr;
             }
         }
 
-        byte[] ret = new byte[clen * 4];
+        byte ret[] = this.hashed;
         for (int i = 0, j = 0; i < clen; i++) {
             ret[j++] = (byte) ((cdata[i] >> 24) & 0xff);
             ret[j++] = (byte) ((cdata[i] >> 16) & 0xff);
             ret[j++] = (byte) ((cdata[i] >> 8) & 0xff);
             ret[j++] = (byte) (cdata[i] & 0xff);
         }
-        return ret;
-    }
-
-    private static String hashpwforcheck(byte[] passwordb, String salt) {
-        return hashpw(passwordb, salt, true);
     }
 
     /**
@@ -600,7 +604,11 @@ public class BCrypt {
 
         passwordb = password.getBytes(StandardCharsets.UTF_8);
 
-        return hashpw(passwordb, salt);
+        try {
+            return hashpw(passwordb, salt);
+        } finally {
+            Arrays.fill(passwordb, (byte) 0);
+        }
     }
 
     /**
@@ -611,16 +619,22 @@ public class BCrypt {
      * @return the hashed password
      */
     public static String hashpw(byte passwordb[], String salt) {
-        return hashpw(passwordb, salt, false);
+        BCrypt B = STATE.get();
+        try {
+            return new String(B.out, 0, B.hashpw(passwordb, salt, false));
+        } finally {
+            Arrays.fill(B.out, (char) 0);
+        }
     }
 
-    private static String hashpw(byte passwordb[], String salt, boolean for_check) {
-        BCrypt B;
-        String real_salt;
-        byte saltb[], hashed[];
+    /**
+     * Hash a password into out
+     *
+     * @return the number of characters written to out
+     */
+    private int hashpw(byte passwordb[], String salt, boolean for_check) {
         char minor = (char) 0;
         int rounds, off;
-        StringBuilder rs = new StringBuilder();
 
         if (passwordb.length > 72) {
             throw new IllegalArgumentException("password cannot be more than 72 bytes");
@@ -656,31 +670,37 @@ public class BCrypt {
         if (off == 4 && saltLength < 29) {
             throw new IllegalArgumentException("Invalid salt");
         }
-        rounds = Integer.parseInt(salt.substring(off, off + 2));
+        rounds = Integer.parseInt(salt, off, off + 2, 10);
 
-        real_salt = salt.substring(off + 3, off + 25);
-        saltb = decode_base64(real_salt, BCRYPT_SALT_LEN);
+        int saltlen = decode_base64(salt, off + 3, off + 25, this.salt, BCRYPT_SALT_LEN);
 
+        int keylen = passwordb.length;
+        System.arraycopy(passwordb, 0, this.key, 0, keylen);
         if (minor >= 'a') {
-            passwordb = Arrays.copyOf(passwordb, passwordb.length + 1);
+            this.key[keylen++] = 0;
         }
 
-        B = new BCrypt();
-        hashed = B.crypt_raw(passwordb, saltb, rounds, minor == 'x', minor == 'a' ? 0x10000 : 0, for_check);
+        try {
+            crypt_raw(keylen, saltlen, rounds, minor == 'x', minor == 'a' ? 0x10000 : 0, for_check);
+        } finally {
+            // the per-thread state outlives the call, so the password must not stay in it
+            Arrays.fill(this.key, (byte) 0);
+            Arrays.fill(this.keyWords, 0);
+        }
 
-        rs.append("$2");
+        char rs[] = this.out;
+        int pos = 0;
+        rs[pos++] = '$';
+        rs[pos++] = '2';
         if (minor >= 'a') {
-            rs.append(minor);
-        }
-        rs.append("$");
-        if (rounds < 10) {
-            rs.append("0");
-        }
-        rs.append(rounds);
-        rs.append("$");
-        encode_base64(saltb, saltb.length, rs);
-        encode_base64(hashed, bf_crypt_ciphertext.length * 4 - 1, rs);
-        return rs.toString();
+            rs[pos++] = minor;
+        }
+        rs[pos++] = '$';
+        rs[pos++] = (char) ('0' + rounds / 10);
+        rs[pos++] = (char) ('0' + rounds % 10);
+        rs[pos++] = '$';
+        pos = encode_base64(this.salt, saltlen, rs, pos);
+        return encode_base64(this.hashed, bf_crypt_ciphertext.length * 4 - 1, rs, pos);
     }
 
     /**
@@ -780,7 +800,11 @@ public class BCrypt {
      */
     public static boolean checkpw(String plaintext, String hashed) {
         byte[] passwordb = plaintext.getBytes(StandardCharsets.UTF_8);
-        return equalsNoEarlyReturn(hashed, hashpwforcheck(passwordb, hashed));
+        try {
+            return checkpw(passwordb, hashed);
+        } finally {
+            Arrays.fill(passwordb, (byte) 0);
+        }
     }
 
     /**
@@ -792,11 +816,22 @@ public class BCrypt {
      * @since 5.3
      */
     public static boolean checkpw(byte[] passwordb, String hashed) {
-        return equalsNoEarlyReturn(hashed, hashpwforcheck(passwordb, hashed));
+        BCrypt B = STATE.get();
+        try {
+            return equalsNoEarlyReturn(hashed, B.out, B.hashpw(passwordb, hashed, true));
+        } finally {
+            Arrays.fill(B.out, (char) 0);
+        }
     }
 
-    static boolean equalsNoEarlyReturn(String a, String b) {
-        return MessageDigest.isEqual(a.getBytes(StandardCharsets.UTF_8), b.getBytes(StandardCharsets.UTF_8));
+    static boolean equalsNoEarlyReturn(String a, char b[], int blen) {
+        if (a.length() != blen) {
+            return false;
+        }
+        int diff = 0;
+        for (int i = 0; i < blen; i++) {
+            diff |= a.charAt(i) ^ b[i];
+        }
+        return diff == 0;
     }
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,204 @@
+package com.agung.restful.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Hash dan verifikasi password BCrypt di pool thread sendiri.
+ * <p>
+ * Dengan virtual thread setiap request login langsung menjalankan BCrypt, jadi lonjakan login memakai semua core dan
+ * request lain ikut lambat. Di sini paling banyak app.password-hash.threads hash berjalan bersamaan (default setengah
+ * jumlah CPU), sisanya menunggu di antrian. Jika antrian (app.password-hash.queue-size) penuh request langsung ditolak
+ * dengan 429, daripada menunggu lama lalu timeout di client.
+ * <p>
+ * Jika app.password-hash.target-ms diisi, cost dipilih saat startup: cost terbesar yang waktu hash-nya di mesin ini
+ * tidak melebihi target, minimal app.password-hash.log-rounds. Hash lama dengan cost berbeda diganti setelah login
+ * berhasil (lihat {@link #rehash}).
+ */
+@Slf4j
+@Component
+public class PasswordHasher {
+
+    public static final String EXECUTOR_NAME = "password-hash";
+
+    // 0: setengah jumlah CPU, minimal 1
+    @Value("${app.password-hash.threads:0}")
+    private int threads;
+
+    @Value("${app.password-hash.queue-size:64}")
+    private int queueSize;
+
+    // cost tetap, atau batas bawah jika target-ms diisi
+    @Value("${app.password-hash.log-rounds:10}")
+    private int logRounds;
+
+    // 0: tanpa kalibrasi
+    @Value("${app.password-hash.target-ms:0}")
+    private long targetMs;
+
+    @Value("${app.password-hash.rehash-on-login:true}")
+    private boolean rehashOnLogin;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private ThreadPoolExecutor executor;
+
+    private Timer hashTimer;
+
+    private Timer verifyTimer;
+
+    private Timer rehashTimer;
+
+    private Counter rejected;
+
+    private Counter rehashSkipped;
+
+    @PostConstruct
+    void init() {
+        // log-rounds di luar 4..31 langsung gagal saat startup, bukan saat register pertama
+        BCrypt.gensalt(logRounds);
+        if (targetMs > 0) {
+            logRounds = calibrate();
+        }
+        log.info("BCrypt cost {}", logRounds);
+
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        BlockingQueue<Runnable> queue = queueSize > 0 ? new ArrayBlockingQueue<>(queueSize) : new SynchronousQueue<>();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS, queue,
+                Thread.ofPlatform().name(EXECUTOR_NAME + "-", 0).daemon(true).factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        // executor.queued (kedalaman antrian), executor.active, executor.completed, ... dengan tag name=password-hash
+        new ExecutorServiceMetrics(executor, EXECUTOR_NAME, Tags.empty()).bindTo(meterRegistry);
+        // waktu BCrypt saja, tanpa waktu menunggu di antrian
+        hashTimer = Timer.builder("password.hash").tag("operation", "hash").register(meterRegistry);
+        verifyTimer = Timer.builder("password.hash").tag("operation", "verify").register(meterRegistry);
+        rehashTimer = Timer.builder("password.hash").tag("operation", "rehash").register(meterRegistry);
+        rejected = Counter.builder("password.hash.rejected").register(meterRegistry);
+        rehashSkipped = Counter.builder("password.rehash.skipped").register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public String hash(String password) {
+        return run(hashTimer, () -> BCrypt.hashpw(password, BCrypt.gensalt(logRounds)));
+    }
+
+    public boolean matches(String password, String hash) {
+        return run(verifyTimer, () -> BCrypt.checkpw(password, hash));
+    }
+
+    public int getLogRounds() {
+        return logRounds;
+    }
+
+    /**
+     * true jika cost hash tersimpan berbeda dengan cost saat ini.
+     */
+    public boolean needsRehash(String hash) {
+        if (!rehashOnLogin || hash.length() < 7) {
+            return false;
+        }
+        // $2a$10$... atau $2$10$...
+        int off = hash.charAt(2) == '$' ? 3 : 4;
+        try {
+            return Integer.parseInt(hash, off, off + 2, 10) != logRounds;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Hash ulang password dengan cost saat ini di pool tanpa ditunggu, lalu hasilnya diberikan ke store (dari thread
+     * pool). Hanya dijalankan saat tidak ada hash yang mengantri supaya tidak membuat login lain ditolak; jika
+     * dilewati, hash diganti pada login berikutnya.
+     */
+    public void rehash(String password, Consumer<String> store) {
+        if (!executor.getQueue().isEmpty()) {
+            rehashSkipped.increment();
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    store.accept(rehashTimer.record(() -> BCrypt.hashpw(password, BCrypt.gensalt(logRounds))));
+                } catch (RuntimeException e) {
+                    log.warn("rehash password gagal: {}", e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rehashSkipped.increment();
+        }
+    }
+
+    // waktu hash di cost log-rounds diukur, setiap cost berikutnya dua kali lebih lama
+    private int calibrate() {
+        String password = "calibrate";
+        for (int i = 0; i < 20; i++) {
+            BCrypt.hashpw(password, BCrypt.gensalt(BCrypt.MIN_LOG_ROUNDS));
+        }
+        String salt = BCrypt.gensalt(logRounds);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            BCrypt.hashpw(password, salt);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        double millis = best / 1_000_000.0;
+        int cost = logRounds;
+        while (cost < BCrypt.MAX_LOG_ROUNDS && millis * 2 <= targetMs) {
+            cost++;
+            millis *= 2;
+        }
+        log.info("kalibrasi BCrypt: cost {} sekitar {} ms, target {} ms", cost, Math.round(millis), targetMs);
+        return cost;
+    }
+
+    private <T> T run(Timer timer, Supplier<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(() -> timer.record(task));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Too many requests, please retry later");
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.agung.restful.security;
+
+import com.agung.restful.cache.LruCache;
+import com.agung.restful.cache.LruCacheMetrics;
+import com.agung.restful.repository.SessionView;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Cache token (X-API-TOKEN) ke session supaya request yang sudah login tidak perlu query ke tabel sessions.
+ * <p>
+ * Entry kadaluarsa pada nilai paling kecil antara ttl dan expiry session.
+ */
+@Component
+public class SessionCache {
+
+    @Value("${app.session-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.session-cache.maximum-size:10000}")
+    private int maximumSize;
+
+    @Value("${app.session-cache.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private LruCache<String, SessionView> cache;
+
+    @PostConstruct
+    void init() {
+        cache = new LruCache<>(maximumSize);
+        new LruCacheMetrics(cache, "session").bindTo(meterRegistry);
+    }
+
+    public Optional<SessionView> get(String token) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        return cache.get(token);
+    }
+
+    public void put(String token, SessionView session) {
+        if (!enabled) {
+            return;
+        }
+        long expiresAt = Math.min(System.currentTimeMillis() + (ttlSeconds * 1000), session.expiredAt());
+        cache.put(token, session, expiresAt);
+    }
+
+    public void invalidate(String token) {
+        if (Objects.isNull(token)) {
+            return;
+        }
+        cache.invalidate(token);
+
+        // hapus lagi setelah commit, jaga2 ada request lain yang mengisi cache dengan data lama sebelum commit
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(token);
+                }
+            });
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+}
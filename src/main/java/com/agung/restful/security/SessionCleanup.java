@@ -0,0 +1,49 @@
+package com.agung.restful.security;
+
+import com.agung.restful.repository.UserSessionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Menghapus session yang sudah kadaluarsa per batch, setiap batch transaksi sendiri supaya lock di tabel sessions
+ * tidak ditahan lama dan login yang berjalan bersamaan tidak menunggu.
+ */
+@Slf4j
+@Component
+public class SessionCleanup {
+
+    @Value("${app.session.cleanup-batch-size:1000}")
+    private int batchSize;
+
+    @Autowired
+    private UserSessionRepository userSessionRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Scheduled(fixedDelayString = "${app.session.cleanup-ms:60000}")
+    public void deleteExpired() {
+        long now = System.currentTimeMillis();
+        int total = 0;
+        int deleted;
+        do {
+            Integer count = transactionTemplate.execute(status -> {
+                List<String> tokens = userSessionRepository.findExpiredTokens(now, PageRequest.ofSize(batchSize));
+                return tokens.isEmpty() ? 0 : userSessionRepository.deleteByTokenIn(tokens);
+            });
+            deleted = Objects.requireNonNullElse(count, 0);
+            total += deleted;
+        } while (deleted == batchSize);
+        if (total > 0) {
+            log.info("hapus {} session yang sudah kadaluarsa", total);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.agung.restful.security;
+
+import com.agung.restful.entity.RevokedToken;
+import com.agung.restful.repository.RevokedTokenRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Daftar jti token signed yang sudah logout.
+ * <p>
+ * Sumber kebenarannya tabel revoked_tokens. Salinan di memori di-refresh secara berkala sehingga logout di node lain
+ * terlihat paling lambat setelah satu interval refresh. Entry hanya dibuang setelah token-nya sendiri kadaluarsa,
+ * jadi ukuran daftar ini dibatasi oleh jumlah logout selama umur token.
+ */
+@Slf4j
+@Component
+public class TokenRevocationList {
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Autowired
+    private TokenSigner tokenSigner;
+
+    @Value("${app.token.revocation-refresh-ms:30000}")
+    private long refreshMs;
+
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+    private volatile long lastRefreshAt = 0;
+
+    public boolean isRevoked(String jti) {
+        return revoked.containsKey(jti);
+    }
+
+    @Transactional
+    public void revoke(String jti, Long expiredAt) {
+        revokedTokenRepository.save(new RevokedToken(jti, System.currentTimeMillis(), expiredAt));
+        // baru masuk daftar di memori setelah logout commit; jika rollback token masih berlaku di database
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                revoked.put(jti, expiredAt);
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${app.token.revocation-refresh-ms:30000}")
+    @Transactional
+    public void refresh() {
+        if (!tokenSigner.isEnabled()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        // mundur satu interval, jaga2 ada revoke dari node lain yang commit-nya terlambat
+        long since = Math.max(lastRefreshAt - refreshMs, 0);
+        for (RevokedToken token : revokedTokenRepository.findAllByRevokedAtGreaterThanEqualAndExpiredAtGreaterThan(since, now)) {
+            revoked.put(token.getJti(), token.getExpiredAt());
+        }
+        revoked.values().removeIf(expiredAt -> expiredAt < now);
+        lastRefreshAt = now;
+
+        int deleted = revokedTokenRepository.deleteExpired(now);
+        if (deleted > 0) {
+            log.info("hapus {} revoked token yang sudah kadaluarsa", deleted);
+        }
+    }
+}
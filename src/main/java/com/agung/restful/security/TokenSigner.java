@@ -0,0 +1,112 @@
+package com.agung.restful.security;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Membuat dan memverifikasi token yang ditandatangani HMAC-SHA256, sehingga token bisa dicek tanpa query ke database.
+ * <p>
+ * Format: base64url(username).expiredAt.jti.base64url(hmac). Token UUID lama tidak mengandung titik,
+ * jadi keduanya bisa dibedakan dengan {@link #isSigned(String)}.
+ */
+@Component
+public class TokenSigner {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    @Value("${app.token.mode:uuid}")
+    private String mode;
+
+    @Value("${app.token.secret:}")
+    private String secret;
+
+    private Mac prototype;
+
+    @PostConstruct
+    void init() throws GeneralSecurityException {
+        if (!isEnabled()) {
+            return;
+        }
+        byte[] key = secret.getBytes(StandardCharsets.UTF_8);
+        if (key.length < 32) {
+            throw new IllegalStateException("app.token.secret minimal 32 byte jika app.token.mode=signed");
+        }
+        prototype = Mac.getInstance(ALGORITHM);
+        prototype.init(new SecretKeySpec(key, ALGORITHM));
+    }
+
+    public boolean isEnabled() {
+        return "signed".equalsIgnoreCase(mode);
+    }
+
+    public boolean isSigned(String token) {
+        return token.indexOf('.') >= 0;
+    }
+
+    public String sign(String username, Long expiredAt, String jti) {
+        String payload = ENCODER.encodeToString(username.getBytes(StandardCharsets.UTF_8)) + "." + expiredAt + "." + jti;
+        return payload + "." + ENCODER.encodeToString(mac(payload));
+    }
+
+    /**
+     * Kunci baris sessions untuk token signed. Bukan jti apa adanya: jti terbaca di dalam token, dan tanpa secret
+     * kunci ini tidak bisa dibuat dari jti, jadi tidak bisa dipakai sebagai token UUID.
+     */
+    public String sessionKey(String jti) {
+        return ENCODER.encodeToString(mac("session." + jti));
+    }
+
+    /**
+     * @return kosong jika format salah atau tanda tangan tidak cocok, expiry tidak dicek di sini
+     */
+    public Optional<SignedToken> verify(String token) {
+        if (!isEnabled()) {
+            return Optional.empty();
+        }
+        int signatureIndex = token.lastIndexOf('.');
+        if (signatureIndex < 0) {
+            return Optional.empty();
+        }
+        String payload = token.substring(0, signatureIndex);
+        String[] parts = payload.split("\\.");
+        if (parts.length != 3) {
+            return Optional.empty();
+        }
+        try {
+            byte[] signature = DECODER.decode(token.substring(signatureIndex + 1));
+            if (!MessageDigest.isEqual(signature, mac(payload))) {
+                return Optional.empty();
+            }
+            String username = new String(DECODER.decode(parts[0]), StandardCharsets.UTF_8);
+            return Optional.of(new SignedToken(username, Long.parseLong(parts[1]), parts[2]));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    private byte[] mac(String payload) {
+        try {
+            // Mac tidak thread-safe, clone dari prototype jauh lebih murah daripada Mac.getInstance + init
+            Mac mac = (Mac) prototype.clone();
+            return mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public record SignedToken(String username, Long expiredAt, String jti) {
+    }
+}
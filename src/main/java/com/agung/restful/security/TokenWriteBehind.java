@@ -0,0 +1,162 @@
+package com.agung.restful.security;
+
+import com.agung.restful.entity.User;
+import com.agung.restful.entity.UserSession;
+import com.agung.restful.repository.SessionView;
+import com.agung.restful.repository.UserRepository;
+import com.agung.restful.repository.UserSessionRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Session login yang ditulis ke tabel sessions di belakang (app.token.write-behind.enabled).
+ * <p>
+ * Login tidak menunggu INSERT sessions: token langsung dikenali dari daftar pending di sini, lalu ditulis per batch
+ * (satu transaksi, JDBC batch) setiap app.token.write-behind.flush-ms. Logout tetap sinkron, lihat {@link #cancel}.
+ * Apa yang hilang saat crash dijelaskan di application.properties.
+ */
+@Slf4j
+@Component
+public class TokenWriteBehind {
+
+    @Value("${app.token.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.token.write-behind.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.token.write-behind.max-pending:100000}")
+    private int maxPending;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserSessionRepository userSessionRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // token -> session yang belum ditulis, urut login
+    private final Map<String, UserSession> pending = new LinkedHashMap<>();
+
+    // satu flush pada satu waktu, logout menunggu flush yang sedang berjalan
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private Timer flushTimer;
+
+    @PostConstruct
+    void init() {
+        Gauge.builder("token.write-behind.pending", this, TokenWriteBehind::pending).register(meterRegistry);
+        flushTimer = Timer.builder("token.write-behind.flush").register(meterRegistry);
+    }
+
+    // shutdown normal: sisa session ditulis sebelum datasource ditutup
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Mencatat session login untuk ditulis nanti. false jika pending sudah mencapai max-pending, session harus ditulis
+     * langsung oleh pemanggil.
+     */
+    public synchronized boolean offer(String token, String username, Long expiredAt) {
+        if (pending.size() >= maxPending) {
+            return false;
+        }
+        pending.put(token, new UserSession(token, username, System.currentTimeMillis(), expiredAt));
+        return true;
+    }
+
+    public synchronized Optional<SessionView> find(String token) {
+        return Optional.ofNullable(pending.get(token))
+                .map(session -> new SessionView(session.getUsername(), session.getExpiredAt()));
+    }
+
+    /**
+     * Membuang session yang belum ditulis dan menunggu flush yang sedang berjalan. Dipanggil logout sebelum menghapus
+     * session di database, supaya flush tidak menulis session yang sudah logout.
+     */
+    public void cancel(String token) {
+        synchronized (this) {
+            pending.remove(token);
+        }
+        flushLock.lock();
+        flushLock.unlock();
+    }
+
+    @Scheduled(fixedDelayString = "${app.token.write-behind.flush-ms:200}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            while (true) {
+                List<UserSession> batch = new ArrayList<>(batchSize);
+                synchronized (this) {
+                    for (UserSession session : pending.values()) {
+                        if (batch.size() >= batchSize) {
+                            break;
+                        }
+                        batch.add(session);
+                    }
+                }
+                if (batch.isEmpty()) {
+                    return;
+                }
+                flushTimer.record(() -> transactionTemplate.executeWithoutResult(status -> write(batch)));
+                // baru dibuang setelah commit, sampai saat itu token tetap dikenali dari sini
+                synchronized (this) {
+                    batch.forEach(session -> pending.remove(session.getToken()));
+                }
+            }
+        } catch (RuntimeException e) {
+            // tetap pending, dicoba lagi pada flush berikutnya
+            log.warn("flush session gagal: {}", e.getMessage());
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // user yang sudah dihapus sejak login dilewati, supaya foreign key tidak menggagalkan satu batch terus-menerus
+    private void write(List<UserSession> batch) {
+        Set<String> usernames = batch.stream().map(UserSession::getUsername).collect(Collectors.toSet());
+        Set<String> existing = userRepository.findAllById(usernames).stream()
+                .map(User::getUsername)
+                .collect(Collectors.toSet());
+        userSessionRepository.saveAll(batch.stream()
+                .filter(session -> existing.contains(session.getUsername()))
+                .toList());
+    }
+
+    private synchronized int pending() {
+        return pending.size();
+    }
+}
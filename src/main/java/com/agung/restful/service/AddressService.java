@@ -3,11 +3,13 @@ package com.agung.restful.service;
 import com.agung.restful.entity.Address;
 import com.agung.restful.entity.Contact;
 import com.agung.restful.entity.User;
+import com.agung.restful.id.UuidV7;
 import com.agung.restful.model.response.AddressResponse;
 import com.agung.restful.model.request.CreateAddressRequest;
 import com.agung.restful.model.request.UpdateAddressRequest;
 import com.agung.restful.repository.AddressRepository;
 import com.agung.restful.repository.ContactRepository;
+import com.agung.restful.repository.EntityVersion;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
@@ -15,7 +17,8 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.util.List;
-import java.util.UUID;
+import java.util.Objects;
+import java.util.Set;
 
 @Service
 public class AddressService {
@@ -29,15 +32,17 @@ public class AddressService {
     @Autowired
     private ValidationService validationService;
 
+    @Autowired
+    private ContactChangeLog contactChangeLog;
+
     @Transactional
     public AddressResponse create(User user,CreateAddressRequest request){
         validationService.validate(request);
 
-        Contact contact = contactRepository.findFirstByUserAndId(user, request.getContactId())
-                .orElseThrow(()->new ResponseStatusException(HttpStatus.NOT_FOUND,"Contact Not Found"));
+        Contact contact = lockContact(user, request.getContactId());
 
         Address address = new Address();
-        address.setId(UUID.randomUUID().toString());
+        address.setId(UuidV7.generate());
         address.setContact(contact);
         address.setStreet(request.getStreet());
         address.setCity(request.getCity());
@@ -45,7 +50,9 @@ public class AddressService {
         address.setProvince(request.getProvince());
         address.setPostalCode(request.getPostalCode());
 
-        addressRepository.save(address);
+        // flush dulu, perubahan dicatat setelah baris address ditulis (lihat ContactChangeLog)
+        addressRepository.saveAndFlush(address);
+        contactChangeLog.changed(user.getUsername(), contact.getId());
 
         return toAddressResponse(address);
     }
@@ -58,28 +65,49 @@ public class AddressService {
                 .province(address.getProvince())
                 .country(address.getCountry())
                 .postalCode(address.getPostalCode())
+                .version(address.getVersion())
                 .build();
     }
     @Transactional(readOnly = true)
     public AddressResponse get(User user, String contactId, String addressid){
-        Contact contact = contactRepository.findFirstByUserAndId(user, contactId)
-                .orElseThrow(()->new ResponseStatusException(HttpStatus.NOT_FOUND,"Contact Not Found"));
+        Address address = addressRepository.findScoped(user.getUsername(), contactId, addressid)
+                .orElseThrow(() -> notFound(user, contactId));
 
-        Address addressResponse = addressRepository.findFirstByContactAndId(contact,addressid)
-                .orElseThrow(()->new ResponseStatusException(HttpStatus.NOT_FOUND,"Address Not Found"));
+        return toAddressResponse(address);
+    }
 
-        return toAddressResponse(addressResponse);
+    /**
+     * Version address untuk ETag tanpa memuat address-nya.
+     */
+    @Transactional(readOnly = true)
+    public long version(User user, String contactId, String addressId){
+        return addressRepository.findVersionScoped(user.getUsername(), contactId, addressId)
+                .orElseThrow(() -> notFound(user, contactId));
     }
 
+    /**
+     * Id dan version semua address milik contact (urut id) untuk ETag daftar address.
+     */
+    @Transactional(readOnly = true)
+    public List<EntityVersion> versions(User user, String contactId){
+        List<EntityVersion> versions = addressRepository.findAllVersionsScoped(user.getUsername(), contactId);
+        if (versions.isEmpty() && !contactRepository.existsByUserAndId(user, contactId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND,"Contact Not Found");
+        }
+        return versions;
+    }
+
+    /**
+     * ifMatch: version dari header If-Match, null jika tidak dikirim atau *.
+     */
     @Transactional
-    public AddressResponse update(User user, UpdateAddressRequest request){
+    public AddressResponse update(User user, UpdateAddressRequest request, Set<Long> ifMatch){
         validationService.validate(request);
 
-        Contact contact = contactRepository.findFirstByUserAndId(user, request.getContactId())
-                .orElseThrow(()->new ResponseStatusException(HttpStatus.NOT_FOUND,"Contact Not Found"));
-
-        Address address = addressRepository.findFirstByContactAndId(contact, request.getAddressId())
-                .orElseThrow(()->new ResponseStatusException(HttpStatus.NOT_FOUND,"Address Not Found"));
+        lockContact(user, request.getContactId());
+        Address address = addressRepository.findScoped(user.getUsername(), request.getContactId(), request.getAddressId())
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,"Address Not Found"));
+        checkVersion(address, ifMatch);
 
         address.setStreet(request.getStreet());
         address.setCity(request.getCity());
@@ -87,27 +115,58 @@ public class AddressService {
         address.setCountry(request.getCountry());
         address.setPostalCode(request.getPostalCode());
 
-        addressRepository.save(address);
+        // flush supaya version di response (ETag) sudah version yang baru
+        addressRepository.saveAndFlush(address);
+        contactChangeLog.changed(user.getUsername(), request.getContactId());
         return toAddressResponse(address);
     }
 
     @Transactional
-    public void remove(User user,String contactId, String addressId){
-        Contact contact = contactRepository.findFirstByUserAndId(user, contactId)
-                .orElseThrow(()->new ResponseStatusException(HttpStatus.NOT_FOUND,"Contact Not Found"));
-
-        Address address = addressRepository.findFirstByContactAndId(contact, addressId)
-                .orElseThrow(()->new ResponseStatusException(HttpStatus.NOT_FOUND,"Address Not Found"));
-
+    public void remove(User user,String contactId, String addressId, Set<Long> ifMatch){
+        // dimuat lalu dihapus per entity (DELETE ... WHERE version = ?), bukan DELETE HQL yang mengosongkan
+        // second-level cache address milik semua user
+        lockContact(user, contactId);
+        Address address = addressRepository.findScoped(user.getUsername(), contactId, addressId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,"Address Not Found"));
+        checkVersion(address, ifMatch);
         addressRepository.delete(address);
+        addressRepository.flush();
+        contactChangeLog.changed(user.getUsername(), contactId);
     }
 
     @Transactional(readOnly = true)
     public List<AddressResponse> list(User user,String contactId){
-        Contact contact = contactRepository.findFirstByUserAndId(user, contactId)
-                .orElseThrow(()->new ResponseStatusException(HttpStatus.NOT_FOUND,"Contact Not Found"));
-
-        List<Address> addresses = addressRepository.findAllByContact(contact);
+        List<Address> addresses = addressRepository.findAllScoped(user.getUsername(), contactId);
+        if (addresses.isEmpty() && !contactRepository.existsByUserAndId(user, contactId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND,"Contact Not Found");
+        }
         return addresses.stream().map(this::toAddressResponse).toList();
     }
+
+    /**
+     * Baris contact dikunci sebelum baris address ditulis: INSERT address mengambil shared lock contact (foreign key),
+     * lalu ContactChangeLog meng-update contact yang sama. Tanpa lock ini dua penulisan address bersamaan di contact
+     * yang sama saling menunggu.
+     */
+    private Contact lockContact(User user, String contactId) {
+        return contactRepository.findLockedByUserAndId(user, contactId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,"Contact Not Found"));
+    }
+
+    // perubahan bersamaan setelah cek ini tetap ditolak oleh @Version (UPDATE/DELETE ... WHERE version = ?)
+    private void checkVersion(Address address, Set<Long> ifMatch) {
+        if (Objects.nonNull(ifMatch) && !ifMatch.contains(address.getVersion())) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Address has been modified");
+        }
+    }
+
+    /**
+     * Address dicari sekaligus dengan contact-nya, jadi contact hanya dicek ulang kalau address tidak ditemukan.
+     */
+    private ResponseStatusException notFound(User user, String contactId) {
+        if (!contactRepository.existsByUserAndId(user, contactId)) {
+            return new ResponseStatusException(HttpStatus.NOT_FOUND,"Contact Not Found");
+        }
+        return new ResponseStatusException(HttpStatus.NOT_FOUND,"Address Not Found");
+    }
 }
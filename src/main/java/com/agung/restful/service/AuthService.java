@@ -1,10 +1,16 @@
 package com.agung.restful.service;
 
 import com.agung.restful.entity.User;
+import com.agung.restful.entity.UserSession;
 import com.agung.restful.model.request.LoginUserRequest;
 import com.agung.restful.model.response.TokenResponse;
 import com.agung.restful.repository.UserRepository;
-import com.agung.restful.security.BCrypt;
+import com.agung.restful.repository.UserSessionRepository;
+import com.agung.restful.security.PasswordHasher;
+import com.agung.restful.security.SessionCache;
+import com.agung.restful.security.TokenRevocationList;
+import com.agung.restful.security.TokenSigner;
+import com.agung.restful.security.TokenWriteBehind;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
@@ -23,25 +29,61 @@ public class AuthService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserSessionRepository userSessionRepository;
+
     @Autowired
     private ValidationService validationService;
 
-    @Transactional
+    @Autowired
+    private SessionCache sessionCache;
+
+    @Autowired
+    private PasswordHasher passwordHasher;
+
+    @Autowired
+    private TokenSigner tokenSigner;
+
+    @Autowired
+    private TokenRevocationList tokenRevocationList;
+
+    @Autowired
+    private ContactEventBus contactEventBus;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private TokenWriteBehind tokenWriteBehind;
+
+    // tanpa @Transactional: selama menunggu BCrypt tidak ada koneksi pool yang ditahan, baca user dan simpan session
+    // masing-masing transaksi pendek sendiri
     public TokenResponse login(LoginUserRequest request){
         validationService.validate(request);
 
         User user = userRepository.findById(request.getUserName())
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "username or password wrong"));
 
-        if (BCrypt.checkpw(request.getPassword(), user.getPassword())){
-            user.setToken(UUID.randomUUID().toString());
-            user.setTokenExpiredAt(next30Days());
-            userRepository.save(user);
+        if (passwordHasher.matches(request.getPassword(), user.getPassword())){
+            String jti = UUID.randomUUID().toString();
+            Long expiredAt = next30Days();
+            // mode signed: baris sessions berisi sessionKey(jti), bukan jti yang terbaca di token
+            String sessionToken = tokenSigner.isEnabled() ? tokenSigner.sessionKey(jti) : jti;
+            // satu baris sessions per login, baris users tidak diubah; write-behind: ditulis per batch oleh TokenWriteBehind
+            if (!tokenWriteBehind.isEnabled() || !tokenWriteBehind.offer(sessionToken, user.getUsername(), expiredAt)){
+                userSessionRepository.save(new UserSession(sessionToken, user.getUsername(), System.currentTimeMillis(), expiredAt));
+            }
+            rehash(user, request.getPassword());
+
+            // mode signed: yang dikirim ke client token yang sudah ditandatangani
+            String token = tokenSigner.isEnabled()
+                    ? tokenSigner.sign(user.getUsername(), expiredAt, jti)
+                    : jti;
 
             return TokenResponse.builder()
-                    .token(user.getToken())
-                    .expiredAt(user.getTokenExpiredAt())
-                    .formatStringExpireAt(formatDate(user.getTokenExpiredAt()))
+                    .token(token)
+                    .expiredAt(expiredAt)
+                    .formatStringExpireAt(formatDate(expiredAt))
                     .build();
         }else{
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "username or password wrong");
@@ -49,12 +91,32 @@ public class AuthService {
     }
 
     @Transactional
-    public void logout(User user){
-        user.setToken(null);
-        user.setTokenExpiredAt(null);
-        userRepository.save(user);
+    public void logout(User user, String token){
+        // hanya session token ini, session user di perangkat lain tetap berlaku
+        String sessionToken = token;
+        if (tokenSigner.isEnabled() && tokenSigner.isSigned(token)){
+            TokenSigner.SignedToken signedToken = tokenSigner.verify(token)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Unauthorized"));
+            tokenRevocationList.revoke(signedToken.jti(), signedToken.expiredAt());
+            sessionToken = tokenSigner.sessionKey(signedToken.jti());
+        }
+        // logout selalu langsung ke database; token yang belum ditulis tidak boleh ditulis setelah ini
+        tokenWriteBehind.cancel(sessionToken);
+        sessionCache.invalidate(token);
+        userSessionRepository.deleteByToken(sessionToken);
+        // stream SSE yang dibuka dengan token ini tidak boleh terus menerima event
+        contactEventBus.disconnect(user.getUsername(), token);
     }
 
+    // setelah login berhasil, hash baru ditulis di transaksi sendiri dari pool password-hash
+    private void rehash(User user, String password){
+        if (!passwordHasher.needsRehash(user.getPassword())){
+            return;
+        }
+        String username = user.getUsername();
+        String oldHash = user.getPassword();
+        passwordHasher.rehash(password, newHash -> userService.updatePasswordHash(username, oldHash, newHash));
+    }
 
     private Long next30Days(){
         return System.currentTimeMillis()+(1000L * 60 * 60 * 24 * 30);
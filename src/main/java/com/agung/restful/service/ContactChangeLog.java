@@ -0,0 +1,69 @@
+package com.agung.restful.service;
+
+import com.agung.restful.id.UuidBinaryType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Mencatat perubahan contact untuk sinkronisasi delta (GET /api/contacts/changes).
+ * <p>
+ * Setiap penulisan mengambil nomor berikutnya dari contact_change_seq. Baris itu terkunci sampai commit, jadi penulisan
+ * lain milik user yang sama mendapat nomor lebih besar dan baru commit sesudahnya: client yang sudah membaca sampai
+ * nomor N tidak akan melewatkan perubahan bernomor kurang dari N.
+ * <p>
+ * Dipanggil di akhir transaksi penulisan, setelah flush, supaya baris nomor hanya terkunci sebentar. Urutan lock di
+ * semua jalur: baris contact (ditulis, atau dikunci lebih dulu sebelum address-nya ditulis), baris address, lalu
+ * contact_change_seq. Tabel contact_change_seq tidak dirujuk foreign key dari tabel yang ditulis, jadi shared lock
+ * dari pengecekan foreign key tidak pernah bertabrakan dengan lock nomor.
+ * <p>
+ * Setiap perubahan juga dipublish sebagai {@link ContactChangedEvent}, dikirim ke {@link ContactEventBus} setelah commit.
+ */
+@Component
+public class ContactChangeLog {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * changed: contact yang dibuat/diubah (termasuk address-nya), deleted: contact yang dihapus (tombstone).
+     */
+    public void record(String username, Collection<String> changed, Collection<String> deleted) {
+        if (changed.isEmpty() && deleted.isEmpty()) {
+            return;
+        }
+        // baris dibuat pada penulisan pertama user; penulisan bersamaan menunggu lock baris yang sama, bukan gap
+        jdbcTemplate.update("INSERT INTO contact_change_seq (username, seq) VALUES (?, LAST_INSERT_ID(1)) " +
+                "ON DUPLICATE KEY UPDATE seq = LAST_INSERT_ID(seq + 1)", username);
+        Long seq = jdbcTemplate.queryForObject("SELECT LAST_INSERT_ID()", Long.class);
+        long now = System.currentTimeMillis();
+
+        if (!changed.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE contact SET change_seq = ?, updated_at = ? WHERE id = ?", changed.stream()
+                    .map(id -> new Object[]{seq, now, UuidBinaryType.toBytes(id)})
+                    .toList());
+        }
+        if (!deleted.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO contact_tombstone (username, change_seq, contact_id, deleted_at) VALUES (?, ?, ?, ?)",
+                    deleted.stream()
+                            .map(id -> new Object[]{username, seq, UuidBinaryType.toBytes(id), now})
+                            .toList());
+        }
+        eventPublisher.publishEvent(new ContactChangedEvent(username, seq, List.copyOf(changed), List.copyOf(deleted)));
+    }
+
+    public void changed(String username, String contactId) {
+        record(username, List.of(contactId), List.of());
+    }
+
+    public void deleted(String username, String contactId) {
+        record(username, List.of(), List.of(contactId));
+    }
+}
@@ -0,0 +1,159 @@
+package com.agung.restful.service;
+
+import com.agung.restful.id.UuidBinaryType;
+import com.agung.restful.model.response.AddressResponse;
+import com.agung.restful.model.response.ContactChangeResponse;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Objects;
+
+/**
+ * Perubahan contact milik user dengan change_seq di (since, watermark] sebagai NDJSON, lihat {@link ContactChangeLog}.
+ * <p>
+ * Sama seperti export: dibaca streaming (fetch size Integer.MIN_VALUE) lewat index (username, change_seq), jadi yang
+ * dibaca dan dikirim hanya contact yang berubah dan memori yang dipakai hanya satu contact.
+ */
+@Service
+public class ContactChangeService {
+
+    // urutan (change_seq, id) sama dengan urutan index (InnoDB menyimpan id di setiap secondary index), tanpa filesort
+    private static final String CHANGES_SQL = "SELECT c.id, c.change_seq, c.updated_at, c.first_name, c.last_name, " +
+            "c.email, c.phone, a.id AS address_id, a.street, a.city, a.province, a.country, a.postal_code " +
+            "FROM contact c FORCE INDEX (idx_contact_username_change_seq) LEFT JOIN addresses a ON a.contact_id = c.id " +
+            "WHERE c.username = ? AND c.change_seq > ? AND c.change_seq <= ? ORDER BY c.change_seq, c.id";
+
+    private static final String TOMBSTONES_SQL = "SELECT contact_id, change_seq FROM contact_tombstone " +
+            "WHERE username = ? AND change_seq > ? AND change_seq <= ? ORDER BY change_seq";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Nomor perubahan terakhir yang sudah commit, dipakai client sebagai since berikutnya. Nilai ini hanya terlihat
+     * setelah transaksi yang mengambilnya commit, jadi semua perubahan sampai nomor ini sudah bisa dibaca.
+     */
+    public long watermark(String username, Long since) {
+        if (Objects.nonNull(since) && since < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "since must not be negative");
+        }
+        // belum ada baris: user belum pernah menulis contact
+        long watermark = jdbcTemplate.queryForList("SELECT seq FROM contact_change_seq WHERE username = ?", Long.class,
+                username).stream().findFirst().orElse(0L);
+        if (Objects.nonNull(since) && since > watermark) {
+            throw new ResponseStatusException(HttpStatus.GONE, "since is newer than the latest change, full resync required");
+        }
+        return watermark;
+    }
+
+    /**
+     * since null: sinkronisasi awal, termasuk contact yang belum pernah berubah sejak kolom change_seq ditambahkan.
+     */
+    public void changes(String username, Long since, long watermark, OutputStream outputStream) throws IOException {
+        long from = Objects.requireNonNullElse(since, -1L);
+        JsonGenerator generator = objectMapper.createGenerator(outputStream);
+        ChangeRowHandler handler = new ChangeRowHandler(generator);
+        try {
+            query(CHANGES_SQL, username, from, watermark, handler);
+            handler.write();
+            if (from >= 0) {
+                query(TOMBSTONES_SQL, username, from, watermark, rs -> handler.write(ContactChangeResponse.builder()
+                        .id(UuidBinaryType.toString(rs.getBytes("contact_id")))
+                        .seq(rs.getLong("change_seq"))
+                        .deleted(true)
+                        .build()));
+            }
+        } catch (UncheckedIOException e) {
+            // biasanya client memutus koneksi di tengah stream
+            throw e.getCause();
+        }
+        generator.flush();
+    }
+
+    private void query(String sql, String username, long from, long watermark, RowCallbackHandler handler) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(Integer.MIN_VALUE);
+            statement.setString(1, username);
+            statement.setLong(2, from);
+            statement.setLong(3, watermark);
+            return statement;
+        }, handler);
+    }
+
+    private static class ChangeRowHandler implements RowCallbackHandler {
+
+        private final JsonGenerator generator;
+
+        private ContactChangeResponse current;
+
+        private ChangeRowHandler(JsonGenerator generator) {
+            this.generator = generator;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            String id = UuidBinaryType.toString(rs.getBytes("id"));
+            if (Objects.isNull(current) || !current.getId().equals(id)) {
+                write();
+                long updatedAt = rs.getLong("updated_at");
+                current = ContactChangeResponse.builder()
+                        .id(id)
+                        .seq(rs.getLong("change_seq"))
+                        .updatedAt(rs.wasNull() ? null : updatedAt)
+                        .firstName(rs.getString("first_name"))
+                        .lastName(rs.getString("last_name"))
+                        .email(rs.getString("email"))
+                        .phone(rs.getString("phone"))
+                        .addresses(new ArrayList<>())
+                        .build();
+            }
+
+            byte[] addressId = rs.getBytes("address_id");
+            if (Objects.nonNull(addressId)) {
+                current.getAddresses().add(AddressResponse.builder()
+                        .id(UuidBinaryType.toString(addressId))
+                        .street(rs.getString("street"))
+                        .city(rs.getString("city"))
+                        .province(rs.getString("province"))
+                        .country(rs.getString("country"))
+                        .postalCode(rs.getString("postal_code"))
+                        .build());
+            }
+        }
+
+        private void write() {
+            if (Objects.isNull(current)) {
+                return;
+            }
+            write(current);
+            current = null;
+        }
+
+        private void write(ContactChangeResponse change) {
+            try {
+                generator.writeObject(change);
+                generator.writeRaw('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
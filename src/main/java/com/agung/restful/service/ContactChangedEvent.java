@@ -0,0 +1,9 @@
+package com.agung.restful.service;
+
+import java.util.List;
+
+/**
+ * Dipublish {@link ContactChangeLog} untuk setiap penulisan contact/address, diteruskan ke stream SSE setelah commit.
+ */
+public record ContactChangedEvent(String username, long seq, List<String> changed, List<String> deleted) {
+}
@@ -0,0 +1,73 @@
+package com.agung.restful.service;
+
+import com.agung.restful.cache.LruCache;
+import com.agung.restful.cache.LruCacheMetrics;
+import com.agung.restful.model.request.SearchContactRequest;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+import java.util.function.LongSupplier;
+
+/**
+ * Cache singkat untuk hasil COUNT pencarian contact, per (username, filter).
+ * <p>
+ * Di-invalidate oleh penulisan contact milik user yang sama di node ini; perubahan dari node lain terlihat setelah ttl.
+ */
+@Component
+public class ContactCountCache {
+
+    @Value("${app.contact-count-cache.maximum-size:10000}")
+    private int maximumSize;
+
+    @Value("${app.contact-count-cache.ttl-seconds:30}")
+    private long ttlSeconds;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private LruCache<Key, Long> cache;
+
+    @PostConstruct
+    void init() {
+        cache = new LruCache<>(maximumSize);
+        new LruCacheMetrics(cache, "contact-count").bindTo(meterRegistry);
+    }
+
+    public long get(String username, SearchContactRequest request, LongSupplier loader) {
+        Key key = new Key(username, request.getName(), request.getEmail(), request.getPhone());
+        Optional<Long> cached = cache.get(key);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        long count = loader.getAsLong();
+        cache.put(key, count, System.currentTimeMillis() + (ttlSeconds * 1000));
+        return count;
+    }
+
+    public void invalidate(String username) {
+        cache.invalidateIf(key -> key.username().equals(username));
+
+        // hapus lagi setelah commit, jaga2 ada request lain yang menghitung ulang sebelum commit
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidateIf(key -> key.username().equals(username));
+                }
+            });
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private record Key(String username, String name, String email, String phone) {
+    }
+}
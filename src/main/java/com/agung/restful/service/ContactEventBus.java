@@ -0,0 +1,355 @@
+package com.agung.restful.service;
+
+import com.agung.restful.model.response.ContactEventResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Stream SSE perubahan contact (GET /api/contacts/events) untuk subscriber di node ini.
+ * <p>
+ * Event hanya berisi seq dan id contact, isi contact dibaca client lewat GET /api/contacts/changes. Event dikirim
+ * setelah commit ke antrian terbatas milik setiap subscriber. Antrian dikirim oleh satu virtual thread hanya selama
+ * isinya belum habis, jadi koneksi yang diam tidak memegang thread dan client yang lambat hanya menahan antriannya
+ * sendiri. Jika antrian penuh (app.contact-events.overflow):
+ * <ul>
+ *     <li>resync: event yang belum terkirim dibuang dan diganti satu event resync berisi seq terakhir yang sudah
+ *     dikirim, client membaca /changes?since=seq itu</li>
+ *     <li>disconnect: stream ditutup, client reconnect dengan Last-Event-ID lalu mendapat event resync</li>
+ * </ul>
+ * Hanya penulisan di node ini yang dikirim; dengan beberapa node client tetap perlu /changes secara berkala.
+ */
+@Slf4j
+@Component
+public class ContactEventBus {
+
+    public static final String RESYNC = "resync";
+
+    public static final String DISCONNECT = "disconnect";
+
+    // penanda di antrian, isi event resync dan heartbeat dibuat saat dikirim
+    private static final Message RESYNC_MARKER = new Message(RESYNC, 0, null);
+
+    private static final Message HEARTBEAT = new Message(null, 0, null);
+
+    @Value("${app.contact-events.buffer-size:256}")
+    private int bufferSize;
+
+    @Value("${app.contact-events.max-subscribers-per-user:16}")
+    private int maxSubscribersPerUser;
+
+    @Value("${app.contact-events.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    @Value("${app.contact-events.overflow:resync}")
+    private String overflow;
+
+    @Autowired
+    private ContactChangeService contactChangeService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private Counter overflows;
+
+    @PostConstruct
+    void init() {
+        if (!overflow.equals(RESYNC) && !overflow.equals(DISCONNECT)) {
+            throw new IllegalStateException("app.contact-events.overflow must be resync or disconnect: " + overflow);
+        }
+        Gauge.builder("contact.events.subscribers", subscriberCount, AtomicInteger::get).register(meterRegistry);
+        overflows = Counter.builder("contact.events.overflows").tag("policy", overflow).register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * token: token yang membuka stream, untuk menutupnya saat session itu logout. lastEventId: header Last-Event-ID
+     * saat client reconnect. Jika ada perubahan setelahnya (terlewat selama terputus), event pertama adalah resync.
+     */
+    public SseEmitter subscribe(String username, String token, Long lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(username, token, emitter);
+        subscribers.compute(username, (key, current) -> {
+            Set<Subscriber> userSubscribers = Objects.requireNonNullElseGet(current, ConcurrentHashMap::newKeySet);
+            if (userSubscribers.size() >= maxSubscribersPerUser) {
+                throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Too many event streams");
+            }
+            userSubscribers.add(subscriber);
+            subscriberCount.incrementAndGet();
+            return userSubscribers;
+        });
+        emitter.onTimeout(emitter::complete);
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+
+        // watermark dibaca setelah terdaftar: perubahan yang commit di antaranya bisa terkirim dua kali, tidak hilang
+        long watermark;
+        try {
+            watermark = contactChangeService.watermark(username, lastEventId);
+        } catch (RuntimeException e) {
+            remove(subscriber);
+            throw e;
+        }
+        subscriber.start(Objects.requireNonNullElse(lastEventId, watermark), watermark);
+        return emitter;
+    }
+
+    /**
+     * Menutup semua stream milik user.
+     */
+    public void disconnect(String username) {
+        Set<Subscriber> userSubscribers = subscribers.get(username);
+        if (Objects.nonNull(userSubscribers)) {
+            userSubscribers.forEach(Subscriber::close);
+        }
+    }
+
+    /**
+     * Menutup stream yang dibuka dengan token tersebut setelah logout, stream dari session lain milik user tetap jalan.
+     */
+    public void disconnect(String username, String token) {
+        Set<Subscriber> userSubscribers = subscribers.get(username);
+        if (Objects.nonNull(userSubscribers)) {
+            userSubscribers.stream()
+                    .filter(subscriber -> subscriber.token.equals(token))
+                    .forEach(Subscriber::close);
+        }
+    }
+
+    // setelah commit, dari thread yang melakukan commit: hanya memasukkan event ke antrian
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChange(ContactChangedEvent event) {
+        Set<Subscriber> userSubscribers = subscribers.get(event.username());
+        if (Objects.isNull(userSubscribers) || userSubscribers.isEmpty()) {
+            return;
+        }
+        // diserialisasi sekali untuk semua subscriber
+        Message message = new Message("change", event.seq(), json(ContactEventResponse.builder()
+                .seq(event.seq())
+                .changed(event.changed())
+                .deleted(event.deleted())
+                .build()));
+        userSubscribers.forEach(subscriber -> subscriber.offer(message));
+    }
+
+    // komentar kosong supaya proxy tidak memutus koneksi yang diam, sekaligus mendeteksi client yang sudah pergi
+    @Scheduled(fixedDelayString = "${app.contact-events.heartbeat-ms:30000}")
+    public void heartbeat() {
+        subscribers.values().forEach(userSubscribers -> userSubscribers.forEach(subscriber -> subscriber.offer(HEARTBEAT)));
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscriber.closed = true;
+        subscribers.computeIfPresent(subscriber.username, (key, userSubscribers) -> {
+            if (userSubscribers.remove(subscriber)) {
+                subscriberCount.decrementAndGet();
+            }
+            return userSubscribers.isEmpty() ? null : userSubscribers;
+        });
+    }
+
+    private String json(ContactEventResponse response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Message(String name, long seq, String data) {
+    }
+
+    private class Subscriber {
+
+        private final String username;
+
+        private final String token;
+
+        private final SseEmitter emitter;
+
+        // ReentrantLock dan bukan synchronized supaya drain di virtual thread tidak mem-pin carrier thread
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final ArrayDeque<Message> queue = new ArrayDeque<>();
+
+        // true sampai start(): event yang datang sebelum watermark dibaca ditahan di antrian
+        private boolean draining = true;
+
+        private boolean resyncPending;
+
+        private volatile boolean closed;
+
+        // seq terakhir yang sudah dikirim ke client, hanya diubah oleh thread yang sedang mengirim
+        private long sentSeq;
+
+        Subscriber(String username, String token, SseEmitter emitter) {
+            this.username = username;
+            this.token = token;
+            this.emitter = emitter;
+        }
+
+        void start(long sentSeq, long watermark) {
+            lock.lock();
+            try {
+                this.sentSeq = sentSeq;
+                if (sentSeq < watermark) {
+                    queue.clear();
+                    queue.add(RESYNC_MARKER);
+                    resyncPending = true;
+                }
+                if (queue.isEmpty()) {
+                    draining = false;
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+            executor.execute(this::drain);
+        }
+
+        void offer(Message message) {
+            lock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                if (message == HEARTBEAT) {
+                    // masih ada yang dikirim, heartbeat tidak perlu
+                    if (draining) {
+                        return;
+                    }
+                } else if (resyncPending) {
+                    // perubahan ini ikut terbaca lewat /changes setelah resync
+                    return;
+                } else if (queue.size() >= bufferSize) {
+                    overflows.increment();
+                    queue.clear();
+                    if (overflow.equals(DISCONNECT)) {
+                        closed = true;
+                    } else {
+                        resyncPending = true;
+                        queue.add(RESYNC_MARKER);
+                    }
+                    message = null;
+                }
+                if (Objects.nonNull(message)) {
+                    queue.add(message);
+                }
+                if (draining) {
+                    return;
+                }
+                draining = true;
+            } finally {
+                lock.unlock();
+            }
+            executor.execute(this::drain);
+        }
+
+        // stream ditutup oleh thread pengirim, supaya thread yang memanggil tidak menunggu send ke client yang lambat
+        void close() {
+            lock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                queue.clear();
+                if (draining) {
+                    return;
+                }
+                draining = true;
+            } finally {
+                lock.unlock();
+            }
+            executor.execute(this::drain);
+        }
+
+        private void drain() {
+            while (true) {
+                Message message;
+                lock.lock();
+                try {
+                    if (closed) {
+                        draining = false;
+                        break;
+                    }
+                    message = queue.poll();
+                    if (Objects.isNull(message)) {
+                        draining = false;
+                        return;
+                    }
+                    if (message == RESYNC_MARKER) {
+                        resyncPending = false;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                try {
+                    send(message);
+                } catch (IOException | IllegalStateException e) {
+                    // client sudah pergi atau stream sudah selesai (timeout)
+                    log.debug("stream event {} ditutup: {}", username, e.getMessage());
+                    remove(this);
+                    return;
+                }
+            }
+            emitter.complete();
+            // callback onCompletion baru dipanggil container setelah dispatch, jumlah subscriber langsung dikurangi
+            remove(this);
+        }
+
+        private void send(Message message) throws IOException {
+            if (message == HEARTBEAT) {
+                emitter.send(SseEmitter.event().comment(""));
+            } else if (message == RESYNC_MARKER) {
+                emitter.send(SseEmitter.event()
+                        .name(RESYNC)
+                        .id(String.valueOf(sentSeq))
+                        .data(json(ContactEventResponse.builder().since(sentSeq).build())));
+            } else {
+                emitter.send(SseEmitter.event()
+                        .name(message.name())
+                        .id(String.valueOf(message.seq()))
+                        .data(message.data()));
+                sentSeq = Math.max(sentSeq, message.seq());
+            }
+        }
+    }
+}
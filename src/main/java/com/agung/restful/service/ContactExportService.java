@@ -0,0 +1,206 @@
+package com.agung.restful.service;
+
+import com.agung.restful.id.UuidBinaryType;
+import com.agung.restful.model.response.AddressResponse;
+import com.agung.restful.model.response.ContactExportResponse;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Export semua contact milik user beserta address-nya sebagai NDJSON (satu contact per baris).
+ * <p>
+ * Satu query contact LEFT JOIN addresses yang diurutkan per contact, dibaca streaming dengan fetch size
+ * Integer.MIN_VALUE (MySQL Connector/J mengirim baris satu per satu, tidak ditampung di memori). Jadi memori yang
+ * dipakai hanya satu contact, berapapun jumlah contact-nya.
+ * <p>
+ * Selama export berjalan satu koneksi pool dipegang, jadi jumlah export dibatasi per user
+ * (app.contact-export.max-per-user) dan per node (app.contact-export.max-concurrent), selebihnya ditolak dengan 429.
+ * Export yang lebih lama dari app.contact-export.timeout-ms dihentikan dan koneksinya dikembalikan.
+ */
+@Service
+public class ContactExportService {
+
+    // tanpa FORCE INDEX optimizer memilih idx_contact_username_search (covering) lalu filesort seluruh contact user,
+    // artinya server menampung semua baris sebelum baris pertama dikirim. ORDER BY hanya c.id karena urutan
+    // lintas dua tabel selalu filesort, address per contact tetap keluar berurutan lewat idx_addresses_contact_id
+    private static final String EXPORT_SQL = "SELECT c.id, c.first_name, c.last_name, c.email, c.phone, " +
+            "a.id AS address_id, a.street, a.city, a.province, a.country, a.postal_code " +
+            "FROM contact c FORCE INDEX (idx_contact_username_id) LEFT JOIN addresses a ON a.contact_id = c.id " +
+            "WHERE c.username = ? ORDER BY c.id";
+
+    @Value("${app.contact-export.max-concurrent:8}")
+    private int maxConcurrent;
+
+    @Value("${app.contact-export.max-per-user:2}")
+    private int maxPerUser;
+
+    @Value("${app.contact-export.timeout-ms:600000}")
+    private long timeoutMs;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Semaphore permits;
+
+    private final Map<String, Integer> running = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        permits = new Semaphore(maxConcurrent);
+        Gauge.builder("contact.export.active", permits, semaphore -> maxConcurrent - semaphore.availablePermits())
+                .register(meterRegistry);
+    }
+
+    public long timeoutMs() {
+        return timeoutMs;
+    }
+
+    /**
+     * Slot export milik user, ditutup setelah export selesai (berhasil atau tidak). 429 jika batas sudah tercapai.
+     */
+    public Slot acquire(String username) {
+        if (!permits.tryAcquire()) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Too many exports, please retry later");
+        }
+        try {
+            running.compute(username, (key, count) -> {
+                int current = Objects.requireNonNullElse(count, 0);
+                if (current >= maxPerUser) {
+                    throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Too many exports");
+                }
+                return current + 1;
+            });
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        return new Slot(username);
+    }
+
+    public void export(String username, OutputStream outputStream) throws IOException {
+        JsonGenerator generator = objectMapper.createGenerator(outputStream);
+        ExportRowHandler handler = new ExportRowHandler(generator, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs));
+        try {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(EXPORT_SQL,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(Integer.MIN_VALUE);
+                statement.setString(1, username);
+                return statement;
+            }, handler);
+            handler.write();
+        } catch (UncheckedIOException e) {
+            // biasanya client memutus koneksi di tengah export
+            throw e.getCause();
+        }
+        generator.flush();
+    }
+
+    public class Slot implements AutoCloseable {
+
+        private final String username;
+
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Slot(String username) {
+            this.username = username;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                running.computeIfPresent(username, (key, count) -> count > 1 ? count - 1 : null);
+                permits.release();
+            }
+        }
+    }
+
+    private static class ExportRowHandler implements RowCallbackHandler {
+
+        private final JsonGenerator generator;
+
+        private final long deadline;
+
+        private ContactExportResponse current;
+
+        private ExportRowHandler(JsonGenerator generator, long deadline) {
+            this.generator = generator;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            // timeout async request menutup response, tapi tidak menghentikan query yang masih membaca baris
+            if (System.nanoTime() - deadline > 0) {
+                throw new UncheckedIOException(new IOException("Export timed out"));
+            }
+            String id = UuidBinaryType.toString(rs.getBytes("id"));
+            if (Objects.isNull(current) || !current.getId().equals(id)) {
+                write();
+                current = ContactExportResponse.builder()
+                        .id(id)
+                        .firstName(rs.getString("first_name"))
+                        .lastName(rs.getString("last_name"))
+                        .email(rs.getString("email"))
+                        .phone(rs.getString("phone"))
+                        .addresses(new ArrayList<>())
+                        .build();
+            }
+
+            byte[] addressId = rs.getBytes("address_id");
+            if (Objects.nonNull(addressId)) {
+                current.getAddresses().add(AddressResponse.builder()
+                        .id(UuidBinaryType.toString(addressId))
+                        .street(rs.getString("street"))
+                        .city(rs.getString("city"))
+                        .province(rs.getString("province"))
+                        .country(rs.getString("country"))
+                        .postalCode(rs.getString("postal_code"))
+                        .build());
+            }
+        }
+
+        private void write() {
+            if (Objects.isNull(current)) {
+                return;
+            }
+            try {
+                generator.writeObject(current);
+                generator.writeRaw('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            current = null;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.agung.restful.service;
+
+import com.agung.restful.model.response.ImportJobResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Status import contact yang sedang/baru selesai berjalan di node ini.
+ * <p>
+ * Hanya di memori: job yang sudah selesai dihapus setelah ttl, dan jumlah job dibatasi supaya tidak tumbuh terus.
+ */
+@Component
+public class ContactImportJobs {
+
+    public static final String RUNNING = "RUNNING";
+
+    public static final String COMPLETED = "COMPLETED";
+
+    public static final String FAILED = "FAILED";
+
+    @Value("${app.contact-import.job-ttl-seconds:3600}")
+    private long ttlSeconds;
+
+    @Value("${app.contact-import.max-jobs:1000}")
+    private int maxJobs;
+
+    @Value("${app.contact-import.max-errors:100}")
+    private int maxErrors;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    public Job start(String username, String format) {
+        prune();
+        Job job = new Job(UUID.randomUUID().toString(), username, format, maxErrors);
+        jobs.put(job.id, job);
+        return job;
+    }
+
+    public Optional<Job> get(String username, String id) {
+        return Optional.ofNullable(jobs.get(id))
+                .filter(job -> job.username.equals(username));
+    }
+
+    public List<Job> list(String username) {
+        return jobs.values().stream()
+                .filter(job -> job.username.equals(username))
+                .sorted(Comparator.comparingLong((Job job) -> job.startedAt).reversed())
+                .toList();
+    }
+
+    private void prune() {
+        long expired = System.currentTimeMillis() - (ttlSeconds * 1000);
+        jobs.values().removeIf(job -> job.finishedAt != 0 && job.finishedAt < expired);
+
+        // masih penuh: buang job selesai yang paling lama, job yang berjalan tidak pernah dibuang
+        if (jobs.size() >= maxJobs) {
+            jobs.values().stream()
+                    .filter(job -> job.finishedAt != 0)
+                    .sorted(Comparator.comparingLong(job -> job.finishedAt))
+                    .limit(jobs.size() - maxJobs + 1L)
+                    .toList()
+                    .forEach(job -> jobs.remove(job.id));
+        }
+    }
+
+    public static class Job {
+
+        private final String id;
+
+        private final String username;
+
+        private final String format;
+
+        private final int maxErrors;
+
+        private final long startedAt = System.currentTimeMillis();
+
+        private final AtomicLong processed = new AtomicLong();
+
+        private final AtomicLong imported = new AtomicLong();
+
+        private final AtomicLong failed = new AtomicLong();
+
+        private final List<String> errors = new ArrayList<>();
+
+        private volatile String status = RUNNING;
+
+        private volatile long finishedAt;
+
+        private Job(String id, String username, String format, int maxErrors) {
+            this.id = id;
+            this.username = username;
+            this.format = format;
+            this.maxErrors = maxErrors;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        void processed() {
+            processed.incrementAndGet();
+        }
+
+        void imported(int count) {
+            imported.addAndGet(count);
+        }
+
+        void failed(long row, String message) {
+            failed.incrementAndGet();
+            addError("row " + row + ": " + message);
+        }
+
+        void finish(String status, String message) {
+            if (Objects.nonNull(message)) {
+                addError(message);
+            }
+            this.finishedAt = System.currentTimeMillis();
+            this.status = status;
+        }
+
+        private void addError(String message) {
+            synchronized (errors) {
+                if (errors.size() < maxErrors) {
+                    errors.add(message);
+                }
+            }
+        }
+
+        public ImportJobResponse toResponse() {
+            List<String> errorsCopy;
+            synchronized (errors) {
+                errorsCopy = errors.isEmpty() ? null : List.copyOf(errors);
+            }
+            return ImportJobResponse.builder()
+                    .id(id)
+                    .status(status)
+                    .format(format)
+                    .processed(processed.get())
+                    .imported(imported.get())
+                    .failed(failed.get())
+                    .errors(errorsCopy)
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt == 0 ? null : finishedAt)
+                    .build();
+        }
+    }
+}
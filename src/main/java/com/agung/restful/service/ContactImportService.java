@@ -0,0 +1,233 @@
+package com.agung.restful.service;
+
+import com.agung.restful.entity.Address;
+import com.agung.restful.entity.Contact;
+import com.agung.restful.entity.User;
+import com.agung.restful.id.UuidV7;
+import com.agung.restful.model.request.CreateAddressRequest;
+import com.agung.restful.model.request.CreateContactRequest;
+import com.agung.restful.model.request.ImportContactRequest;
+import com.agung.restful.model.response.ImportJobResponse;
+import com.agung.restful.repository.AddressRepository;
+import com.agung.restful.repository.ContactRepository;
+import com.fasterxml.jackson.databind.DatabindException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Import contact dari CSV (baris pertama header) atau NDJSON (satu contact per baris).
+ * <p>
+ * Body dibaca per baris dengan MappingIterator, tidak pernah ditampung utuh. Baris yang valid dikumpulkan sampai
+ * app.contact-import.batch-size lalu di-commit dalam satu transaksi (JDBC batch), jadi memori yang dipakai hanya satu
+ * batch berapapun besar file-nya. Batch yang sudah di-commit tidak di-rollback kalau import berhenti di tengah.
+ */
+@Service
+public class ContactImportService {
+
+    public static final String CSV = "csv";
+
+    public static final String NDJSON = "ndjson";
+
+    private static final CsvMapper CSV_MAPPER = CsvMapper.builder()
+            .enable(CsvParser.Feature.EMPTY_STRING_AS_NULL)
+            .enable(CsvParser.Feature.TRIM_SPACES)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+
+    @Autowired
+    private ContactRepository contactRepository;
+
+    @Autowired
+    private AddressRepository addressRepository;
+
+    @Autowired
+    private ValidationService validationService;
+
+    @Autowired
+    private ContactSearchIndex contactSearchIndex;
+
+    @Autowired
+    private ContactCountCache contactCountCache;
+
+    @Autowired
+    private ContactChangeLog contactChangeLog;
+
+    @Autowired
+    private ContactImportJobs contactImportJobs;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${app.contact-import.batch-size:1000}")
+    private int batchSize;
+
+    public ImportJobResponse importContacts(User user, String format, InputStream input) {
+        ContactImportJobs.Job job = contactImportJobs.start(user.getUsername(), format);
+        List<Contact> contacts = new ArrayList<>(batchSize);
+        List<Address> addresses = new ArrayList<>();
+        long row = 0;
+        try (MappingIterator<ImportContactRequest> iterator = reader(format).readValues(input)) {
+            while (iterator.hasNextValue()) {
+                row++;
+                job.processed();
+                ImportContactRequest request;
+                try {
+                    request = iterator.nextValue();
+                } catch (DatabindException e) {
+                    // baris berikutnya tetap dibaca, MappingIterator melompati sisa baris yang rusak
+                    job.failed(row, e.getOriginalMessage());
+                    continue;
+                }
+                if (Objects.isNull(request)) {
+                    job.failed(row, "empty row");
+                    continue;
+                }
+
+                String errors = add(user, request, contacts, addresses);
+                if (Objects.nonNull(errors)) {
+                    job.failed(row, errors);
+                    continue;
+                }
+                if (contacts.size() >= batchSize) {
+                    commit(user, job, contacts, addresses);
+                }
+            }
+            commit(user, job, contacts, addresses);
+            job.finish(ContactImportJobs.COMPLETED, null);
+        } catch (IOException e) {
+            // body tidak bisa dibaca lagi (format rusak atau koneksi putus)
+            job.finish(ContactImportJobs.FAILED, "row " + (row + 1) + ": " + e.getMessage());
+        } catch (RuntimeException e) {
+            job.finish(ContactImportJobs.FAILED, e.getMessage());
+            throw e;
+        }
+        return job.toResponse();
+    }
+
+    public ImportJobResponse get(User user, String jobId) {
+        return contactImportJobs.get(user.getUsername(), jobId)
+                .map(ContactImportJobs.Job::toResponse)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Import job not found"));
+    }
+
+    public List<ImportJobResponse> list(User user) {
+        return contactImportJobs.list(user.getUsername()).stream()
+                .map(ContactImportJobs.Job::toResponse)
+                .toList();
+    }
+
+    private ObjectReader reader(String format) {
+        if (CSV.equals(format)) {
+            return CSV_MAPPER.readerFor(ImportContactRequest.class)
+                    .with(CsvSchema.emptySchema().withHeader());
+        }
+        return objectMapper.readerFor(ImportContactRequest.class);
+    }
+
+    /**
+     * Validasi satu baris dengan constraint CreateContactRequest/CreateAddressRequest, lalu tambahkan ke batch.
+     */
+    private String add(User user, ImportContactRequest request, List<Contact> contacts, List<Address> addresses) {
+        String errors = validationService.errors(CreateContactRequest.builder()
+                .firstName(request.getFirstName())
+                .lastName(request.getLastName())
+                .email(request.getEmail())
+                .phone(request.getPhone())
+                .build());
+        if (Objects.nonNull(errors)) {
+            return errors;
+        }
+
+        String contactId = UuidV7.generate();
+        List<CreateAddressRequest> addressRequests = new ArrayList<>();
+        if (Stream.of(request.getStreet(), request.getCity(), request.getProvince(), request.getCountry(),
+                request.getPostalCode()).anyMatch(Objects::nonNull)) {
+            addressRequests.add(CreateAddressRequest.builder()
+                    .street(request.getStreet())
+                    .city(request.getCity())
+                    .province(request.getProvince())
+                    .country(request.getCountry())
+                    .postalCode(request.getPostalCode())
+                    .build());
+        }
+        if (Objects.nonNull(request.getAddresses())) {
+            request.getAddresses().stream().filter(Objects::nonNull).forEach(addressRequests::add);
+        }
+        for (int i = 0; i < addressRequests.size(); i++) {
+            CreateAddressRequest addressRequest = addressRequests.get(i);
+            addressRequest.setContactId(contactId);
+            errors = validationService.errors(addressRequest);
+            if (Objects.nonNull(errors)) {
+                return "addresses[" + i + "]: " + errors;
+            }
+        }
+
+        Contact contact = new Contact();
+        contact.setId(contactId);
+        contact.setFirstName(request.getFirstName());
+        contact.setLastName(request.getLastName());
+        contact.setEmail(request.getEmail());
+        contact.setPhone(request.getPhone());
+        contact.setUser(user);
+        contacts.add(contact);
+
+        for (CreateAddressRequest addressRequest : addressRequests) {
+            Address address = new Address();
+            address.setId(UuidV7.generate());
+            address.setStreet(addressRequest.getStreet());
+            address.setCity(addressRequest.getCity());
+            address.setProvince(addressRequest.getProvince());
+            address.setCountry(addressRequest.getCountry());
+            address.setPostalCode(addressRequest.getPostalCode());
+            address.setContact(contact);
+            addresses.add(address);
+        }
+        return null;
+    }
+
+    private void commit(User user, ContactImportJobs.Job job, List<Contact> contacts, List<Address> addresses) {
+        if (contacts.isEmpty()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            contactRepository.saveAll(contacts);
+            addressRepository.saveAll(addresses);
+            // flush dulu, contact_ngram punya foreign key ke contact
+            contactRepository.flush();
+            contactSearchIndex.index(contacts);
+            contactCountCache.invalidate(user.getUsername());
+            contactChangeLog.record(user.getUsername(), contacts.stream().map(Contact::getId).toList(), List.of());
+            // dengan open-in-view EntityManager request ini dipakai terus, tanpa clear semua contact tertahan di memori
+            entityManager.clear();
+        });
+        job.imported(contacts.size());
+        contacts.clear();
+        addresses.clear();
+    }
+}
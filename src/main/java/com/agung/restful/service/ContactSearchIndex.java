@@ -0,0 +1,140 @@
+package com.agung.restful.service;
+
+import com.agung.restful.entity.Contact;
+import com.agung.restful.entity.ContactNgram;
+import com.agung.restful.id.UuidBinaryType;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Index trigram untuk pencarian nama, email dan phone contact (tabel contact_ngram).
+ * <p>
+ * LIKE '%x%' tidak bisa memakai index, jadi pencarian dipersempit dulu ke contact yang memiliki semua trigram dari
+ * kata kunci, baru kemudian dicocokkan dengan LIKE. Kata kunci kurang dari 3 karakter atau yang berisi wildcard LIKE
+ * tetap full scan. Kolom gram memakai collation yang sama dengan kolom contact (V11), jadi gram cocok persis seperti
+ * LIKE mencocokkan huruf besar/kecil dan aksen.
+ */
+@Component
+public class ContactSearchIndex {
+
+    public static final String FIELD_NAME = "n";
+    public static final String FIELD_EMAIL = "e";
+    public static final String FIELD_PHONE = "p";
+
+    private static final int GRAM_SIZE = 3;
+
+    // gram yang berbeda di Java bisa sama menurut collation kolom gram (misalnya "osé" dan "ose"), cukup satu baris
+    private static final String INSERT_SQL = "INSERT INTO contact_ngram (username, field, gram, contact_id) VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE contact_id = contact_id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.contact-search.ngram-enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Untuk contact baru, baris contact harus sudah di-flush karena ada foreign key ke tabel contact.
+     */
+    public void index(Collection<Contact> contacts) {
+        List<Object[]> rows = new ArrayList<>();
+        for (Contact contact : contacts) {
+            rows.addAll(rows(contact.getUser().getUsername(), UuidBinaryType.toBytes(contact.getId()),
+                    contact.getFirstName(), contact.getLastName(), contact.getEmail(), contact.getPhone()));
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+    }
+
+    public void reindex(Collection<Contact> contacts) {
+        jdbcTemplate.batchUpdate("DELETE FROM contact_ngram WHERE contact_id = ?", contacts.stream()
+                .map(contact -> new Object[]{UuidBinaryType.toBytes(contact.getId())})
+                .toList());
+        index(contacts);
+    }
+
+    /**
+     * Predicate contact.id IN (contact yang memiliki semua trigram dari term), kosong jika term terlalu pendek.
+     */
+    public Optional<Predicate> matches(Root<Contact> root, CriteriaQuery<?> query, CriteriaBuilder builder,
+                                       String username, String field, String term) {
+        // % dan _ adalah wildcard LIKE, trigram-nya tidak harus ada di contact yang cocok
+        if (!enabled || Objects.isNull(term) || term.contains("%") || term.contains("_") || term.contains("\\")) {
+            return Optional.empty();
+        }
+        Set<String> grams = termGrams(term);
+        if (grams.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Subquery<String> subquery = query.subquery(String.class);
+        Root<ContactNgram> ngram = subquery.from(ContactNgram.class);
+        subquery.select(ngram.get("contactId"))
+                .where(
+                        builder.equal(ngram.get("username"), username),
+                        builder.equal(ngram.get("field"), field),
+                        ngram.get("gram").in(grams)
+                )
+                .groupBy(ngram.get("contactId"))
+                .having(builder.equal(builder.countDistinct(ngram.get("gram")), (long) grams.size()));
+        return Optional.of(root.get("id").in(subquery));
+    }
+
+    /**
+     * @param contactId nilai kolom contact_id apa adanya (BINARY(16))
+     */
+    public static List<Object[]> rows(String username, Object contactId, String firstName, String lastName,
+                                      String email, String phone) {
+        List<Object[]> rows = new ArrayList<>();
+        Set<String> nameGrams = grams(firstName);
+        nameGrams.addAll(grams(lastName));
+        nameGrams.forEach(gram -> rows.add(new Object[]{username, FIELD_NAME, gram, contactId}));
+        grams(email).forEach(gram -> rows.add(new Object[]{username, FIELD_EMAIL, gram, contactId}));
+        grams(phone).forEach(gram -> rows.add(new Object[]{username, FIELD_PHONE, gram, contactId}));
+        return rows;
+    }
+
+    /**
+     * Trigram kata kunci untuk HAVING COUNT(DISTINCT gram) = n. Gram dibandingkan dengan collation kolom contact
+     * (tidak membedakan huruf besar dan aksen), jadi gram yang hanya berbeda aksen dihitung sekali; kalau tidak, n
+     * lebih besar dari jumlah gram berbeda yang bisa ditemukan dan contact yang cocok dengan LIKE terbuang.
+     */
+    static Set<String> termGrams(String term) {
+        Map<String, String> grams = new LinkedHashMap<>();
+        for (String gram : grams(term)) {
+            String folded = Normalizer.normalize(gram, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+            grams.putIfAbsent(folded, gram);
+        }
+        return new LinkedHashSet<>(grams.values());
+    }
+
+    static Set<String> grams(String value) {
+        Set<String> grams = new LinkedHashSet<>();
+        if (Objects.isNull(value)) {
+            return grams;
+        }
+        int[] codePoints = value.toLowerCase(Locale.ROOT).codePoints().toArray();
+        for (int i = 0; i + GRAM_SIZE <= codePoints.length; i++) {
+            grams.add(new String(codePoints, i, GRAM_SIZE));
+        }
+        return grams;
+    }
+}
@@ -1,51 +1,95 @@
 package com.agung.restful.service;
 
+import com.agung.restful.entity.Address;
 import com.agung.restful.entity.Contact;
 import com.agung.restful.entity.User;
+import com.agung.restful.id.UuidBinaryType;
+import com.agung.restful.id.UuidV7;
+import com.agung.restful.model.request.BulkContactOperation;
+import com.agung.restful.model.request.BulkContactRequest;
+import com.agung.restful.model.response.AddressResponse;
+import com.agung.restful.model.response.BulkContactResult;
 import com.agung.restful.model.response.ContactResponse;
 import com.agung.restful.model.request.CreateContactRequest;
 import com.agung.restful.model.request.SearchContactRequest;
 import com.agung.restful.model.request.UpdateContactRequest;
+import com.agung.restful.repository.AddressRepository;
 import com.agung.restful.repository.ContactRepository;
 import jakarta.persistence.criteria.Predicate;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.KeysetScrollPosition;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.UUID;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class ContactService {
 
+    // field yang boleh dipilih lewat fields= di pencarian
+    public static final Set<String> SEARCH_FIELDS = Set.of("id", "firstName", "lastName", "email", "phone");
+
     @Autowired
     private ContactRepository contactRepository;
 
     @Autowired
     private ValidationService validationService;
 
+    @Autowired
+    private ContactCountCache contactCountCache;
+
+    @Autowired
+    private ContactSearchIndex contactSearchIndex;
+
+    @Autowired
+    private AddressRepository addressRepository;
+
+    @Autowired
+    private ContactChangeLog contactChangeLog;
+
+    @Value("${app.contact-bulk.max-operations:5000}")
+    private int bulkMaxOperations;
+
     @Transactional
     public ContactResponse create(User user, CreateContactRequest request) {
         validationService.validate(request);
 
         Contact contact = new Contact();
-        contact.setId(UUID.randomUUID().toString());
+        contact.setId(UuidV7.generate());
         contact.setFirstName(request.getFirstName());
         contact.setLastName(request.getLastName());
         contact.setEmail(request.getEmail());
         contact.setPhone(request.getPhone());
         contact.setUser(user);
 
-        contactRepository.save(contact);
+        // flush dulu, contact_ngram punya foreign key ke contact
+        contactRepository.saveAndFlush(contact);
+        contactSearchIndex.index(List.of(contact));
+        contactCountCache.invalidate(user.getUsername());
+        contactChangeLog.changed(user.getUsername(), contact.getId());
 
         return toContactResponse(contact);
     }
@@ -57,45 +101,331 @@ public class ContactService {
                 .lastName(contact.getLastName())
                 .email(contact.getEmail())
                 .phone(contact.getPhone())
+                .version(contact.getVersion())
                 .build();
     }
 
-    @Transactional
-    public ContactResponse get(User user, String id) {
-        Contact contact = contactRepository.findFirstByUserAndId(user, id)
+    private ContactResponse toContactResponse(Contact contact, List<Address> addresses) {
+        ContactResponse response = toContactResponse(contact);
+        response.setAddresses(addresses.stream()
+                .map(address -> AddressResponse.builder()
+                        .id(address.getId())
+                        .street(address.getStreet())
+                        .city(address.getCity())
+                        .province(address.getProvince())
+                        .country(address.getCountry())
+                        .postalCode(address.getPostalCode())
+                        .version(address.getVersion())
+                        .build())
+                .toList());
+        return response;
+    }
+
+    /**
+     * Untuk satu halaman contact addresses diambil dengan satu query IN, bukan satu query per contact.
+     */
+    private Function<Contact, ContactResponse> toContactResponses(List<Contact> contacts, boolean includeAddresses) {
+        if (!includeAddresses) {
+            return this::toContactResponse;
+        }
+        Map<String, List<Address>> addresses = contacts.isEmpty() ? Map.of() : addressRepository
+                .findAllByContactInOrderByIdAsc(contacts).stream()
+                .collect(Collectors.groupingBy(address -> address.getContact().getId()));
+        return contact -> toContactResponse(contact, addresses.getOrDefault(contact.getId(), List.of()));
+    }
+
+    /**
+     * Contact dan addresses-nya (Contact.addresses) dibaca lewat second-level cache, contact yang sering dibuka tidak
+     * ke database sama sekali.
+     */
+    @Transactional(readOnly = true)
+    public ContactResponse get(User user, String id, boolean includeAddresses) {
+        Contact contact = contactRepository.findOwned(user, id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Contact not found"));
+        if (includeAddresses) {
+            return toContactResponse(contact, contact.getAddresses());
+        }
         return toContactResponse(contact);
     }
 
+    /**
+     * Version contact untuk ETag tanpa memuat contact-nya.
+     */
+    @Transactional(readOnly = true)
+    public long version(User user, String id) {
+        return contactRepository.findVersion(user.getUsername(), id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Contact not found"));
+    }
+
+    /**
+     * ifMatch: version dari header If-Match, null jika tidak dikirim atau *.
+     */
     @Transactional
-    public ContactResponse update(User user, UpdateContactRequest request) {
+    public ContactResponse update(User user, UpdateContactRequest request, Set<Long> ifMatch) {
 
         validationService.validate(request);
-        Contact contact = contactRepository.findFirstByUserAndId(user, request.getId())
+        Contact contact = contactRepository.findOwned(user, request.getId())
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Contact not found"));
+        checkVersion(contact, ifMatch);
 
         contact.setFirstName(request.getFirstName());
         contact.setLastName(request.getLastName());
         contact.setEmail(request.getEmail());
         contact.setPhone(request.getPhone());
-        contactRepository.save(contact);
+        // flush supaya version di response (ETag) sudah version yang baru
+        contactRepository.saveAndFlush(contact);
+        contactSearchIndex.reindex(List.of(contact));
+        contactCountCache.invalidate(user.getUsername());
+        contactChangeLog.changed(user.getUsername(), contact.getId());
         return toContactResponse(contact);
     }
 
     @Transactional
-    public void delete(User user, String contactId) {
-        Contact contact = contactRepository.findFirstByUserAndId(user, contactId)
+    public void delete(User user, String contactId, Set<Long> ifMatch) {
+        Contact contact = contactRepository.findOwned(user, contactId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Contact not found"));
+        checkVersion(contact, ifMatch);
         contactRepository.delete(contact);
+        // flush dulu, tombstone dicatat setelah baris contact terkunci (lihat ContactChangeLog)
+        contactRepository.flush();
+        contactCountCache.invalidate(user.getUsername());
+        contactChangeLog.deleted(user.getUsername(), contact.getId());
+    }
+
+    // perubahan bersamaan setelah cek ini tetap ditolak oleh @Version (UPDATE/DELETE ... WHERE version = ?)
+    private void checkVersion(Contact contact, Set<Long> ifMatch) {
+        if (Objects.nonNull(ifMatch) && !ifMatch.contains(contact.getVersion())) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Contact has been modified");
+        }
+    }
+
+    /**
+     * Operasi yang tidak valid atau contact-nya tidak ditemukan hanya dilaporkan di hasilnya, sisanya tetap ditulis
+     * dalam satu transaksi dengan JDBC batch (hibernate.jdbc.batch_size).
+     */
+    @Transactional
+    public List<BulkContactResult> bulk(User user, BulkContactRequest request) {
+        validationService.validate(request);
+        List<BulkContactOperation> operations = request.getOperations();
+        if (operations.size() > bulkMaxOperations) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Too many operations, maximum " + bulkMaxOperations);
+        }
+
+        // semua contact yang di-update/delete diambil dengan satu query, dikunci sebelum address-nya dihapus
+        Set<String> ids = operations.stream()
+                .filter(Objects::nonNull)
+                .filter(operation -> !BulkContactOperation.CREATE.equals(operation.getAction()))
+                .map(BulkContactOperation::getId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<String, Contact> contacts = new HashMap<>();
+        if (!ids.isEmpty()) {
+            contactRepository.findLockedByUserAndIdIn(user, ids).forEach(contact -> contacts.put(contact.getId(), contact));
+        }
+
+        List<BulkContactResult> results = new ArrayList<>(operations.size());
+        List<Contact> created = new ArrayList<>();
+        List<Contact> updated = new ArrayList<>();
+        List<Contact> deleted = new ArrayList<>();
+        Set<String> touched = new HashSet<>();
+        for (int i = 0; i < operations.size(); i++) {
+            BulkContactOperation operation = Objects.requireNonNullElseGet(operations.get(i), BulkContactOperation::new);
+            BulkContactResult.BulkContactResultBuilder result = BulkContactResult.builder()
+                    .index(i)
+                    .action(operation.getAction())
+                    .id(operation.getId());
+
+            String action = Objects.requireNonNullElse(operation.getAction(), "");
+            if (action.equals(BulkContactOperation.CREATE)) {
+                String errors = validationService.errors(CreateContactRequest.builder()
+                        .firstName(operation.getFirstName())
+                        .lastName(operation.getLastName())
+                        .email(operation.getEmail())
+                        .phone(operation.getPhone())
+                        .build());
+                if (Objects.nonNull(errors)) {
+                    results.add(result.status(400).errors(errors).build());
+                    continue;
+                }
+                Contact contact = new Contact();
+                contact.setId(UuidV7.generate());
+                contact.setUser(user);
+                copy(operation, contact);
+                created.add(contact);
+                results.add(result.id(contact.getId()).status(200).build());
+            } else if (action.equals(BulkContactOperation.UPDATE) || action.equals(BulkContactOperation.DELETE)) {
+                String errors = action.equals(BulkContactOperation.UPDATE)
+                        ? validationService.errors(UpdateContactRequest.builder()
+                        .id(operation.getId())
+                        .firstName(operation.getFirstName())
+                        .lastName(operation.getLastName())
+                        .email(operation.getEmail())
+                        .phone(operation.getPhone())
+                        .build())
+                        : (Objects.isNull(operation.getId()) || operation.getId().isBlank() ? "id: must not be blank" : null);
+                if (Objects.nonNull(errors)) {
+                    results.add(result.status(400).errors(errors).build());
+                    continue;
+                }
+                Contact contact = contacts.get(operation.getId());
+                if (Objects.isNull(contact)) {
+                    results.add(result.status(404).errors("Contact not found").build());
+                    continue;
+                }
+                if (!touched.add(contact.getId())) {
+                    results.add(result.status(400).errors("Duplicate contact id in bulk request").build());
+                    continue;
+                }
+                if (action.equals(BulkContactOperation.UPDATE)) {
+                    copy(operation, contact);
+                    updated.add(contact);
+                } else {
+                    deleted.add(contact);
+                }
+                results.add(result.status(200).build());
+            } else {
+                results.add(result.status(400).errors("action: must be one of create, update, delete").build());
+            }
+        }
+
+        contactRepository.saveAll(created);
+        if (!deleted.isEmpty()) {
+            addressRepository.deleteAll(addressRepository.findAllByContactIn(deleted));
+            contactRepository.deleteAll(deleted);
+        }
+        // flush dulu, contact_ngram punya foreign key ke contact
+        contactRepository.flush();
+        contactSearchIndex.index(created);
+        contactSearchIndex.reindex(updated);
+
+        if (!created.isEmpty() || !updated.isEmpty() || !deleted.isEmpty()) {
+            contactCountCache.invalidate(user.getUsername());
+        }
+        contactChangeLog.record(user.getUsername(),
+                Stream.concat(created.stream(), updated.stream()).map(Contact::getId).toList(),
+                deleted.stream().map(Contact::getId).toList());
+        return results;
+    }
+
+    private void copy(BulkContactOperation operation, Contact contact) {
+        contact.setFirstName(operation.getFirstName());
+        contact.setLastName(operation.getLastName());
+        contact.setEmail(operation.getEmail());
+        contact.setPhone(operation.getPhone());
+    }
+
+    /**
+     * Tanpa count=true hasilnya Slice: LIMIT size + 1 untuk tahu ada halaman berikutnya, tanpa query COUNT.
+     */
+    @Transactional(readOnly = true)
+    public Slice<ContactResponse> search(User user, SearchContactRequest request) {
+        int page = Math.max(request.getPage() - 1, 0);// agar halaman dimulai dari 1 dan jaga2 jika user memasukkan halaman 0
+        Pageable pageable = PageRequest.of(page, request.getSize(), Sort.by("id"));
+        if (Objects.nonNull(request.getFields())) {
+            List<ContactResponse> contactResponses = contactRepository.findProjected(searchSpecification(user, request),
+                    request.getFields(), pageable.getOffset(), pageable.getPageSize() + 1);
+            boolean hasNext = contactResponses.size() > pageable.getPageSize();
+            contactResponses = contactResponses.subList(0, Math.min(contactResponses.size(), pageable.getPageSize()));
+            if (Boolean.TRUE.equals(request.getCount())) {
+                return new PageImpl<>(contactResponses, pageable, count(user, request));
+            }
+            return new SliceImpl<>(contactResponses, pageable, hasNext);
+        }
+        ScrollPosition position = pageable.getOffset() == 0
+                ? ScrollPosition.offset()
+                : ScrollPosition.offset(pageable.getOffset() - 1);
+        Window<Contact> contacts = contactRepository.findBy(searchSpecification(user, request), query -> query
+                .sortBy(pageable.getSort())
+                .limit(pageable.getPageSize())
+                .scroll(position));
+        List<ContactResponse> contactResponses = contacts.getContent().stream()
+                .map(toContactResponses(contacts.getContent(), Boolean.TRUE.equals(request.getIncludeAddresses())))
+                .toList();
+
+        if (Boolean.TRUE.equals(request.getCount())) {
+            return new PageImpl<>(contactResponses, pageable, count(user, request));
+        }
+        return new SliceImpl<>(contactResponses, pageable, contacts.hasNext());
+    }
+
+    /**
+     * Pagination keyset berdasarkan id: WHERE id > :cursor ORDER BY id LIMIT size + 1, tanpa OFFSET dan tanpa COUNT.
+     */
+    @Transactional(readOnly = true)
+    public Window<ContactResponse> searchAfter(User user, SearchContactRequest request) {
+        if (Objects.nonNull(request.getFields())) {
+            return searchAfterProjected(user, request);
+        }
+        ScrollPosition position = decodeCursor(request.getCursor());
+        Window<Contact> contacts = contactRepository.findBy(searchSpecification(user, request), query -> query
+                .sortBy(Sort.by("id"))
+                .limit(request.getSize())
+                .scroll(position));
+        return contacts.map(toContactResponses(contacts.getContent(), Boolean.TRUE.equals(request.getIncludeAddresses())));
+    }
+
+    private Window<ContactResponse> searchAfterProjected(User user, SearchContactRequest request) {
+        String lastId = decodeCursorId(request.getCursor());
+        Specification<Contact> specification = searchSpecification(user, request);
+        if (Objects.nonNull(lastId)) {
+            specification = specification.and((root, query, builder) -> builder.greaterThan(root.get("id"), lastId));
+        }
+        List<ContactResponse> contactResponses = contactRepository.findProjected(specification, request.getFields(),
+                0, request.getSize() + 1);
+        boolean hasNext = contactResponses.size() > request.getSize();
+        List<ContactResponse> content = contactResponses.subList(0, Math.min(contactResponses.size(), request.getSize()));
+        return Window.from(content, index -> ScrollPosition.forward(Map.of("id", content.get(index).getId())), hasNext);
     }
 
     @Transactional(readOnly = true)
-    public Page<ContactResponse> search(User user, SearchContactRequest request) {
-        Specification<Contact> specification = (root, query, builder) -> {
+    public long count(User user, SearchContactRequest request) {
+        return contactCountCache.get(user.getUsername(), request,
+                () -> contactRepository.count(searchSpecification(user, request)));
+    }
+
+    public String nextCursor(Window<?> window) {
+        if (!window.hasNext() || window.isEmpty()) {
+            return null;
+        }
+        KeysetScrollPosition position = (KeysetScrollPosition) window.positionAt(window.size() - 1);
+        String lastId = String.valueOf(position.getKeys().get("id"));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(lastId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private ScrollPosition decodeCursor(String cursor) {
+        String lastId = decodeCursorId(cursor);
+        if (Objects.isNull(lastId)) {
+            return ScrollPosition.keyset();
+        }
+        return ScrollPosition.forward(Map.of("id", lastId));
+    }
+
+    // null untuk halaman pertama
+    private String decodeCursorId(String cursor) {
+        if (Objects.isNull(cursor) || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String lastId = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (Objects.isNull(UuidBinaryType.toBytes(lastId))) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+            }
+            return lastId;
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+
+    private Specification<Contact> searchSpecification(User user, SearchContactRequest request) {
+        return (root, query, builder) -> {
+            assert query != null;
             List<Predicate> predicates = new ArrayList<>();
             predicates.add(builder.equal(root.get("user"), user));
 
+            // predicate trigram mempersempit kandidat lewat index, LIKE tetap dipakai untuk memastikan hasilnya tepat
             if (Objects.nonNull(request.getName())) {
+                contactSearchIndex.matches(root, query, builder, user.getUsername(), ContactSearchIndex.FIELD_NAME, request.getName())
+                        .ifPresent(predicates::add);
                 predicates.add(builder.or(
                         builder.like(builder.lower(root.get("firstName")), "%" + request.getName().toLowerCase() + "%"),
                         builder.like(builder.lower(root.get("lastName")), "%" + request.getName().toLowerCase() + "%")
@@ -103,23 +433,18 @@ public class ContactService {
             }
 
             if (Objects.nonNull(request.getEmail())) {
+                contactSearchIndex.matches(root, query, builder, user.getUsername(), ContactSearchIndex.FIELD_EMAIL, request.getEmail())
+                        .ifPresent(predicates::add);
                 predicates.add(builder.like(builder.lower(root.get("email")), "%" + request.getEmail().toLowerCase() + "%"));
             }
 
             if (Objects.nonNull(request.getPhone())) {
+                contactSearchIndex.matches(root, query, builder, user.getUsername(), ContactSearchIndex.FIELD_PHONE, request.getPhone())
+                        .ifPresent(predicates::add);
                 predicates.add(builder.like(root.get("phone"), "%" + request.getPhone() + "%"));
             }
 
-            assert query != null;
             return query.where(predicates.toArray(new Predicate[]{})).getRestriction();
         };
-
-        int page = Math.max(request.getPage() - 1, 0);// agar halaman dimulai dari 1 dan jaga2 jika user memasukkan halaman 0
-        Pageable pageable = PageRequest.of(page, request.getSize());
-        Page<Contact> contacts = contactRepository.findAll(specification, pageable);
-        List<ContactResponse> contactResponses = contacts.getContent().stream()
-                .map(this::toContactResponse)
-                .toList();
-        return new PageImpl<>(contactResponses, pageable, contacts.getTotalElements());
     }
 }
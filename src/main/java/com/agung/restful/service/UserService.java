@@ -5,12 +5,14 @@ import com.agung.restful.model.request.RegisterUserRequest;
 import com.agung.restful.model.request.UpdateUserRequest;
 import com.agung.restful.model.response.UserResponse;
 import com.agung.restful.repository.UserRepository;
-import com.agung.restful.security.BCrypt;
+import com.agung.restful.security.PasswordHasher;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.util.Objects;
@@ -25,7 +27,14 @@ public class UserService {
     @Autowired
     private ValidationService validationService;
 
-    @Transactional
+    @Autowired
+    private PasswordHasher passwordHasher;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // register dan update tidak @Transactional: BCrypt dijalankan dulu tanpa memegang koneksi pool, baru user ditulis
+    // di transaksi pendek
     public void register(RegisterUserRequest request){
 
         validationService.validate(request);
@@ -36,40 +45,64 @@ public class UserService {
 
         User user = new User();
         user.setUsername(request.getUsername());
-        user.setPassword(BCrypt.hashpw(request.getPassword(),BCrypt.gensalt()));
+        user.setPassword(passwordHasher.hash(request.getPassword()));
         user.setName(request.getName());
 
-        userRepository.save(user);
+        try {
+            userRepository.save(user);
+        } catch (DataIntegrityViolationException e) {
+            // username terdaftar selama hash berjalan
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,"username sudah terdaftar");
+        }
     }
 
     public UserResponse get(User user){
+        User current = findCurrent(user);
         return UserResponse.builder()
-                .username(user.getUsername())
-                .name(user.getName())
+                .username(current.getUsername())
+                .name(current.getName())
                 .build();
     }
 
-    @Transactional
     public UserResponse update(User user, UpdateUserRequest request){
 
        log.info("REQUEST :{}",request);
 
         validationService.validate(request);
 
-        if (Objects.nonNull(request.getName())){
-            user.setName(request.getName());
-        }
+        String password = Objects.nonNull(request.getPassword()) ? passwordHasher.hash(request.getPassword()) : null;
 
-        if (Objects.nonNull(request.getPassword())){
-            user.setPassword(BCrypt.hashpw(request.getPassword(),BCrypt.gensalt()));
-        }
+        return transactionTemplate.execute(status -> {
+            User current = findCurrent(user);
+            if (Objects.nonNull(request.getName())){
+                current.setName(request.getName());
+            }
 
-        userRepository.save(user);
-        return UserResponse.builder()
-                .name(user.getName())
-                .username(user.getUsername())
-                .build();
+            if (Objects.nonNull(password)){
+                current.setPassword(password);
+            }
+
+            userRepository.save(current);
+            return UserResponse.builder()
+                    .name(current.getName())
+                    .username(current.getUsername())
+                    .build();
+        });
     }
 
+    /**
+     * Mengganti hash password hanya jika belum diubah sejak login (misalnya password diganti di antaranya).
+     */
+    @Transactional
+    public void updatePasswordHash(String username, String oldHash, String newHash){
+        userRepository.findLockedByUsername(username)
+                .filter(user -> user.getPassword().equals(oldHash))
+                .ifPresent(user -> user.setPassword(newHash));
+    }
 
+    // endpoint /api/users* tanpa open-in-view, jadi reference dari UserArgumentResolver tidak bisa di-load lazy
+    private User findCurrent(User user){
+        return userRepository.findById(user.getUsername())
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Unauthorized"));
+    }
 }
@@ -7,6 +7,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 public class ValidationService {
@@ -20,4 +21,17 @@ public class ValidationService {
             throw new ConstraintViolationException(constraintViolations);
         }
     }
+
+    /**
+     * Sama seperti {@link #validate(Object)} tetapi mengembalikan pesan error (null jika valid), untuk bulk request.
+     */
+    public String errors(Object request){
+        Set<ConstraintViolation<Object>> constraintViolations = validator.validate(request);
+        if (constraintViolations.isEmpty()){
+            return null;
+        }
+        return constraintViolations.stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .collect(Collectors.joining(", "));
+    }
 }
@@ -0,0 +1,52 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Kolom contact_ngram.gram memakai character set dan collation yang sama dengan kolom contact yang di-index.
+ * <p>
+ * LIKE di pencarian berjalan dengan collation kolom contact (misalnya latin1_swedish_ci: "jose" cocok dengan "José"),
+ * sedangkan gram tadinya utf8mb4_bin, jadi prefilter trigram membuang contact yang cocok dengan LIKE. Ditulis di Java
+ * karena collation kolom contact mengikuti default database masing-masing.
+ * <p>
+ * Gram yang sama menurut collation baru (misalnya "osé" dan "ose" milik contact yang sama) digabung: tabel dibuat
+ * ulang dan diisi dengan INSERT IGNORE.
+ */
+public class V11__Collation_contact_ngram extends BaseJavaMigration {
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            String charset;
+            String collation;
+            try (ResultSet resultSet = statement.executeQuery(
+                    "SELECT character_set_name, collation_name FROM information_schema.columns " +
+                            "WHERE table_schema = DATABASE() AND table_name = 'contact' AND column_name = 'first_name'")) {
+                resultSet.next();
+                charset = resultSet.getString(1);
+                collation = resultSet.getString(2);
+            }
+
+            statement.execute("CREATE TABLE contact_ngram_v11 (" +
+                    "username VARCHAR(100) NOT NULL, " +
+                    "field CHAR(1) NOT NULL, " +
+                    "gram VARCHAR(3) CHARACTER SET " + charset + " COLLATE " + collation + " NOT NULL, " +
+                    "contact_id BINARY(16) NOT NULL, " +
+                    "PRIMARY KEY (username, field, gram, contact_id), " +
+                    "INDEX idx_contact_ngram_contact (contact_id)" +
+                    ") ENGINE = InnoDB");
+            statement.execute("INSERT IGNORE INTO contact_ngram_v11 (username, field, gram, contact_id) " +
+                    "SELECT username, field, gram, contact_id FROM contact_ngram");
+            statement.execute("DROP TABLE contact_ngram");
+            statement.execute("RENAME TABLE contact_ngram_v11 TO contact_ngram");
+            statement.execute("ALTER TABLE contact_ngram ADD CONSTRAINT fk_contact_ngram_contact " +
+                    "FOREIGN KEY (contact_id) REFERENCES contact (id) ON DELETE CASCADE");
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Mengisi contact_ngram untuk contact yang sudah ada sebelum V3.
+ * <p>
+ * Dibaca per 1000 baris (keyset by id) karena satu koneksi tidak bisa insert selama result set streaming masih terbuka.
+ * <p>
+ * Pembentukan trigram sengaja disalin dari ContactSearchIndex saat V4 dibuat, bukan dipanggil: migrasi Java tidak
+ * punya checksum, jadi perubahan di ContactSearchIndex tidak boleh mengubah hasil migrasi ini di database baru.
+ */
+public class V4__Backfill_contact_ngram extends BaseJavaMigration {
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT id, username, first_name, last_name, email, phone FROM contact WHERE id > ? ORDER BY id LIMIT " + BATCH_SIZE);
+             PreparedStatement insert = connection.prepareStatement(
+                     "INSERT INTO contact_ngram (username, field, gram, contact_id) VALUES (?, ?, ?, ?)")) {
+            String lastId = "";
+            boolean hasMore = true;
+            while (hasMore) {
+                int rows = 0;
+                select.setString(1, lastId);
+                try (ResultSet resultSet = select.executeQuery()) {
+                    while (resultSet.next()) {
+                        lastId = resultSet.getString("id");
+                        rows++;
+                        String username = resultSet.getString("username");
+                        Set<String> nameGrams = grams(resultSet.getString("first_name"));
+                        nameGrams.addAll(grams(resultSet.getString("last_name")));
+                        addBatch(insert, username, "n", nameGrams, lastId);
+                        addBatch(insert, username, "e", grams(resultSet.getString("email")), lastId);
+                        addBatch(insert, username, "p", grams(resultSet.getString("phone")), lastId);
+                    }
+                }
+                insert.executeBatch();
+                hasMore = rows == BATCH_SIZE;
+            }
+        }
+    }
+
+    private static void addBatch(PreparedStatement insert, String username, String field, Set<String> grams,
+                                 String contactId) throws SQLException {
+        for (String gram : grams) {
+            insert.setString(1, username);
+            insert.setString(2, field);
+            insert.setString(3, gram);
+            insert.setString(4, contactId);
+            insert.addBatch();
+        }
+    }
+
+    private static Set<String> grams(String value) {
+        Set<String> grams = new LinkedHashSet<>();
+        if (value == null) {
+            return grams;
+        }
+        int[] codePoints = value.toLowerCase(Locale.ROOT).codePoints().toArray();
+        for (int i = 0; i + 3 <= codePoints.length; i++) {
+            grams.add(new String(codePoints, i, 3));
+        }
+        return grams;
+    }
+}
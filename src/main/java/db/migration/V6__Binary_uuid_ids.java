@@ -0,0 +1,60 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mengubah id contact dan addresses (serta semua kolom yang mereferensikan contact) dari VARCHAR(100) ke BINARY(16).
+ * <p>
+ * Ditulis di Java karena nama foreign key bawaan V1 berbeda antara MySQL (addresses_ibfk_1) dan MariaDB
+ * (fk_contact_addresses), jadi harus dicari dulu di information_schema. Id lama yang bukan UUID diganti MD5-nya
+ * supaya tetap unik dan relasinya tetap cocok.
+ */
+public class V6__Binary_uuid_ids extends BaseJavaMigration {
+
+    private static final String[][] COLUMNS = {
+            {"contact", "id"},
+            {"addresses", "id"},
+            {"addresses", "contact_id"},
+            {"contact_ngram", "contact_id"},
+    };
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            List<String[]> foreignKeys = new ArrayList<>();
+            try (ResultSet resultSet = statement.executeQuery(
+                    "SELECT table_name, constraint_name FROM information_schema.referential_constraints " +
+                            "WHERE constraint_schema = DATABASE() AND referenced_table_name = 'contact'")) {
+                while (resultSet.next()) {
+                    foreignKeys.add(new String[]{resultSet.getString(1), resultSet.getString(2)});
+                }
+            }
+            for (String[] foreignKey : foreignKeys) {
+                statement.execute("ALTER TABLE " + foreignKey[0] + " DROP FOREIGN KEY " + foreignKey[1]);
+            }
+
+            for (String[] column : COLUMNS) {
+                String table = column[0];
+                String name = column[1];
+                String hex = "REPLACE(" + name + ", '-', '')";
+                statement.execute("ALTER TABLE " + table + " MODIFY " + name + " VARBINARY(100) NOT NULL");
+                statement.execute("UPDATE " + table + " SET " + name + " = IF(LENGTH(" + name + ") = 36 AND LENGTH(" + hex + ") = 32 " +
+                        "AND UNHEX(" + hex + ") IS NOT NULL, UNHEX(" + hex + "), UNHEX(MD5(" + name + ")))");
+                statement.execute("ALTER TABLE " + table + " MODIFY " + name + " BINARY(16) NOT NULL");
+            }
+
+            statement.execute("ALTER TABLE addresses ADD CONSTRAINT fk_contact_addresses " +
+                    "FOREIGN KEY (contact_id) REFERENCES contact (id)");
+            statement.execute("ALTER TABLE contact_ngram ADD CONSTRAINT fk_contact_ngram_contact " +
+                    "FOREIGN KEY (contact_id) REFERENCES contact (id) ON DELETE CASCADE");
+        }
+    }
+}
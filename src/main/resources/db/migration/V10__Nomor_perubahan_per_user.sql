@@ -0,0 +1,18 @@
+-- nomor perubahan per user dipindah dari users.change_seq ke tabel sendiri. INSERT contact/address mengambil shared
+-- lock (foreign key) di baris users/contact induknya; UPDATE users.change_seq (exclusive) sesudahnya membuat dua
+-- penulisan bersamaan milik user yang sama saling menunggu (deadlock). Baris di tabel ini tidak dirujuk foreign key
+-- dari tabel yang ditulis, jadi satu-satunya lock di sini adalah lock dari penulisan nomor itu sendiri
+CREATE TABLE contact_change_seq
+(
+    username VARCHAR(100) NOT NULL,
+    seq      BIGINT       NOT NULL,
+    PRIMARY KEY (username),
+    FOREIGN KEY fk_users_contact_change_seq (username) REFERENCES users (username) ON DELETE CASCADE
+) ENGINE = InnoDB;
+
+INSERT INTO contact_change_seq (username, seq)
+SELECT username, change_seq
+FROM users
+WHERE change_seq > 0;
+
+-- users.change_seq tidak dibaca lagi; dihapus di migrasi berikutnya setelah semua node memakai contact_change_seq
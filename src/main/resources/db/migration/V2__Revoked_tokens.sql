@@ -0,0 +1,9 @@
+CREATE TABLE revoked_tokens
+(
+    jti        VARCHAR(100) NOT NULL,
+    revoked_at BIGINT       NOT NULL,
+    expired_at BIGINT       NOT NULL,
+    PRIMARY KEY (jti),
+    INDEX idx_revoked_tokens_revoked_at (revoked_at),
+    INDEX idx_revoked_tokens_expired_at (expired_at)
+) ENGINE = InnoDB;
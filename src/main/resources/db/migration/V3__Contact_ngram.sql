@@ -0,0 +1,10 @@
+CREATE TABLE contact_ngram
+(
+    username   VARCHAR(100) NOT NULL,
+    field      CHAR(1)      NOT NULL,
+    gram       VARCHAR(3) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL,
+    contact_id VARCHAR(100) NOT NULL,
+    PRIMARY KEY (username, field, gram, contact_id),
+    INDEX idx_contact_ngram_contact (contact_id),
+    FOREIGN KEY fk_contact_ngram_contact (contact_id) REFERENCES contact (id) ON DELETE CASCADE
+) ENGINE = InnoDB;
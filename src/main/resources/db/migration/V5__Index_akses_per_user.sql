@@ -0,0 +1,9 @@
+-- findFirstByUserAndId, search (WHERE username ORDER BY id) dan cursor keyset (id > ?)
+CREATE INDEX idx_contact_username_id ON contact (username, id);
+
+-- COUNT dan filter name/email/phone (kata kunci < 3 karakter atau ngram dimatikan) cukup membaca index ini
+CREATE INDEX idx_contact_username_search ON contact (username, first_name, last_name, email, phone);
+
+-- findAllByContact dan findFirstByContactAndId, urut berdasarkan id
+CREATE INDEX idx_addresses_contact_id ON addresses (contact_id, id);
+
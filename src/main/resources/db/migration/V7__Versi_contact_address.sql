@@ -0,0 +1,4 @@
+-- @Version contact dan address: optimistic locking dan ETag (GET bersyarat, If-Match di PUT/DELETE)
+ALTER TABLE contact ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+
+ALTER TABLE addresses ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
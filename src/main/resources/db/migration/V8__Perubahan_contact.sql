@@ -0,0 +1,22 @@
+-- sinkronisasi delta (GET /api/contacts/changes)
+-- users.change_seq: nomor perubahan terakhir milik user, dinaikkan (dan dikunci sampai commit) oleh setiap penulisan
+-- contact, jadi urutan change_seq per user sama dengan urutan commit
+ALTER TABLE users ADD COLUMN change_seq BIGINT NOT NULL DEFAULT 0;
+
+-- perubahan address juga menaikkan change_seq contact-nya; baris lama tetap 0 dan hanya ikut di sinkronisasi awal
+ALTER TABLE contact
+    ADD COLUMN change_seq BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN updated_at BIGINT;
+
+-- id ikut disebut: urutan feed (change_seq, id) dan tanpa kolom ini optimizer berpindah ke scan PRIMARY untuk
+-- pencarian ORDER BY id LIMIT
+CREATE INDEX idx_contact_username_change_seq ON contact (username, change_seq, id);
+
+CREATE TABLE contact_tombstone
+(
+    username   VARCHAR(100) NOT NULL,
+    change_seq BIGINT       NOT NULL,
+    contact_id BINARY(16)   NOT NULL,
+    deleted_at BIGINT       NOT NULL,
+    PRIMARY KEY (username, change_seq, contact_id)
+) ENGINE = InnoDB;
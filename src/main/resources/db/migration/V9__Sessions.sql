@@ -0,0 +1,25 @@
+-- satu baris per login, user bisa login di beberapa perangkat sekaligus; login tidak lagi meng-update baris users
+CREATE TABLE sessions
+(
+    token      VARCHAR(100) NOT NULL,
+    username   VARCHAR(100) NOT NULL,
+    created_at BIGINT       NOT NULL,
+    expired_at BIGINT       NOT NULL,
+    PRIMARY KEY (token),
+    INDEX idx_sessions_username (username),
+    -- pembersihan session kadaluarsa per batch
+    INDEX idx_sessions_expired_at (expired_at),
+    FOREIGN KEY fk_users_sessions (username) REFERENCES users (username) ON DELETE CASCADE
+) ENGINE = InnoDB;
+
+-- token yang sudah beredar sebelum deploy tetap berlaku
+INSERT INTO sessions (token, username, created_at, expired_at)
+SELECT token, username, 0, token_expired_at
+FROM users
+WHERE token IS NOT NULL
+  AND token_expired_at IS NOT NULL;
+
+-- users.token dan users.token_expired_at tidak dibaca lagi, dihapus di migrasi berikutnya.
+-- Tidak bisa rolling deploy: node versi lama tetap menulis dan mengosongkan users.token, yang tidak dibaca node baru
+-- (login di node lama ditolak node baru, logout di node lama tidak mencabut session). Hentikan semua node, jalankan
+-- migrasi ini, baru nyalakan node versi baru.
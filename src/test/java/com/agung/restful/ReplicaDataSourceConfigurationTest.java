@@ -0,0 +1,82 @@
+package com.agung.restful;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Routing primary/replica dengan dua database H2 in-memory, masing-masing berisi penanda namanya sendiri.
+ */
+class ReplicaDataSourceConfigurationTest {
+
+    private HikariDataSource primary;
+
+    private HikariDataSource replica;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private DataSourceTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        ReplicaDataSourceConfiguration configuration = new ReplicaDataSourceConfiguration();
+        primary = database("primary");
+        replica = database("replica");
+        DataSource dataSource = configuration.dataSource(primary, replica);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+    }
+
+    @AfterEach
+    void tearDown() {
+        primary.close();
+        replica.close();
+    }
+
+    @Test
+    void readOnlyTransactionUsesReplica() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        assertEquals("replica", readOnly.execute(status -> database()));
+    }
+
+    @Test
+    void readWriteTransactionUsesPrimary() {
+        TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+
+        assertEquals("primary", readWrite.execute(status -> {
+            jdbcTemplate.update("INSERT INTO marker (name) VALUES ('primary')");
+            return database();
+        }));
+        assertEquals(2, new JdbcTemplate(primary).queryForObject("SELECT COUNT(*) FROM marker", Integer.class));
+    }
+
+    @Test
+    void withoutTransactionUsesPrimary() {
+        assertEquals("primary", database());
+    }
+
+    private String database() {
+        return jdbcTemplate.queryForObject("SELECT MIN(name) FROM marker", String.class);
+    }
+
+    private HikariDataSource database(String name) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        dataSource.setPoolName(name);
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.execute("DROP TABLE IF EXISTS marker");
+        template.execute("CREATE TABLE marker (name VARCHAR(20))");
+        template.update("INSERT INTO marker (name) VALUES (?)", name);
+        return dataSource;
+    }
+}
@@ -0,0 +1,79 @@
+package com.agung.restful;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Mencatat setiap statement yang dikirim lewat DataSource "dataSource" beserta parameternya, baik dari Hibernate
+ * maupun JdbcTemplate. Dipasang di test dengan {@code @Import(StatementRecorder.class)}.
+ * <p>
+ * Satu eksekusi dihitung satu statement; batch (executeBatch) juga satu, seperti satu round trip ke database.
+ */
+@TestConfiguration(proxyBeanMethods = false)
+public class StatementRecorder implements BeanPostProcessor, QueryExecutionListener {
+
+    /**
+     * @param parameters parameter set pertama, urut berdasarkan index
+     */
+    public record Statement(String sql, List<Object> parameters) {
+    }
+
+    private final List<Statement> statements = new CopyOnWriteArrayList<>();
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if ("dataSource".equals(beanName) && bean instanceof DataSource dataSource) {
+            return ProxyDataSourceBuilder.create(dataSource)
+                    .name(beanName)
+                    .listener(this)
+                    .build();
+        }
+        return bean;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        for (QueryInfo queryInfo : queryInfoList) {
+            List<List<ParameterSetOperation>> parametersList = queryInfo.getParametersList();
+            statements.add(new Statement(queryInfo.getQuery(),
+                    parametersList.isEmpty() ? List.of() : parameters(parametersList.getFirst())));
+        }
+    }
+
+    public void clear() {
+        statements.clear();
+    }
+
+    public int count() {
+        return statements.size();
+    }
+
+    public List<Statement> statements() {
+        return List.copyOf(statements);
+    }
+
+    private static List<Object> parameters(List<ParameterSetOperation> operations) {
+        List<Object> parameters = new ArrayList<>();
+        operations.stream()
+                .sorted(Comparator.comparingInt(operation -> (Integer) operation.getArgs()[0]))
+                .forEach(operation -> parameters.add(
+                        // setNull(index, sqlType): argumen kedua bukan nilai parameter
+                        "setNull".equals(operation.getMethod().getName()) ? null : operation.getArgs()[1]));
+        return parameters;
+    }
+}
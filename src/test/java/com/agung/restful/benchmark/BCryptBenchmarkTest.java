@@ -0,0 +1,80 @@
+package com.agung.restful.benchmark;
+
+import com.agung.restful.security.BCrypt;
+import com.agung.restful.security.LegacyBCrypt;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Waktu dan alokasi heap per checkpw (login) pada cost 10 sampai 12, BCrypt sebelum (LegacyBCrypt) dibanding sesudah
+ * state Blowfish dipakai ulang per thread. Legacy dan baru dijalankan bergantian di setiap iterasi supaya perubahan
+ * frekuensi CPU mengenai keduanya.
+ * <p>
+ * mvn test -Dtest=BCryptBenchmarkTest -Dbenchmark=true [-Diterations=20]
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class BCryptBenchmarkTest {
+
+    private static final String PASSWORD = "rahasia-benchmark";
+
+    @Test
+    void checkpw() {
+        int iterations = Integer.getInteger("iterations", 20);
+
+        // pemanasan JIT di cost kecil
+        String warmup = BCrypt.hashpw(PASSWORD, BCrypt.gensalt(6));
+        for (int i = 0; i < 200; i++) {
+            LegacyBCrypt.checkpw(PASSWORD, warmup);
+            BCrypt.checkpw(PASSWORD, warmup);
+        }
+
+        System.out.printf("%4s %12s %12s %8s %16s %16s%n",
+                "cost", "legacy ms", "new ms", "speedup", "legacy B/call", "new B/call");
+        for (int cost = 10; cost <= 12; cost++) {
+            String hash = BCrypt.hashpw(PASSWORD, BCrypt.gensalt(cost));
+            assertEquals(hash, LegacyBCrypt.hashpw(PASSWORD, hash));
+
+            long[] legacyNanos = new long[iterations];
+            long[] newNanos = new long[iterations];
+            long legacyBytes = 0;
+            long newBytes = 0;
+            for (int i = 0; i < iterations; i++) {
+                long[] legacy = measure(() -> LegacyBCrypt.checkpw(PASSWORD, hash));
+                long[] current = measure(() -> BCrypt.checkpw(PASSWORD, hash));
+                legacyNanos[i] = legacy[0];
+                legacyBytes += legacy[1];
+                newNanos[i] = current[0];
+                newBytes += current[1];
+            }
+            double legacyMs = median(legacyNanos);
+            double newMs = median(newNanos);
+            System.out.printf("%4d %12.1f %12.1f %7.2fx %16d %16d%n", cost, legacyMs, newMs, legacyMs / newMs,
+                    legacyBytes / iterations, newBytes / iterations);
+        }
+    }
+
+    // {nanodetik, byte dialokasikan}
+    private long[] measure(Supplier<Boolean> call) {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().threadId();
+        long allocated = threadMXBean.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        boolean matches = call.get();
+        long elapsed = System.nanoTime() - start;
+        allocated = threadMXBean.getThreadAllocatedBytes(thread) - allocated;
+        assertTrue(matches);
+        return new long[]{elapsed, allocated};
+    }
+
+    private double median(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2] / 1_000_000.0;
+    }
+}
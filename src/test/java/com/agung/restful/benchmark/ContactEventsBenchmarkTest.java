@@ -0,0 +1,173 @@
+package com.agung.restful.benchmark;
+
+import com.agung.restful.security.BCrypt;
+import com.agung.restful.security.SessionCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Banyak stream SSE (GET /api/contacts/events) yang terbuka bersamaan lewat koneksi HTTP sungguhan: waktu membuka
+ * koneksi, heap dan jumlah platform thread selama koneksi diam, lalu latency fan-out dari POST contact sampai event
+ * diterima semua stream milik user tersebut.
+ * <p>
+ * mvn test -Dtest=ContactEventsBenchmarkTest -Dbenchmark=true [-Dusers=100 -Dstreams-per-user=50]
+ * <p>
+ * Setiap stream memakai satu file descriptor di client dan satu di server, perhatikan ulimit -n.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"app.contact-events.max-subscribers-per-user=10000", "spring.jpa.properties.hibernate.show_sql=false"}
+)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ContactEventsBenchmarkTest {
+
+    private static final int ROUNDS = 20;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SessionCache sessionCache;
+
+    private volatile CountDownLatch received;
+
+    @Test
+    void fanOut() throws Exception {
+        int users = Integer.getInteger("users", 100);
+        int streamsPerUser = Integer.getInteger("streams-per-user", 50);
+        int streams = users * streamsPerUser;
+
+        sessionCache.invalidateAll();
+        jdbcTemplate.update("DELETE FROM contact_tombstone");
+        jdbcTemplate.update("DELETE FROM addresses");
+        jdbcTemplate.update("DELETE FROM contact");
+        jdbcTemplate.update("DELETE FROM sessions");
+        jdbcTemplate.update("DELETE FROM users");
+        String password = BCrypt.hashpw("benchmark", BCrypt.gensalt());
+        long expiredAt = System.currentTimeMillis() + (60 * 60 * 1000);
+        long now = System.currentTimeMillis();
+        List<Object[]> rows = new ArrayList<>();
+        List<Object[]> sessions = new ArrayList<>();
+        for (int u = 0; u < users; u++) {
+            rows.add(new Object[]{"bench" + u, password, "Benchmark " + u});
+            sessions.add(new Object[]{"bench" + u, "bench" + u, now, expiredAt});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO users (username, password, name) VALUES (?, ?, ?)", rows);
+        jdbcTemplate.batchUpdate("INSERT INTO sessions (token, username, created_at, expired_at) VALUES (?, ?, ?, ?)", sessions);
+
+        ExecutorService readers = Executors.newVirtualThreadPerTaskExecutor();
+        HttpClient client = HttpClient.newBuilder().executor(readers).build();
+        try {
+            received = new CountDownLatch(0);
+            CountDownLatch connected = new CountDownLatch(streams);
+            long start = System.nanoTime();
+            for (int u = 0; u < users; u++) {
+                String token = "bench" + u;
+                for (int s = 0; s < streamsPerUser; s++) {
+                    readers.execute(() -> read(client, token, connected));
+                }
+            }
+            assertTrue(connected.await(2, TimeUnit.MINUTES), "stream belum terbuka semua");
+            long connectMs = (System.nanoTime() - start) / 1_000_000;
+
+            System.gc();
+            Runtime runtime = Runtime.getRuntime();
+            long heapUsed = (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024);
+            int platformThreads = ManagementFactory.getThreadMXBean().getThreadCount();
+            System.out.printf("%8s %12s %14s %17s%n", "streams", "connect (ms)", "heap used (MB)", "platform threads");
+            System.out.printf("%8d %12d %14d %17d%n", streams, connectMs, heapUsed, platformThreads);
+
+            // satu contact baru per user per putaran, diukur sampai semua stream menerima event-nya
+            long[] latencies = new long[ROUNDS];
+            for (int round = 0; round < ROUNDS; round++) {
+                received = new CountDownLatch(streams);
+                start = System.nanoTime();
+                List<Thread> writers = new ArrayList<>();
+                for (int u = 0; u < users; u++) {
+                    String token = "bench" + u;
+                    writers.add(Thread.ofVirtual().start(() -> createContact(client, token)));
+                }
+                for (Thread writer : writers) {
+                    writer.join();
+                }
+                assertTrue(received.await(1, TimeUnit.MINUTES), "event belum diterima semua stream");
+                latencies[round] = (System.nanoTime() - start) / 1_000_000;
+            }
+            Arrays.sort(latencies);
+            System.out.printf("%8s %8s %8s %8s%n", "writes", "p50 (ms)", "p90 (ms)", "max (ms)");
+            System.out.printf("%8d %8d %8d %8d%n", users, latencies[ROUNDS / 2], latencies[ROUNDS * 9 / 10], latencies[ROUNDS - 1]);
+        } finally {
+            // close() menunggu semua stream selesai, padahal stream tidak pernah selesai sendiri
+            client.shutdownNow();
+            readers.shutdownNow();
+        }
+    }
+
+    private void read(HttpClient client, String token, CountDownLatch connected) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/contacts/events"))
+                .header("Accept", "text/event-stream")
+                .header("X-API-TOKEN", token)
+                .build();
+        try {
+            HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            if (response.statusCode() != 200) {
+                return;
+            }
+            connected.countDown();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.equals("event:change")) {
+                        received.countDown();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // client ditutup di akhir benchmark
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void createContact(HttpClient client, String token) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/contacts"))
+                .header("Content-Type", "application/json")
+                .header("X-API-TOKEN", token)
+                .POST(HttpRequest.BodyPublishers.ofString("{\"firstName\":\"Benchmark\"}"))
+                .build();
+        try {
+            assertEquals(200, client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
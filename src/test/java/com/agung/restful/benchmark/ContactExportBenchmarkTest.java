@@ -0,0 +1,99 @@
+package com.agung.restful.benchmark;
+
+import com.agung.restful.entity.User;
+import com.agung.restful.id.UuidBinaryType;
+import com.agung.restful.id.UuidV7;
+import com.agung.restful.repository.UserRepository;
+import com.agung.restful.security.BCrypt;
+import com.agung.restful.service.ContactExportService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Waktu dan heap export NDJSON terhadap jumlah contact (masing-masing dengan satu address).
+ * <p>
+ * Jalankan dengan heap kecil supaya kelihatan kalau hasil query ditampung di memori:
+ * mvn test -Dtest=ContactExportBenchmarkTest -Dbenchmark=true -DargLine=-Xmx128m
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ContactExportBenchmarkTest {
+
+    private static final int[] SIZES = {10_000, 100_000, 300_000};
+
+    private static final int INSERT_BATCH = 5_000;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ContactExportService contactExportService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void exportByContactCount() throws IOException {
+        jdbcTemplate.update("DELETE FROM addresses");
+        jdbcTemplate.update("DELETE FROM contact");
+        userRepository.deleteAll();
+
+        User user = new User();
+        user.setUsername("benchmark");
+        user.setPassword(BCrypt.hashpw("benchmark", BCrypt.gensalt()));
+        user.setName("Benchmark");
+        userRepository.save(user);
+
+        System.out.printf("%10s %10s %12s %14s%n", "contacts", "ms", "bytes", "heap used (MB)");
+        int inserted = 0;
+        for (int size : SIZES) {
+            for (; inserted < size; inserted += INSERT_BATCH) {
+                insertContacts(user.getUsername(), inserted, INSERT_BATCH);
+            }
+
+            System.gc();
+            CountingOutputStream outputStream = new CountingOutputStream();
+            long start = System.nanoTime();
+            contactExportService.export(user.getUsername(), outputStream);
+            long elapsed = (System.nanoTime() - start) / 1_000_000;
+            Runtime runtime = Runtime.getRuntime();
+            long heapUsed = (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024);
+            System.out.printf("%10d %10d %12d %14d%n", size, elapsed, outputStream.count, heapUsed);
+        }
+    }
+
+    private void insertContacts(String username, int offset, int count) {
+        List<Object[]> contacts = new ArrayList<>();
+        List<Object[]> addresses = new ArrayList<>();
+        for (int i = offset; i < offset + count; i++) {
+            byte[] id = UuidBinaryType.toBytes(UuidV7.generate());
+            contacts.add(new Object[]{id, username, "contact" + i, "lastname" + i, "0812" + i, "contact" + i + "@mail.com"});
+            addresses.add(new Object[]{UuidBinaryType.toBytes(UuidV7.generate()), id, "jalan " + i, "kota", "Indonesia"});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO contact (id, username, first_name, last_name, phone, email) VALUES (?, ?, ?, ?, ?, ?)", contacts);
+        jdbcTemplate.batchUpdate("INSERT INTO addresses (id, contact_id, street, city, country) VALUES (?, ?, ?, ?, ?)", addresses);
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.agung.restful.benchmark;
+
+import com.agung.restful.entity.User;
+import com.agung.restful.model.response.ImportJobResponse;
+import com.agung.restful.repository.UserRepository;
+import com.agung.restful.security.BCrypt;
+import com.agung.restful.service.ContactImportService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Throughput dan heap import CSV. File dibuat on the fly per baris, jadi heap yang terlihat hanya milik import.
+ * <p>
+ * mvn test -Dtest=ContactImportBenchmarkTest -Dbenchmark=true -DargLine=-Xmx128m
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ContactImportBenchmarkTest {
+
+    private static final int ROWS = 50_000;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ContactImportService contactImportService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void importCsvThroughput() {
+        jdbcTemplate.update("DELETE FROM addresses");
+        jdbcTemplate.update("DELETE FROM contact");
+        userRepository.deleteAll();
+
+        User user = new User();
+        user.setUsername("benchmark");
+        user.setPassword(BCrypt.hashpw("benchmark", BCrypt.gensalt()));
+        user.setName("Benchmark");
+        userRepository.save(user);
+
+        long start = System.nanoTime();
+        ImportJobResponse job = contactImportService.importContacts(user, ContactImportService.CSV, csv(ROWS));
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+
+        Runtime runtime = Runtime.getRuntime();
+        System.out.printf("rows=%d imported=%d ms=%d rows/s=%d heap used (MB)=%d%n", ROWS, job.getImported(), elapsed,
+                ROWS * 1000L / elapsed, (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024));
+        assertEquals(ROWS, job.getImported());
+    }
+
+    private InputStream csv(int rows) {
+        return new SequenceInputStream(new Enumeration<>() {
+
+            private int row = -1;
+
+            @Override
+            public boolean hasMoreElements() {
+                return row < rows;
+            }
+
+            @Override
+            public InputStream nextElement() {
+                String line = row < 0
+                        ? "firstName,lastName,email,phone,street,city,country\n"
+                        : "contact" + row + ",lastname" + row + ",contact" + row + "@mail.com,0812" + row +
+                        ",\"jalan " + row + ", rt 1\",kota,Indonesia\n";
+                row++;
+                return new ByteArrayInputStream(line.getBytes(StandardCharsets.UTF_8));
+            }
+        });
+    }
+}
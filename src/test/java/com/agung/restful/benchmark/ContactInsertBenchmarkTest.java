@@ -0,0 +1,110 @@
+package com.agung.restful.benchmark;
+
+import com.agung.restful.entity.User;
+import com.agung.restful.model.request.BulkContactOperation;
+import com.agung.restful.model.request.BulkContactRequest;
+import com.agung.restful.model.request.CreateContactRequest;
+import com.agung.restful.repository.UserRepository;
+import com.agung.restful.security.BCrypt;
+import com.agung.restful.service.ContactService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Throughput ContactService.create (satu per transaksi) dan ContactService.bulk terhadap jumlah contact yang sudah ada, plus ukuran tabel contact di akhir.
+ * <p>
+ * Jalankan dengan: mvn test -Dtest=ContactInsertBenchmarkTest -Dbenchmark=true
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ContactInsertBenchmarkTest {
+
+    private static final int PHASES = 4;
+
+    private static final int CONTACTS_PER_PHASE = 5_000;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ContactService contactService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void insertThroughput() {
+        User user = createUser();
+
+        System.out.printf("%10s %14s%n", "contacts", "inserts/s");
+        for (int phase = 0; phase < PHASES; phase++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < CONTACTS_PER_PHASE; i++) {
+                int n = phase * CONTACTS_PER_PHASE + i;
+                contactService.create(user, CreateContactRequest.builder()
+                        .firstName("contact" + n)
+                        .lastName("lastname" + n)
+                        .email("contact" + n + "@mail.com")
+                        .phone("0812" + n)
+                        .build());
+            }
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+            System.out.printf("%10d %14.0f%n", (phase + 1) * CONTACTS_PER_PHASE, CONTACTS_PER_PHASE / seconds);
+        }
+
+        printTableSize();
+    }
+
+    @Test
+    void bulkInsertThroughput() {
+        User user = createUser();
+
+        System.out.printf("%10s %14s%n", "contacts", "bulk inserts/s");
+        for (int phase = 0; phase < PHASES; phase++) {
+            List<BulkContactOperation> operations = new ArrayList<>();
+            for (int i = 0; i < CONTACTS_PER_PHASE; i++) {
+                int n = phase * CONTACTS_PER_PHASE + i;
+                operations.add(BulkContactOperation.builder()
+                        .action(BulkContactOperation.CREATE)
+                        .firstName("contact" + n)
+                        .lastName("lastname" + n)
+                        .email("contact" + n + "@mail.com")
+                        .phone("0812" + n)
+                        .build());
+            }
+            long start = System.nanoTime();
+            contactService.bulk(user, new BulkContactRequest(operations));
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+            System.out.printf("%10d %14.0f%n", (phase + 1) * CONTACTS_PER_PHASE, CONTACTS_PER_PHASE / seconds);
+        }
+        printTableSize();
+    }
+
+    private User createUser() {
+        jdbcTemplate.update("DELETE FROM addresses");
+        jdbcTemplate.update("DELETE FROM contact");
+        userRepository.deleteAll();
+
+        User user = new User();
+        user.setUsername("benchmark");
+        user.setPassword(BCrypt.hashpw("benchmark", BCrypt.gensalt()));
+        user.setName("Benchmark");
+        return userRepository.save(user);
+    }
+
+    private void printTableSize() {
+        jdbcTemplate.execute("ANALYZE TABLE contact, contact_ngram");
+        for (Map<String, Object> table : jdbcTemplate.queryForList(
+                "SELECT DISTINCT table_name, data_length, index_length FROM information_schema.tables " +
+                        "WHERE table_schema = DATABASE() AND table_name IN ('contact', 'contact_ngram')")) {
+            System.out.println(table);
+        }
+    }
+}
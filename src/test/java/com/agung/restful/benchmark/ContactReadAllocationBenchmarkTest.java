@@ -0,0 +1,112 @@
+package com.agung.restful.benchmark;
+
+import com.agung.restful.entity.User;
+import com.agung.restful.id.UuidBinaryType;
+import com.agung.restful.id.UuidV7;
+import com.agung.restful.model.request.SearchContactRequest;
+import com.agung.restful.repository.UserRepository;
+import com.agung.restful.security.BCrypt;
+import com.agung.restful.service.ContactService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Alokasi heap dan latensi per panggilan GET, di transaksi read-write (perilaku lama) dibanding readOnly.
+ * <p>
+ * Read-write disimulasikan dengan transaksi luar biasa: transaksi readOnly di service ikut transaksi luar itu,
+ * jadi session tetap menyimpan snapshot dan flush saat commit.
+ * <p>
+ * mvn test -Dtest=ContactReadAllocationBenchmarkTest -Dbenchmark=true
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ContactReadAllocationBenchmarkTest {
+
+    private static final int CONTACTS = 1_000;
+
+    private static final int ITERATIONS = 500;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ContactService contactService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void allocationPerRead() {
+        jdbcTemplate.update("DELETE FROM addresses");
+        jdbcTemplate.update("DELETE FROM contact");
+        userRepository.deleteAll();
+
+        User user = new User();
+        user.setUsername("benchmark");
+        user.setPassword(BCrypt.hashpw("benchmark", BCrypt.gensalt()));
+        user.setName("Benchmark");
+        userRepository.save(user);
+
+        List<Object[]> contacts = new ArrayList<>();
+        List<Object[]> addresses = new ArrayList<>();
+        String contactId = null;
+        for (int i = 0; i < CONTACTS; i++) {
+            contactId = UuidV7.generate();
+            byte[] id = UuidBinaryType.toBytes(contactId);
+            contacts.add(new Object[]{id, user.getUsername(), "contact" + i, "lastname" + i, "0812" + i, "contact" + i + "@mail.com"});
+            addresses.add(new Object[]{UuidBinaryType.toBytes(UuidV7.generate()), id, "jalan " + i, "kota", "Indonesia"});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO contact (id, username, first_name, last_name, phone, email) VALUES (?, ?, ?, ?, ?, ?)", contacts);
+        jdbcTemplate.batchUpdate("INSERT INTO addresses (id, contact_id, street, city, country) VALUES (?, ?, ?, ?, ?)", addresses);
+
+        SearchContactRequest search = SearchContactRequest.builder().page(1).size(50).count(false).build();
+        SearchContactRequest searchWithAddresses = SearchContactRequest.builder().page(1).size(50).count(false)
+                .includeAddresses(true).build();
+        SearchContactRequest searchFields = SearchContactRequest.builder().page(1).size(50).count(false)
+                .fields(Set.of("firstName", "lastName")).build();
+        String lastContactId = contactId;
+        TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+
+        System.out.printf("%-28s %12s %12s %12s %12s%n", "", "rw KB/call", "ro KB/call", "rw ms/call", "ro ms/call");
+        compare("search size=50", readWrite, () -> contactService.search(user, search));
+        compare("search size=50 +addresses", readWrite, () -> contactService.search(user, searchWithAddresses));
+        compare("search size=50 fields", readWrite, () -> contactService.search(user, searchFields));
+        compare("get +addresses", readWrite, () -> contactService.get(user, lastContactId, true));
+    }
+
+    private void compare(String name, TransactionTemplate readWrite, Runnable call) {
+        double[] rw = measure(() -> readWrite.executeWithoutResult(status -> call.run()));
+        double[] ro = measure(call);
+        System.out.printf("%-28s %12.1f %12.1f %12.3f %12.3f%n", name, rw[0], ro[0], rw[1], ro[1]);
+    }
+
+    // {KB dialokasikan per panggilan, ms per panggilan}
+    private double[] measure(Runnable call) {
+        for (int i = 0; i < ITERATIONS / 5; i++) {
+            call.run();
+        }
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().threadId();
+        long allocated = threadMXBean.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            call.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        allocated = threadMXBean.getThreadAllocatedBytes(thread) - allocated;
+        return new double[]{allocated / 1024.0 / ITERATIONS, elapsed / 1_000_000.0 / ITERATIONS};
+    }
+}
@@ -0,0 +1,106 @@
+package com.agung.restful.benchmark;
+
+import com.agung.restful.entity.User;
+import com.agung.restful.id.UuidBinaryType;
+import com.agung.restful.id.UuidV7;
+import com.agung.restful.model.request.SearchContactRequest;
+import com.agung.restful.repository.UserRepository;
+import com.agung.restful.security.BCrypt;
+import com.agung.restful.service.ContactSearchIndex;
+import com.agung.restful.service.ContactService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Latensi pencarian contact (LIKE saja vs trigram + LIKE) terhadap jumlah contact.
+ * <p>
+ * Jalankan dengan: mvn test -Dtest=ContactSearchBenchmarkTest -Dbenchmark=true
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ContactSearchBenchmarkTest {
+
+    private static final int[] SIZES = {1_000, 10_000, 50_000};
+
+    private static final int ITERATIONS = 50;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ContactService contactService;
+
+    @Autowired
+    private ContactSearchIndex contactSearchIndex;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void searchLatencyByContactCount() {
+        jdbcTemplate.update("DELETE FROM addresses");
+        jdbcTemplate.update("DELETE FROM contact");
+        userRepository.deleteAll();
+
+        User user = new User();
+        user.setUsername("benchmark");
+        user.setPassword(BCrypt.hashpw("benchmark", BCrypt.gensalt()));
+        user.setName("Benchmark");
+        userRepository.save(user);
+
+        SearchContactRequest request = SearchContactRequest.builder()
+                .name("xq7")
+                .page(0)
+                .size(10)
+                .count(false)
+                .build();
+
+        System.out.printf("%10s %12s %12s%n", "contacts", "like (ms)", "ngram (ms)");
+        int inserted = 0;
+        for (int size : SIZES) {
+            insertContacts(user.getUsername(), inserted, size - inserted);
+            inserted = size;
+
+            ReflectionTestUtils.setField(contactSearchIndex, "enabled", false);
+            double like = measure(user, request);
+            ReflectionTestUtils.setField(contactSearchIndex, "enabled", true);
+            double ngram = measure(user, request);
+            System.out.printf("%10d %12.3f %12.3f%n", size, like, ngram);
+        }
+    }
+
+    private double measure(User user, SearchContactRequest request) {
+        for (int i = 0; i < ITERATIONS / 5; i++) {
+            contactService.search(user, request);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            contactService.search(user, request);
+        }
+        return (System.nanoTime() - start) / 1_000_000.0 / ITERATIONS;
+    }
+
+    private void insertContacts(String username, int offset, int count) {
+        List<Object[]> contacts = new ArrayList<>();
+        List<Object[]> grams = new ArrayList<>();
+        for (int i = offset; i < offset + count; i++) {
+            byte[] id = UuidBinaryType.toBytes(UuidV7.generate());
+            // hanya satu dari 1000 contact yang cocok dengan kata kunci
+            String firstName = (i % 1000 == 0 ? "xq7" : "") + "contact" + i;
+            String lastName = "lastname" + i;
+            String email = "contact" + i + "@mail.com";
+            String phone = "0812" + i;
+            contacts.add(new Object[]{id, username, firstName, lastName, phone, email});
+            grams.addAll(ContactSearchIndex.rows(username, id, firstName, lastName, email, phone));
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO contact (id, username, first_name, last_name, phone, email) VALUES (?, ?, ?, ?, ?, ?)", contacts);
+        jdbcTemplate.batchUpdate("INSERT INTO contact_ngram (username, field, gram, contact_id) VALUES (?, ?, ?, ?)", grams);
+    }
+}
@@ -3,6 +3,7 @@ package com.agung.restful.controller;
 import com.agung.restful.entity.Address;
 import com.agung.restful.entity.Contact;
 import com.agung.restful.entity.User;
+import com.agung.restful.entity.UserSession;
 import com.agung.restful.model.response.AddressResponse;
 import com.agung.restful.model.request.CreateAddressRequest;
 import com.agung.restful.model.request.UpdateAddressRequest;
@@ -10,7 +11,9 @@ import com.agung.restful.model.response.WebResponse;
 import com.agung.restful.repository.AddressRepository;
 import com.agung.restful.repository.ContactRepository;
 import com.agung.restful.repository.UserRepository;
+import com.agung.restful.repository.UserSessionRepository;
 import com.agung.restful.security.BCrypt;
+import com.agung.restful.security.SessionCache;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
@@ -18,10 +21,12 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.util.List;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -31,9 +36,16 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @AutoConfigureMockMvc
 class AddressControllerTest {
 
+    private static final String CONTACT_ID = "0192a3b4-c5d6-7e8f-9a0b-1c2d3e4f5a6b";
+
+    private static final String ADDRESS_ID = "0192a3b4-c5d6-7e8f-9a0b-1c2d3e4f5a6c";
+
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserSessionRepository userSessionRepository;
+
     @Autowired
     private AddressRepository addressRepository;
 
@@ -46,8 +58,12 @@ class AddressControllerTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private SessionCache sessionCache;
+
     @BeforeEach
     void setup(){
+        sessionCache.invalidateAll();
         addressRepository.deleteAll();
         contactRepository.deleteAll();
         userRepository.deleteAll();
@@ -56,12 +72,11 @@ class AddressControllerTest {
         user.setUsername("test");
         user.setPassword(BCrypt.hashpw("rahasia",BCrypt.gensalt()));
         user.setName("Test");
-        user.setToken("test-token");
-        user.setTokenExpiredAt(System.currentTimeMillis() + (60 * 60 * 1000));
         userRepository.save(user);
+        userSessionRepository.save(new UserSession("test-token", user.getUsername(), System.currentTimeMillis(), System.currentTimeMillis() + (60 * 60 * 1000)));
 
         Contact contact = new Contact();
-        contact.setId("test");
+        contact.setId(CONTACT_ID);
         contact.setFirstName("contact");
         contact.setLastName("test");
         contact.setEmail("contact@mail.com");
@@ -77,7 +92,7 @@ class AddressControllerTest {
         request.setCountry("");
 
         mockMvc.perform(
-                post("/api/contacts/test/addresses")
+                post("/api/contacts/" + CONTACT_ID + "/addresses")
                         .accept(MediaType.APPLICATION_JSON)
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(request))
@@ -102,7 +117,7 @@ class AddressControllerTest {
         request.setPostalCode("96373");
 
         mockMvc.perform(
-                post("/api/contacts/test/addresses")
+                post("/api/contacts/" + CONTACT_ID + "/addresses")
                         .accept(MediaType.APPLICATION_JSON)
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(request))
@@ -127,7 +142,7 @@ class AddressControllerTest {
     @Test
     void getAddressNotFound() throws Exception{
         mockMvc.perform(
-                get("/api/contacts/test/addresses/test")
+                get("/api/contacts/" + CONTACT_ID + "/addresses/" + ADDRESS_ID)
                         .accept(MediaType.APPLICATION_JSON)
                         .contentType(MediaType.APPLICATION_JSON)
                         .header("X-API-TOKEN","test-token")
@@ -143,10 +158,10 @@ class AddressControllerTest {
 
     @Test
     void getAddressSuccess() throws Exception{
-        Contact contact = contactRepository.findById("test").orElseThrow();
+        Contact contact = contactRepository.findById(CONTACT_ID).orElseThrow();
 
         Address address = new Address();
-        address.setId("test");
+        address.setId(ADDRESS_ID);
         address.setContact(contact);
         address.setStreet("jalan kenangan");
         address.setCity("kota baru");
@@ -157,7 +172,7 @@ class AddressControllerTest {
         addressRepository.save(address);
 
         mockMvc.perform(
-                get("/api/contacts/test/addresses/test")
+                get("/api/contacts/" + CONTACT_ID + "/addresses/" + ADDRESS_ID)
                         .accept(MediaType.APPLICATION_JSON)
                         .contentType(MediaType.APPLICATION_JSON)
                         .header("X-API-TOKEN","test-token")
@@ -185,7 +200,7 @@ class AddressControllerTest {
         request.setCountry("");
 
         mockMvc.perform(
-                put("/api/contacts/test/addresses/test")
+                put("/api/contacts/" + CONTACT_ID + "/addresses/" + ADDRESS_ID)
                         .accept(MediaType.APPLICATION_JSON)
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(request))
@@ -202,10 +217,10 @@ class AddressControllerTest {
 
     @Test
     void updateAddressSuccess() throws Exception{
-        Contact contact = contactRepository.findById("test").orElseThrow();
+        Contact contact = contactRepository.findById(CONTACT_ID).orElseThrow();
 
         Address address = new Address();
-        address.setId("test");
+        address.setId(ADDRESS_ID);
         address.setContact(contact);
         address.setStreet("jalan kenangan");
         address.setCity("kota baru");
@@ -223,7 +238,7 @@ class AddressControllerTest {
         request.setPostalCode("963736678");
 
         mockMvc.perform(
-                put("/api/contacts/test/addresses/test")
+                put("/api/contacts/" + CONTACT_ID + "/addresses/" + ADDRESS_ID)
                         .accept(MediaType.APPLICATION_JSON)
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(request))
@@ -264,10 +279,10 @@ class AddressControllerTest {
 
     @Test
     void deleteAddressSuccess() throws Exception{
-        Contact contact = contactRepository.findById("test").orElseThrow();
+        Contact contact = contactRepository.findById(CONTACT_ID).orElseThrow();
 
         Address address = new Address();
-        address.setId("test");
+        address.setId(ADDRESS_ID);
         address.setContact(contact);
         address.setStreet("jalan kenangan");
         address.setCity("kota baru");
@@ -278,7 +293,7 @@ class AddressControllerTest {
         addressRepository.save(address);
 
         mockMvc.perform(
-                delete("/api/contacts/test/addresses/test")
+                delete("/api/contacts/" + CONTACT_ID + "/addresses/" + ADDRESS_ID)
                         .accept(MediaType.APPLICATION_JSON)
                         .contentType(MediaType.APPLICATION_JSON)
                         .header("X-API-TOKEN","test-token")
@@ -313,11 +328,11 @@ class AddressControllerTest {
 
     @Test
     void listAddressSuccess() throws Exception{
-        Contact contact = contactRepository.findById("test").orElseThrow();
+        Contact contact = contactRepository.findById(CONTACT_ID).orElseThrow();
 
         for (int i = 0; i < 5; i++) {
             Address address = new Address();
-            address.setId("test"+i);
+            address.setId(UUID.randomUUID().toString());
             address.setContact(contact);
             address.setStreet("jalan kenangan");
             address.setCity("kota baru");
@@ -329,7 +344,7 @@ class AddressControllerTest {
         }
 
         mockMvc.perform(
-                get("/api/contacts/test/addresses")
+                get("/api/contacts/" + CONTACT_ID + "/addresses")
                         .accept(MediaType.APPLICATION_JSON)
                         .contentType(MediaType.APPLICATION_JSON)
                         .header("X-API-TOKEN","test-token")
@@ -343,4 +358,127 @@ class AddressControllerTest {
            assertEquals(5, response.getData().size());
         });
     }
+
+    @Test
+    void listAddressNotModified() throws Exception{
+        Contact contact = contactRepository.findById(CONTACT_ID).orElseThrow();
+        Address address = new Address();
+        address.setId(ADDRESS_ID);
+        address.setContact(contact);
+        address.setCity("kota baru");
+        address.setCountry("Indonesia");
+        addressRepository.save(address);
+
+        String etag = mockMvc.perform(
+                get("/api/contacts/" + CONTACT_ID + "/addresses")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN","test-token")
+        ).andExpectAll(
+                status().isOk(),
+                header().exists(HttpHeaders.ETAG)
+        ).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(
+                get("/api/contacts/" + CONTACT_ID + "/addresses")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN","test-token")
+                        .header(HttpHeaders.IF_NONE_MATCH, etag)
+        ).andExpectAll(
+                status().isNotModified(),
+                content().string("")
+        );
+
+        mockMvc.perform(
+                delete("/api/contacts/" + CONTACT_ID + "/addresses/" + ADDRESS_ID)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN","test-token")
+        ).andExpectAll(
+                status().isOk()
+        );
+
+        mockMvc.perform(
+                get("/api/contacts/" + CONTACT_ID + "/addresses")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN","test-token")
+                        .header(HttpHeaders.IF_NONE_MATCH, etag)
+        ).andExpectAll(
+                status().isOk(),
+                jsonPath("$.data.length()").value(0)
+        );
+    }
+
+    @Test
+    void updateAddressIfMatch() throws Exception{
+        Contact contact = contactRepository.findById(CONTACT_ID).orElseThrow();
+        Address address = new Address();
+        address.setId(ADDRESS_ID);
+        address.setContact(contact);
+        address.setCity("kota lama");
+        address.setCountry("Indonesia");
+        addressRepository.save(address);
+
+        String etag = mockMvc.perform(
+                get("/api/contacts/" + CONTACT_ID + "/addresses/" + ADDRESS_ID)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN","test-token")
+        ).andExpectAll(
+                status().isOk(),
+                jsonPath("$.data.version").doesNotExist()
+        ).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(
+                get("/api/contacts/" + CONTACT_ID + "/addresses/" + ADDRESS_ID)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN","test-token")
+                        .header(HttpHeaders.IF_NONE_MATCH, etag)
+        ).andExpectAll(
+                status().isNotModified()
+        );
+
+        UpdateAddressRequest request = new UpdateAddressRequest();
+        request.setCity("kota baru");
+        request.setCountry("Indonesia");
+        String updatedEtag = mockMvc.perform(
+                put("/api/contacts/" + CONTACT_ID + "/addresses/" + ADDRESS_ID)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request))
+                        .header("X-API-TOKEN","test-token")
+                        .header(HttpHeaders.IF_MATCH, etag)
+        ).andExpectAll(
+                status().isOk()
+        ).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(etag, updatedEtag);
+
+        // ETag lama sudah usang
+        mockMvc.perform(
+                put("/api/contacts/" + CONTACT_ID + "/addresses/" + ADDRESS_ID)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request))
+                        .header("X-API-TOKEN","test-token")
+                        .header(HttpHeaders.IF_MATCH, etag)
+        ).andExpectAll(
+                status().isPreconditionFailed()
+        );
+        mockMvc.perform(
+                delete("/api/contacts/" + CONTACT_ID + "/addresses/" + ADDRESS_ID)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN","test-token")
+                        .header(HttpHeaders.IF_MATCH, etag)
+        ).andExpectAll(
+                status().isPreconditionFailed()
+        );
+        assertTrue(addressRepository.existsById(ADDRESS_ID));
+
+        mockMvc.perform(
+                delete("/api/contacts/" + CONTACT_ID + "/addresses/" + ADDRESS_ID)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN","test-token")
+                        .header(HttpHeaders.IF_MATCH, updatedEtag)
+        ).andExpectAll(
+                status().isOk()
+        );
+        assertFalse(addressRepository.existsById(ADDRESS_ID));
+    }
 }
\ No newline at end of file
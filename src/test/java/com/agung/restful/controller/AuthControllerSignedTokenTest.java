@@ -0,0 +1,201 @@
+package com.agung.restful.controller;
+
+import com.agung.restful.entity.User;
+import com.agung.restful.entity.UserSession;
+import com.agung.restful.model.request.LoginUserRequest;
+import com.agung.restful.model.response.TokenResponse;
+import com.agung.restful.model.response.UserResponse;
+import com.agung.restful.model.response.WebResponse;
+import com.agung.restful.repository.AddressRepository;
+import com.agung.restful.repository.ContactRepository;
+import com.agung.restful.repository.RevokedTokenRepository;
+import com.agung.restful.repository.UserRepository;
+import com.agung.restful.repository.UserSessionRepository;
+import com.agung.restful.security.BCrypt;
+import com.agung.restful.security.SessionCache;
+import com.agung.restful.security.TokenRevocationList;
+import com.agung.restful.security.TokenSigner;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "app.token.mode=signed",
+        "app.token.secret=rahasia-yang-panjangnya-minimal-32-byte"
+})
+@AutoConfigureMockMvc
+class AuthControllerSignedTokenTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ContactRepository contactRepository;
+
+    @Autowired
+    private AddressRepository addressRepository;
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Autowired
+    private UserSessionRepository userSessionRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private SessionCache sessionCache;
+
+    @Autowired
+    private TokenRevocationList tokenRevocationList;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private TokenSigner tokenSigner;
+
+    @BeforeEach
+    void setup(){
+        sessionCache.invalidateAll();
+        revokedTokenRepository.deleteAll();
+        addressRepository.deleteAll();
+        contactRepository.deleteAll();
+        userRepository.deleteAll();
+
+        User user = new User();
+        user.setUsername("test");
+        user.setPassword(BCrypt.hashpw("rahasia",BCrypt.gensalt()));
+        user.setName("Test");
+        userRepository.save(user);
+    }
+
+    private String login() throws Exception {
+        LoginUserRequest request = new LoginUserRequest();
+        request.setUserName("test");
+        request.setPassword("rahasia");
+
+        String content = mockMvc.perform(
+                post("/api/auth/login")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request))
+        ).andExpectAll(
+                status().isOk()
+        ).andReturn().getResponse().getContentAsString();
+
+        WebResponse<TokenResponse> response = objectMapper.readValue(content, new TypeReference<>(){
+        });
+        return response.getData().getToken();
+    }
+
+    // base64url(username).expiredAt.jti.signature
+    private String jti(String token) {
+        return token.split("\\.")[2];
+    }
+
+    @Test
+    void signedTokenSuccess() throws Exception {
+        String token = login();
+
+        // yang disimpan kunci turunan jti, bukan token bertanda tangan maupun jti yang terbaca di token
+        List<UserSession> sessions = userSessionRepository.findAll();
+        assertEquals(1, sessions.size());
+        assertEquals(tokenSigner.sessionKey(jti(token)), sessions.get(0).getToken());
+        assertFalse(token.contains(sessions.get(0).getToken()));
+
+        mockMvc.perform(
+                get("/api/users/current")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN", token)
+        ).andExpectAll(
+                status().isOk()
+        ).andDo(result -> {
+            WebResponse<UserResponse> response = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>(){
+            });
+            assertEquals("test", response.getData().getUsername());
+            assertEquals("Test", response.getData().getName());
+        });
+    }
+
+    @Test
+    void jtiIsNotAUuidToken() throws Exception {
+        String token = login();
+
+        mockMvc.perform(
+                get("/api/users/current")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN", jti(token))
+        ).andExpectAll(
+                status().isUnauthorized()
+        );
+    }
+
+    @Test
+    void signedTokenTampered() throws Exception {
+        String token = login();
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+
+        mockMvc.perform(
+                get("/api/users/current")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN", tampered)
+        ).andExpectAll(
+                status().isUnauthorized()
+        );
+    }
+
+    @Test
+    void signedTokenRevokedAfterLogout() throws Exception {
+        String token = login();
+
+        mockMvc.perform(
+                delete("/api/auth/logout")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN", token)
+        ).andExpectAll(
+                status().isOk()
+        );
+
+        assertEquals(1, revokedTokenRepository.count());
+
+        mockMvc.perform(
+                get("/api/users/current")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN", token)
+        ).andExpectAll(
+                status().isUnauthorized()
+        );
+    }
+
+    @Test
+    void revokeRolledBack() {
+        transactionTemplate.executeWithoutResult(status -> {
+            tokenRevocationList.revoke("rolled-back", System.currentTimeMillis() + 60000);
+            status.setRollbackOnly();
+        });
+        assertEquals(0, revokedTokenRepository.count());
+        assertFalse(tokenRevocationList.isRevoked("rolled-back"));
+
+        transactionTemplate.executeWithoutResult(status ->
+                tokenRevocationList.revoke("committed", System.currentTimeMillis() + 60000));
+        assertTrue(tokenRevocationList.isRevoked("committed"));
+    }
+}
@@ -1,11 +1,15 @@
 package com.agung.restful.controller;
 
 import com.agung.restful.entity.User;
+import com.agung.restful.entity.UserSession;
 import com.agung.restful.model.request.LoginUserRequest;
 import com.agung.restful.model.response.TokenResponse;
 import com.agung.restful.model.response.WebResponse;
 import com.agung.restful.repository.UserRepository;
+import com.agung.restful.repository.UserSessionRepository;
 import com.agung.restful.security.BCrypt;
+import com.agung.restful.security.SessionCache;
+import com.agung.restful.security.SessionCleanup;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
@@ -18,6 +22,7 @@ import org.springframework.test.web.servlet.MockMvc;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -31,11 +36,21 @@ class AuthControllerTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserSessionRepository userSessionRepository;
+
+    @Autowired
+    private SessionCleanup sessionCleanup;
+
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private SessionCache sessionCache;
+
     @BeforeEach
     void setup(){
+        sessionCache.invalidateAll();
         userRepository.deleteAll();
     }
 
@@ -113,10 +128,10 @@ class AuthControllerTest {
             assertNotNull(response.getData().getToken());
             assertNotNull(response.getData().getExpiredAt());
 
-            User userDb = userRepository.findById("user-test").orElse(null);
-            assertNotNull(userDb);
-            assertEquals(userDb.getToken(),response.getData().getToken());
-            assertEquals(userDb.getTokenExpiredAt(),response.getData().getExpiredAt());
+            UserSession session = userSessionRepository.findById(response.getData().getToken()).orElse(null);
+            assertNotNull(session);
+            assertEquals("user-test",session.getUsername());
+            assertEquals(session.getExpiredAt(),response.getData().getExpiredAt());
         });
     }
 
@@ -144,9 +159,8 @@ class AuthControllerTest {
         user.setUsername("test");
         user.setPassword(BCrypt.hashpw("rahasia",BCrypt.gensalt()));
         user.setName("Test");
-        user.setToken("test-token");
-        user.setTokenExpiredAt(System.currentTimeMillis() + (60 * 60 * 1000));
         userRepository.save(user);
+        userSessionRepository.save(new UserSession("test-token", user.getUsername(), System.currentTimeMillis(), System.currentTimeMillis() + (60 * 60 * 1000)));
 
         mockMvc.perform(
                 delete("/api/auth/logout")
@@ -160,11 +174,95 @@ class AuthControllerTest {
             assertNull(response.getErrors());
             assertEquals("Ok",response.getData());
 
-            User userDb = userRepository.findById("test").orElse(null);
-            assertNotNull(userDb);
-            assertNull(userDb.getToken());
-            assertNull(userDb.getTokenExpiredAt());
+            assertTrue(userRepository.existsById("test"));
+            assertFalse(userSessionRepository.existsById("test-token"));
 
         });
     }
-}
\ No newline at end of file
+
+    @Test
+    void logoutInvalidateSessionCache() throws Exception {
+        User user = new User();
+        user.setUsername("test");
+        user.setPassword(BCrypt.hashpw("rahasia",BCrypt.gensalt()));
+        user.setName("Test");
+        userRepository.save(user);
+        userSessionRepository.save(new UserSession("test-token", user.getUsername(), System.currentTimeMillis(), System.currentTimeMillis() + (60 * 60 * 1000)));
+
+        mockMvc.perform(
+                get("/api/users/current")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN","test-token")
+        ).andExpectAll(
+                status().isOk()
+        );
+
+        mockMvc.perform(
+                delete("/api/auth/logout")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN","test-token")
+        ).andExpectAll(
+                status().isOk()
+        );
+
+        mockMvc.perform(
+                get("/api/users/current")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN","test-token")
+        ).andExpectAll(
+                status().isUnauthorized()
+        );
+    }
+
+    @Test
+    void logoutOnlyCurrentSession() throws Exception {
+        User user = new User();
+        user.setUsername("test");
+        user.setPassword(BCrypt.hashpw("rahasia",BCrypt.gensalt()));
+        user.setName("Test");
+        userRepository.save(user);
+        userSessionRepository.save(new UserSession("test-token", user.getUsername(), System.currentTimeMillis(), System.currentTimeMillis() + (60 * 60 * 1000)));
+        userSessionRepository.save(new UserSession("other-token", user.getUsername(), System.currentTimeMillis(), System.currentTimeMillis() + (60 * 60 * 1000)));
+
+        mockMvc.perform(
+                delete("/api/auth/logout")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN","test-token")
+        ).andExpectAll(
+                status().isOk()
+        );
+
+        mockMvc.perform(
+                get("/api/users/current")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN","test-token")
+        ).andExpectAll(
+                status().isUnauthorized()
+        );
+
+        // session di perangkat lain tetap berlaku
+        mockMvc.perform(
+                get("/api/users/current")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN","other-token")
+        ).andExpectAll(
+                status().isOk()
+        );
+    }
+
+    @Test
+    void deleteExpiredSessions() {
+        User user = new User();
+        user.setUsername("test");
+        user.setPassword(BCrypt.hashpw("rahasia",BCrypt.gensalt()));
+        user.setName("Test");
+        userRepository.save(user);
+        userSessionRepository.save(new UserSession("expired-token", user.getUsername(), System.currentTimeMillis(), System.currentTimeMillis() - 1000));
+        userSessionRepository.save(new UserSession("test-token", user.getUsername(), System.currentTimeMillis(), System.currentTimeMillis() + (60 * 60 * 1000)));
+
+        sessionCleanup.deleteExpired();
+
+        assertFalse(userSessionRepository.existsById("expired-token"));
+        assertTrue(userSessionRepository.existsById("test-token"));
+    }
+}
@@ -0,0 +1,142 @@
+package com.agung.restful.controller;
+
+import com.agung.restful.entity.Contact;
+import com.agung.restful.entity.User;
+import com.agung.restful.entity.UserSession;
+import com.agung.restful.id.UuidV7;
+import com.agung.restful.model.request.CreateAddressRequest;
+import com.agung.restful.model.request.CreateContactRequest;
+import com.agung.restful.repository.AddressRepository;
+import com.agung.restful.repository.ContactRepository;
+import com.agung.restful.repository.UserRepository;
+import com.agung.restful.repository.UserSessionRepository;
+import com.agung.restful.security.BCrypt;
+import com.agung.restful.security.SessionCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Penulisan bersamaan milik user yang sama tidak boleh deadlock, dan setiap penulisan mendapat nomor perubahan sendiri.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class ConcurrentChangeTest {
+
+    private static final int THREADS = 8;
+
+    private static final int WRITES = 40;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserSessionRepository userSessionRepository;
+
+    @Autowired
+    private ContactRepository contactRepository;
+
+    @Autowired
+    private AddressRepository addressRepository;
+
+    @Autowired
+    private SessionCache sessionCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Contact contact;
+
+    @BeforeEach
+    void setUp() {
+        sessionCache.invalidateAll();
+        addressRepository.deleteAll();
+        contactRepository.deleteAll();
+        userRepository.deleteAll();
+
+        User user = new User();
+        user.setUsername("test");
+        user.setPassword(BCrypt.hashpw("test", BCrypt.gensalt()));
+        user.setName("Test");
+        userRepository.save(user);
+        userSessionRepository.save(new UserSession("test", user.getUsername(), System.currentTimeMillis(), System.currentTimeMillis() + (60 * 60 * 1000)));
+
+        contact = new Contact();
+        contact.setId(UuidV7.generate());
+        contact.setFirstName("agung");
+        contact.setUser(user);
+        contactRepository.save(contact);
+    }
+
+    @Test
+    void concurrentCreates() throws Exception {
+        String body = objectMapper.writeValueAsString(CreateContactRequest.builder().firstName("Budi").build());
+        List<Integer> statuses = concurrently("/api/contacts", body);
+
+        assertEquals(List.of(200), statuses.stream().distinct().toList(), statuses::toString);
+        List<Long> seqs = jdbcTemplate.queryForList(
+                "SELECT change_seq FROM contact WHERE username = ? AND change_seq > 0", Long.class, "test");
+        assertEquals(WRITES, seqs.size());
+        assertEquals(WRITES, new HashSet<>(seqs).size());
+        assertEquals(WRITES, seq());
+    }
+
+    @Test
+    void concurrentAddressCreates() throws Exception {
+        String body = objectMapper.writeValueAsString(
+                CreateAddressRequest.builder().city("Jakarta").country("Indonesia").build());
+        List<Integer> statuses = concurrently("/api/contacts/" + contact.getId() + "/addresses", body);
+
+        assertEquals(List.of(200), statuses.stream().distinct().toList(), statuses::toString);
+        assertEquals(WRITES, addressRepository.count());
+        assertEquals(WRITES, seq());
+        assertEquals(WRITES, jdbcTemplate.queryForObject(
+                "SELECT change_seq FROM contact WHERE username = ?", Long.class, "test"));
+    }
+
+    private List<Integer> concurrently(String path, String body) throws Exception {
+        List<Integer> statuses = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(THREADS)) {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < WRITES; i++) {
+                futures.add(executor.submit(() -> mockMvc.perform(
+                        post(path)
+                                .accept(MediaType.APPLICATION_JSON)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(body)
+                                .header("X-API-TOKEN", "test")
+                ).andReturn().getResponse().getStatus()));
+            }
+            for (Future<Integer> future : futures) {
+                statuses.add(future.get());
+            }
+        }
+        return statuses;
+    }
+
+    private long seq() {
+        return jdbcTemplate.queryForObject("SELECT seq FROM contact_change_seq WHERE username = ?", Long.class, "test");
+    }
+}
@@ -1,14 +1,31 @@
 package com.agung.restful.controller;
 
+import com.agung.restful.entity.Address;
 import com.agung.restful.entity.Contact;
 import com.agung.restful.entity.User;
+import com.agung.restful.entity.UserSession;
+import com.agung.restful.id.UuidV7;
+import com.agung.restful.model.request.BulkContactOperation;
+import com.agung.restful.model.request.BulkContactRequest;
+import com.agung.restful.model.response.BulkContactResult;
+import com.agung.restful.model.response.ContactChangeResponse;
+import com.agung.restful.model.response.ContactExportResponse;
 import com.agung.restful.model.response.ContactResponse;
+import com.agung.restful.model.response.ImportJobResponse;
+import com.agung.restful.model.request.CreateAddressRequest;
 import com.agung.restful.model.request.CreateContactRequest;
 import com.agung.restful.model.request.UpdateContactRequest;
+import com.agung.restful.model.response.AddressResponse;
 import com.agung.restful.model.response.WebResponse;
+import com.agung.restful.repository.AddressRepository;
 import com.agung.restful.repository.ContactRepository;
 import com.agung.restful.repository.UserRepository;
+import com.agung.restful.repository.UserSessionRepository;
 import com.agung.restful.security.BCrypt;
+import com.agung.restful.security.SessionCache;
+import com.agung.restful.service.ContactCountCache;
+import com.agung.restful.service.ContactExportService;
+import com.agung.restful.service.ContactSearchIndex;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
@@ -16,11 +33,20 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -37,14 +63,39 @@ class ContactControllerTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserSessionRepository userSessionRepository;
+
     @Autowired
     private ContactRepository contactRepository;
 
+    @Autowired
+    private AddressRepository addressRepository;
+
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private SessionCache sessionCache;
+
+    @Autowired
+    private ContactCountCache contactCountCache;
+
+    @Autowired
+    private ContactSearchIndex contactSearchIndex;
+
+    @Autowired
+    private ContactExportService contactExportService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @BeforeEach
     void setUp() {
+        sessionCache.invalidateAll();
+        contactCountCache.invalidateAll();
+        jdbcTemplate.update("DELETE FROM contact_tombstone");
+        addressRepository.deleteAll();
         contactRepository.deleteAll();
         userRepository.deleteAll();
 
@@ -52,9 +103,8 @@ class ContactControllerTest {
         user.setUsername("test");
         user.setPassword(BCrypt.hashpw("test",BCrypt.gensalt()));
         user.setName("Test");
-        user.setToken("test");
-        user.setTokenExpiredAt(System.currentTimeMillis() + (60 * 60 * 1000));
         userRepository.save(user);
+        userSessionRepository.save(new UserSession("test", user.getUsername(), System.currentTimeMillis(), System.currentTimeMillis() + (60 * 60 * 1000)));
     }
 
     @Test
@@ -274,6 +324,7 @@ class ContactControllerTest {
     void searchNotFound()throws Exception {
         mockMvc.perform(
                 get("/api/contacts")
+                        .queryParam("count","true")
                         .accept(MediaType.APPLICATION_JSON)
                         .contentType(MediaType.APPLICATION_JSON)
                         .header("X-API-TOKEN","test")
@@ -294,6 +345,7 @@ class ContactControllerTest {
     @Test
     void searchContactSuccess()throws Exception {
         User user = userRepository.findById("test").orElseThrow();
+        List<Contact> contacts = new ArrayList<>();
         for (int i = 0; i < 100; i++) {
             Contact contact = new Contact();
             contact.setId(UUID.randomUUID().toString());
@@ -303,10 +355,13 @@ class ContactControllerTest {
             contact.setPhone("09876543");
             contact.setUser(user);
             contactRepository.save(contact);
+            contacts.add(contact);
         }
+        contactSearchIndex.index(contacts);
 
         mockMvc.perform(
                 get("/api/contacts")
+                        .queryParam("count","true")
                         .queryParam("name","agung")
                         .accept(MediaType.APPLICATION_JSON)
                         .contentType(MediaType.APPLICATION_JSON)
@@ -326,6 +381,7 @@ class ContactControllerTest {
 
         mockMvc.perform(
                 get("/api/contacts")
+                        .queryParam("count","true")
                         .queryParam("email","mail.com")
                         .accept(MediaType.APPLICATION_JSON)
                         .contentType(MediaType.APPLICATION_JSON)
@@ -345,6 +401,7 @@ class ContactControllerTest {
 
         mockMvc.perform(
                 get("/api/contacts")
+                        .queryParam("count","true")
                         .queryParam("phone","09876")
                         .accept(MediaType.APPLICATION_JSON)
                         .contentType(MediaType.APPLICATION_JSON)
@@ -364,6 +421,7 @@ class ContactControllerTest {
 
         mockMvc.perform(
                 get("/api/contacts")
+                        .queryParam("count","true")
                         .queryParam("phone","09876")
                         .queryParam("page","1000")
                         .accept(MediaType.APPLICATION_JSON)
@@ -382,4 +440,900 @@ class ContactControllerTest {
             assertEquals(10,response.getPaging().getSize());
         });
     }
-}
\ No newline at end of file
+
+    @Test
+    void searchAccentedMixedCaseName() throws Exception {
+        User user = userRepository.findById("test").orElseThrow();
+        List<Contact> contacts = new ArrayList<>();
+        for (String[] name : new String[][]{{"José", "RAMÍREZ"}, {"Budi", "Santoso"}}) {
+            Contact contact = new Contact();
+            contact.setId(UuidV7.generate());
+            contact.setFirstName(name[0]);
+            contact.setLastName(name[1]);
+            contact.setUser(user);
+            contactRepository.save(contact);
+            contacts.add(contact);
+        }
+        contactSearchIndex.index(contacts);
+
+        // LIKE memakai collation kolom contact, prefilter trigram tidak boleh membuang hasilnya
+        for (String name : List.of("jose", "JOSÉ", "José", "ramirez", "mÍr", "j_se", "%ose")) {
+            mockMvc.perform(
+                    get("/api/contacts")
+                            .queryParam("name", name)
+                            .accept(MediaType.APPLICATION_JSON)
+                            .header("X-API-TOKEN", "test")
+            ).andExpectAll(
+                    status().isOk()
+            ).andDo(result -> {
+                WebResponse<List<ContactResponse>> response = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+                });
+
+                assertNull(response.getErrors());
+                assertEquals(1, response.getData().size(), name);
+                assertEquals("José", response.getData().getFirst().getFirstName(), name);
+            });
+        }
+    }
+
+    @Test
+    void searchWithCursor() throws Exception {
+        User user = userRepository.findById("test").orElseThrow();
+        List<Contact> contacts = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            Contact contact = new Contact();
+            contact.setId(UUID.randomUUID().toString());
+            contact.setFirstName("agung"+i);
+            contact.setLastName("permadi");
+            contact.setEmail("agung@mail.com");
+            contact.setPhone("09876543");
+            contact.setUser(user);
+            contactRepository.save(contact);
+            contacts.add(contact);
+        }
+        contactSearchIndex.index(contacts);
+
+        Set<String> ids = new HashSet<>();
+        String cursor = "";
+        int requests = 0;
+        while (cursor != null) {
+            String content = mockMvc.perform(
+                    get("/api/contacts")
+                            .queryParam("name","agung")
+                            .queryParam("size","10")
+                            .queryParam("cursor",cursor)
+                            .accept(MediaType.APPLICATION_JSON)
+                            .header("X-API-TOKEN","test")
+            ).andExpectAll(
+                    status().isOk()
+            ).andReturn().getResponse().getContentAsString();
+
+            WebResponse<List<ContactResponse>> response = objectMapper.readValue(content, new TypeReference<>() {
+            });
+            assertNull(response.getErrors());
+            assertNull(response.getPaging().getTotalPage());
+            assertEquals(10,response.getPaging().getSize());
+            response.getData().forEach(contact -> assertTrue(ids.add(contact.getId())));
+
+            cursor = response.getPaging().getNextCursor();
+            requests++;
+        }
+
+        assertEquals(25, ids.size());
+        assertEquals(3, requests);
+
+        mockMvc.perform(
+                get("/api/contacts")
+                        .queryParam("size","10")
+                        .queryParam("cursor","")
+                        .queryParam("count","true")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN","test")
+        ).andExpectAll(
+                status().isOk()
+        ).andDo(result -> {
+            WebResponse<List<ContactResponse>> response = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+            });
+            assertEquals(10,response.getData().size());
+            assertEquals(3,response.getPaging().getTotalPage());
+            assertNotNull(response.getPaging().getNextCursor());
+        });
+    }
+
+    @Test
+    void searchWithoutCount() throws Exception {
+        User user = userRepository.findById("test").orElseThrow();
+        for (int i = 0; i < 25; i++) {
+            Contact contact = new Contact();
+            contact.setId(UUID.randomUUID().toString());
+            contact.setFirstName("agung"+i);
+            contact.setLastName("permadi");
+            contact.setEmail("agung@mail.com");
+            contact.setPhone("09876543");
+            contact.setUser(user);
+            contactRepository.save(contact);
+        }
+
+        Set<String> ids = new HashSet<>();
+        for (int page = 1; page <= 3; page++) {
+            String content = mockMvc.perform(
+                    get("/api/contacts")
+                            .queryParam("size","10")
+                            .queryParam("page",String.valueOf(page))
+                            .accept(MediaType.APPLICATION_JSON)
+                            .header("X-API-TOKEN","test")
+            ).andExpectAll(
+                    status().isOk()
+            ).andReturn().getResponse().getContentAsString();
+
+            WebResponse<List<ContactResponse>> response = objectMapper.readValue(content, new TypeReference<>() {
+            });
+            assertNull(response.getErrors());
+            assertNull(response.getPaging().getTotalPage());
+            assertEquals(page,response.getPaging().getCurrentPage());
+            assertEquals(page < 3 ? 10 : 5,response.getData().size());
+            response.getData().forEach(contact -> assertTrue(ids.add(contact.getId())));
+        }
+        assertEquals(25, ids.size());
+    }
+
+    @Test
+    void searchAfterCreateAndUpdate() throws Exception {
+        CreateContactRequest createRequest = new CreateContactRequest();
+        createRequest.setFirstName("Agung");
+        createRequest.setLastName("Permadi");
+        createRequest.setEmail("agung@mail.com");
+        createRequest.setPhone("08777186288");
+
+        String content = mockMvc.perform(
+                post("/api/contacts")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(createRequest))
+                        .header("X-API-TOKEN","test")
+        ).andExpectAll(
+                status().isOk()
+        ).andReturn().getResponse().getContentAsString();
+        WebResponse<ContactResponse> created = objectMapper.readValue(content, new TypeReference<>() {
+        });
+
+        assertEquals(1, searchCount("name", "RMAD"));
+        assertEquals(1, searchCount("email", "gung@mai"));
+        assertEquals(1, searchCount("phone", "7186"));
+        assertEquals(0, searchCount("name", "budi"));
+
+        UpdateContactRequest updateRequest = new UpdateContactRequest();
+        updateRequest.setFirstName("Budi");
+        updateRequest.setLastName("Santoso");
+
+        mockMvc.perform(
+                put("/api/contacts/"+created.getData().getId())
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(updateRequest))
+                        .header("X-API-TOKEN","test")
+        ).andExpectAll(
+                status().isOk()
+        );
+
+        assertEquals(0, searchCount("name", "permadi"));
+        assertEquals(1, searchCount("name", "ntos"));
+        assertEquals(0, searchCount("phone", "7186"));
+    }
+
+    @Test
+    void bulkSuccess() throws Exception {
+        User user = userRepository.findById("test").orElseThrow();
+        List<Contact> contacts = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Contact contact = new Contact();
+            contact.setId(UUID.randomUUID().toString());
+            contact.setFirstName("agung"+i);
+            contact.setUser(user);
+            contactRepository.save(contact);
+            contacts.add(contact);
+        }
+        contactSearchIndex.index(contacts);
+
+        BulkContactRequest request = new BulkContactRequest(List.of(
+                BulkContactOperation.builder().action("create").firstName("Budi").lastName("Santoso").email("budi@mail.com").build(),
+                BulkContactOperation.builder().action("create").firstName("").build(),
+                BulkContactOperation.builder().action("update").id(contacts.get(0).getId()).firstName("Joko").build(),
+                BulkContactOperation.builder().action("delete").id(contacts.get(1).getId()).build(),
+                BulkContactOperation.builder().action("delete").id(UUID.randomUUID().toString()).build(),
+                BulkContactOperation.builder().action("delete").id(contacts.get(0).getId()).build(),
+                BulkContactOperation.builder().action("upsert").firstName("Ani").build()
+        ));
+
+        mockMvc.perform(
+                post("/api/contacts/bulk")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request))
+                        .header("X-API-TOKEN","test")
+        ).andExpectAll(
+                status().isOk()
+        ).andDo(result -> {
+            WebResponse<List<BulkContactResult>> response = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+            });
+
+            assertNull(response.getErrors());
+            assertEquals(List.of(200, 400, 200, 200, 404, 400, 400),
+                    response.getData().stream().map(BulkContactResult::getStatus).toList());
+            assertNotNull(response.getData().get(0).getId());
+            assertNotNull(response.getData().get(1).getErrors());
+            assertTrue(contactRepository.existsById(response.getData().get(0).getId()));
+        });
+
+        assertEquals(2, contactRepository.count());
+        assertEquals("Joko", contactRepository.findById(contacts.get(0).getId()).orElseThrow().getFirstName());
+        assertFalse(contactRepository.existsById(contacts.get(1).getId()));
+        assertEquals(1, searchCount("name", "santoso"));
+        assertEquals(1, searchCount("name", "joko"));
+        assertEquals(0, searchCount("name", "agung"));
+    }
+
+    @Test
+    void bulkTooManyOperations() throws Exception {
+        List<BulkContactOperation> operations = new ArrayList<>();
+        for (int i = 0; i < 5001; i++) {
+            operations.add(BulkContactOperation.builder().action("create").firstName("agung"+i).build());
+        }
+
+        mockMvc.perform(
+                post("/api/contacts/bulk")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new BulkContactRequest(operations)))
+                        .header("X-API-TOKEN","test")
+        ).andExpectAll(
+                status().isBadRequest()
+        ).andDo(result -> {
+            WebResponse<String> response = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+            });
+
+            assertNotNull(response.getErrors());
+        });
+
+        assertEquals(0, contactRepository.count());
+    }
+
+    @Test
+    void exportContacts() throws Exception {
+        User user = userRepository.findById("test").orElseThrow();
+        List<Contact> contacts = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Contact contact = new Contact();
+            contact.setId(UuidV7.generate());
+            contact.setFirstName("agung"+i);
+            contact.setUser(user);
+            contactRepository.save(contact);
+            contacts.add(contact);
+        }
+        for (int i = 0; i < 2; i++) {
+            Address address = new Address();
+            address.setId(UuidV7.generate());
+            address.setContact(contacts.get(1));
+            address.setCity("kota"+i);
+            address.setCountry("Indonesia");
+            addressRepository.save(address);
+        }
+
+        User other = new User();
+        other.setUsername("other");
+        other.setPassword(BCrypt.hashpw("other",BCrypt.gensalt()));
+        other.setName("Other");
+        userRepository.save(other);
+        Contact otherContact = new Contact();
+        otherContact.setId(UuidV7.generate());
+        otherContact.setFirstName("bukan milik test");
+        otherContact.setUser(other);
+        contactRepository.save(otherContact);
+
+        MvcResult asyncResult = mockMvc.perform(
+                get("/api/contacts/export")
+                        .accept(MediaType.APPLICATION_NDJSON)
+                        .header("X-API-TOKEN","test")
+        ).andExpect(request().asyncStarted()).andReturn();
+        assertEquals(contactExportService.timeoutMs(), asyncResult.getRequest().getAsyncContext().getTimeout());
+
+        String content = mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpectAll(
+                        status().isOk(),
+                        content().contentType(MediaType.APPLICATION_NDJSON)
+                ).andReturn().getResponse().getContentAsString();
+
+        List<ContactExportResponse> lines = new ArrayList<>();
+        for (String line : content.split("\n")) {
+            lines.add(objectMapper.readValue(line, ContactExportResponse.class));
+        }
+        // urut berdasarkan id
+        assertEquals(contacts.stream().map(Contact::getId).sorted().toList(),
+                lines.stream().map(ContactExportResponse::getId).toList());
+        for (ContactExportResponse line : lines) {
+            int expectedAddresses = line.getId().equals(contacts.get(1).getId()) ? 2 : 0;
+            assertEquals(expectedAddresses, line.getAddresses().size());
+        }
+        ContactExportResponse withAddresses = lines.stream()
+                .filter(line -> line.getId().equals(contacts.get(1).getId()))
+                .findFirst().orElseThrow();
+        assertEquals("agung1", withAddresses.getFirstName());
+        assertEquals(Set.of("kota0", "kota1"), withAddresses.getAddresses().stream().map(AddressResponse::getCity).collect(Collectors.toSet()));
+    }
+
+    @Test
+    void exportTooManyPerUser() throws Exception {
+        List<ContactExportService.Slot> slots = new ArrayList<>();
+        try {
+            // app.contact-export.max-per-user=2
+            slots.add(contactExportService.acquire("test"));
+            slots.add(contactExportService.acquire("test"));
+
+            mockMvc.perform(
+                    get("/api/contacts/export")
+                            .accept(MediaType.APPLICATION_NDJSON)
+                            .header("X-API-TOKEN","test")
+            ).andExpect(status().isTooManyRequests());
+        } finally {
+            slots.forEach(ContactExportService.Slot::close);
+        }
+
+        // slot dikembalikan setelah export selesai
+        for (int i = 0; i < 3; i++) {
+            MvcResult asyncResult = mockMvc.perform(
+                    get("/api/contacts/export")
+                            .accept(MediaType.APPLICATION_NDJSON)
+                            .header("X-API-TOKEN","test")
+            ).andExpect(request().asyncStarted()).andReturn();
+            mockMvc.perform(asyncDispatch(asyncResult)).andExpect(status().isOk());
+        }
+    }
+
+    @Test
+    void exportTooManyOnServer() throws Exception {
+        List<ContactExportService.Slot> slots = new ArrayList<>();
+        try {
+            // app.contact-export.max-concurrent=8, dipakai user lain
+            for (int i = 0; i < 8; i++) {
+                slots.add(contactExportService.acquire("other" + i));
+            }
+
+            mockMvc.perform(
+                    get("/api/contacts/export")
+                            .accept(MediaType.APPLICATION_NDJSON)
+                            .header("X-API-TOKEN","test")
+            ).andExpect(status().isTooManyRequests());
+        } finally {
+            slots.forEach(ContactExportService.Slot::close);
+        }
+    }
+
+    @Test
+    void getContactWithAddresses() throws Exception {
+        User user = userRepository.findById("test").orElseThrow();
+        Contact contact = new Contact();
+        contact.setId(UuidV7.generate());
+        contact.setFirstName("Agung");
+        contact.setUser(user);
+        contactRepository.save(contact);
+        for (int i = 0; i < 2; i++) {
+            Address address = new Address();
+            address.setId(UuidV7.generate());
+            address.setContact(contact);
+            address.setCity("kota"+i);
+            address.setCountry("Indonesia");
+            addressRepository.save(address);
+        }
+
+        mockMvc.perform(
+                get("/api/contacts/" + contact.getId())
+                        .queryParam("include","addresses")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN","test")
+        ).andExpectAll(
+                status().isOk()
+        ).andDo(result -> {
+            WebResponse<ContactResponse> response = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+            });
+            assertEquals("Agung", response.getData().getFirstName());
+            assertEquals(Set.of("kota0", "kota1"), response.getData().getAddresses().stream().map(AddressResponse::getCity).collect(Collectors.toSet()));
+        });
+
+        // tanpa include, field addresses tidak ada di response
+        mockMvc.perform(
+                get("/api/contacts/" + contact.getId())
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN","test")
+        ).andExpectAll(
+                status().isOk(),
+                jsonPath("$.data.addresses").doesNotHaveJsonPath(),
+                jsonPath("$.data.lastName").hasJsonPath()
+        );
+    }
+
+    @Test
+    void searchWithAddresses() throws Exception {
+        User user = userRepository.findById("test").orElseThrow();
+        List<Contact> contacts = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Contact contact = new Contact();
+            contact.setId(UuidV7.generate());
+            contact.setFirstName("agung"+i);
+            contact.setUser(user);
+            contactRepository.save(contact);
+            contacts.add(contact);
+        }
+        Address address = new Address();
+        address.setId(UuidV7.generate());
+        address.setContact(contacts.get(1));
+        address.setCity("Jakarta");
+        address.setCountry("Indonesia");
+        addressRepository.save(address);
+
+        for (String cursor : new String[]{null, ""}) {
+            mockMvc.perform(
+                    get("/api/contacts")
+                            .queryParam("include","addresses")
+                            .queryParam("size","10")
+                            .queryParam("cursor",cursor)
+                            .accept(MediaType.APPLICATION_JSON)
+                            .header("X-API-TOKEN","test")
+            ).andExpectAll(
+                    status().isOk()
+            ).andDo(result -> {
+                WebResponse<List<ContactResponse>> response = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+                });
+                assertEquals(3, response.getData().size());
+                for (ContactResponse contact : response.getData()) {
+                    List<String> expected = contact.getId().equals(contacts.get(1).getId()) ? List.of("Jakarta") : List.of();
+                    assertEquals(expected, contact.getAddresses().stream().map(AddressResponse::getCity).toList());
+                }
+            });
+        }
+
+        mockMvc.perform(
+                get("/api/contacts")
+                        .queryParam("include","phones")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN","test")
+        ).andExpectAll(
+                status().isBadRequest()
+        );
+    }
+
+    @Test
+    void searchWithFields() throws Exception {
+        User user = userRepository.findById("test").orElseThrow();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Contact contact = new Contact();
+            contact.setId(UuidV7.generate());
+            contact.setFirstName("agung"+i);
+            contact.setLastName("pramono");
+            contact.setEmail("agung"+i+"@mail.com");
+            contact.setUser(user);
+            contactRepository.save(contact);
+            ids.add(contact.getId());
+        }
+        ids.sort(null);
+
+        mockMvc.perform(
+                get("/api/contacts")
+                        .queryParam("fields","firstName")
+                        .queryParam("size","10")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN","test")
+        ).andExpectAll(
+                status().isOk(),
+                jsonPath("$.data.length()").value(5),
+                jsonPath("$.data[0].id").value(ids.get(0)),
+                jsonPath("$.data[0].firstName").exists(),
+                jsonPath("$.data[0].lastName").doesNotHaveJsonPath(),
+                jsonPath("$.data[0].email").doesNotHaveJsonPath()
+        );
+
+        // tanpa fields, field yang null tetap ada di payload
+        mockMvc.perform(
+                get("/api/contacts")
+                        .queryParam("size","10")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN","test")
+        ).andExpectAll(
+                status().isOk(),
+                jsonPath("$.data[0].phone").hasJsonPath(),
+                jsonPath("$.data[0].phone").isEmpty(),
+                jsonPath("$.data[0].addresses").doesNotHaveJsonPath()
+        );
+
+        // keyset pagination dengan projection
+        List<String> found = new ArrayList<>();
+        String cursor = "";
+        while (cursor != null) {
+            String content = mockMvc.perform(
+                    get("/api/contacts")
+                            .queryParam("fields","firstName,email")
+                            .queryParam("size","2")
+                            .queryParam("cursor",cursor)
+                            .accept(MediaType.APPLICATION_JSON)
+                            .header("X-API-TOKEN","test")
+            ).andExpectAll(
+                    status().isOk()
+            ).andReturn().getResponse().getContentAsString();
+            WebResponse<List<ContactResponse>> response = objectMapper.readValue(content, new TypeReference<>() {
+            });
+            for (ContactResponse contact : response.getData()) {
+                assertNotNull(contact.getEmail());
+                assertNull(contact.getLastName());
+                found.add(contact.getId());
+            }
+            cursor = response.getPaging().getNextCursor();
+        }
+        assertEquals(ids, found);
+
+        mockMvc.perform(
+                get("/api/contacts")
+                        .queryParam("fields","password")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN","test")
+        ).andExpectAll(
+                status().isBadRequest()
+        );
+    }
+
+    @Test
+    void importCsv() throws Exception {
+        String csv = """
+                firstName,lastName,email,phone,street,city,country
+                Agung,Pramono,agung@mail.com,0812,"Jl. Merdeka, No. 1",Jakarta,Indonesia
+                Salah,,email salah,,,,
+                ,Tanpa Nama,,,,,
+                Budi,,,0813,,,
+                """;
+
+        String content = mockMvc.perform(
+                post("/api/contacts/import")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType("text/csv")
+                        .content(csv)
+                        .header("X-API-TOKEN","test")
+        ).andExpectAll(
+                status().isOk()
+        ).andReturn().getResponse().getContentAsString();
+        WebResponse<ImportJobResponse> response = objectMapper.readValue(content, new TypeReference<>() {
+        });
+
+        ImportJobResponse job = response.getData();
+        assertNotNull(job.getId());
+        assertEquals("COMPLETED", job.getStatus());
+        assertEquals("csv", job.getFormat());
+        assertEquals(4, job.getProcessed());
+        assertEquals(2, job.getImported());
+        assertEquals(2, job.getFailed());
+        assertEquals(2, job.getErrors().size());
+        assertTrue(job.getErrors().get(0).startsWith("row 2: "));
+        assertTrue(job.getErrors().get(1).startsWith("row 3: "));
+
+        assertEquals(2, contactRepository.count());
+        List<Address> addresses = addressRepository.findAll();
+        assertEquals(1, addresses.size());
+        assertEquals("Jl. Merdeka, No. 1", addresses.get(0).getStreet());
+        assertEquals(1, searchCount("name", "pramono"));
+    }
+
+    @Test
+    void importNdjson() throws Exception {
+        String ndjson = """
+                {"firstName":"Agung","email":"agung@mail.com","addresses":[{"city":"Jakarta","country":"Indonesia"},{"city":"Bandung","country":"Indonesia"}]}
+                {"firstName":"Salah","addresses":"bukan array"}
+                {"firstName":"Tanpa Negara","addresses":[{"city":"Jakarta"}]}
+                {"firstName":"Budi","city":"Surabaya","country":"Indonesia"}
+                """;
+
+        String content = mockMvc.perform(
+                post("/api/contacts/import")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(ndjson)
+                        .header("X-API-TOKEN","test")
+        ).andExpectAll(
+                status().isOk()
+        ).andReturn().getResponse().getContentAsString();
+        WebResponse<ImportJobResponse> response = objectMapper.readValue(content, new TypeReference<>() {
+        });
+
+        ImportJobResponse job = response.getData();
+        assertEquals("COMPLETED", job.getStatus());
+        assertEquals(4, job.getProcessed());
+        assertEquals(2, job.getImported());
+        assertEquals(2, job.getFailed());
+        assertEquals(2, contactRepository.count());
+        assertEquals(3, addressRepository.count());
+
+        mockMvc.perform(
+                get("/api/contacts/import/" + job.getId())
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN","test")
+        ).andExpectAll(
+                status().isOk()
+        ).andDo(result -> {
+            WebResponse<ImportJobResponse> jobResponse = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+            });
+            assertEquals(job, jobResponse.getData());
+        });
+
+        mockMvc.perform(
+                get("/api/contacts/import")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN","test")
+        ).andExpectAll(
+                status().isOk()
+        ).andDo(result -> {
+            WebResponse<List<ImportJobResponse>> jobsResponse = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+            });
+            assertTrue(jobsResponse.getData().contains(job));
+        });
+    }
+
+    @Test
+    void importJobNotFound() throws Exception {
+        mockMvc.perform(
+                get("/api/contacts/import/" + UUID.randomUUID())
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN","test")
+        ).andExpectAll(
+                status().isNotFound()
+        );
+    }
+
+    @Test
+    void getContactNotModified() throws Exception {
+        Contact contact = new Contact();
+        contact.setId(UuidV7.generate());
+        contact.setFirstName("Agung");
+        contact.setUser(userRepository.findById("test").orElseThrow());
+        contactRepository.save(contact);
+
+        String etag = mockMvc.perform(
+                get("/api/contacts/" + contact.getId())
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN","test")
+        ).andExpectAll(
+                status().isOk(),
+                header().exists(HttpHeaders.ETAG),
+                jsonPath("$.data.version").doesNotExist()
+        ).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(
+                get("/api/contacts/" + contact.getId())
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN","test")
+                        .header(HttpHeaders.IF_NONE_MATCH, etag)
+        ).andExpectAll(
+                status().isNotModified(),
+                header().string(HttpHeaders.ETAG, etag),
+                content().string("")
+        );
+
+        UpdateContactRequest request = UpdateContactRequest.builder().firstName("Budi").build();
+        String updatedEtag = mockMvc.perform(
+                put("/api/contacts/" + contact.getId())
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request))
+                        .header("X-API-TOKEN","test")
+        ).andExpectAll(
+                status().isOk()
+        ).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(etag, updatedEtag);
+
+        mockMvc.perform(
+                get("/api/contacts/" + contact.getId())
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN","test")
+                        .header(HttpHeaders.IF_NONE_MATCH, etag)
+        ).andExpectAll(
+                status().isOk(),
+                header().string(HttpHeaders.ETAG, updatedEtag),
+                jsonPath("$.data.firstName").value("Budi")
+        );
+    }
+
+    @Test
+    void getContactWithAddressesNotModified() throws Exception {
+        Contact contact = new Contact();
+        contact.setId(UuidV7.generate());
+        contact.setFirstName("Agung");
+        contact.setUser(userRepository.findById("test").orElseThrow());
+        contactRepository.save(contact);
+
+        String etag = mockMvc.perform(
+                get("/api/contacts/" + contact.getId())
+                        .queryParam("include","addresses")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN","test")
+        ).andExpectAll(
+                status().isOk()
+        ).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(
+                get("/api/contacts/" + contact.getId())
+                        .queryParam("include","addresses")
+                        .header("X-API-TOKEN","test")
+                        .header(HttpHeaders.IF_NONE_MATCH, etag)
+        ).andExpectAll(
+                status().isNotModified()
+        );
+
+        // address baru tidak mengubah version contact, tetapi tetap mengubah ETag dengan include=addresses
+        Address address = new Address();
+        address.setId(UuidV7.generate());
+        address.setContact(contact);
+        address.setCity("kota");
+        address.setCountry("Indonesia");
+        addressRepository.save(address);
+
+        mockMvc.perform(
+                get("/api/contacts/" + contact.getId())
+                        .queryParam("include","addresses")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN","test")
+                        .header(HttpHeaders.IF_NONE_MATCH, etag)
+        ).andExpectAll(
+                status().isOk(),
+                jsonPath("$.data.addresses.length()").value(1)
+        );
+    }
+
+    @Test
+    void updateContactIfMatch() throws Exception {
+        Contact contact = new Contact();
+        contact.setId(UuidV7.generate());
+        contact.setFirstName("Agung");
+        contact.setUser(userRepository.findById("test").orElseThrow());
+        contactRepository.save(contact);
+        String etag = "\"" + contactRepository.findById(contact.getId()).orElseThrow().getVersion() + "\"";
+
+        UpdateContactRequest request = UpdateContactRequest.builder().firstName("Budi").build();
+        mockMvc.perform(
+                put("/api/contacts/" + contact.getId())
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request))
+                        .header("X-API-TOKEN","test")
+                        .header(HttpHeaders.IF_MATCH, "\"999\"")
+        ).andExpectAll(
+                status().isPreconditionFailed()
+        );
+        assertEquals("Agung", contactRepository.findById(contact.getId()).orElseThrow().getFirstName());
+
+        mockMvc.perform(
+                put("/api/contacts/" + contact.getId())
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request))
+                        .header("X-API-TOKEN","test")
+                        .header(HttpHeaders.IF_MATCH, etag)
+        ).andExpectAll(
+                status().isOk()
+        );
+
+        // ETag yang sama sudah usang setelah update pertama
+        mockMvc.perform(
+                delete("/api/contacts/" + contact.getId())
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN","test")
+                        .header(HttpHeaders.IF_MATCH, etag)
+        ).andExpectAll(
+                status().isPreconditionFailed()
+        );
+        assertTrue(contactRepository.existsById(contact.getId()));
+    }
+
+    @Test
+    void changesSince() throws Exception {
+        String first = createContact("Agung");
+        String second = createContact("Budi");
+
+        MvcResult initial = changes(null);
+        long watermark = Long.parseLong(initial.getResponse().getHeader(ContactController.CHANGE_WATERMARK_HEADER));
+        List<ContactChangeResponse> lines = changeLines(initial);
+        assertEquals(List.of(first, second), lines.stream().map(ContactChangeResponse::getId).toList());
+        assertEquals(watermark, lines.get(1).getSeq());
+
+        UpdateContactRequest update = UpdateContactRequest.builder().firstName("Agung Baru").build();
+        mockMvc.perform(
+                put("/api/contacts/" + first)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(update))
+                        .header("X-API-TOKEN","test")
+        ).andExpect(status().isOk());
+        CreateAddressRequest address = CreateAddressRequest.builder().city("kota").country("Indonesia").build();
+        mockMvc.perform(
+                post("/api/contacts/" + second + "/addresses")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(address))
+                        .header("X-API-TOKEN","test")
+        ).andExpect(status().isOk());
+        String deleted = createContact("Citra");
+        mockMvc.perform(
+                delete("/api/contacts/" + deleted)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN","test")
+        ).andExpect(status().isOk());
+
+        MvcResult delta = changes(watermark);
+        lines = changeLines(delta);
+        // urut berdasarkan seq: update, address baru, lalu tombstone
+        assertEquals(List.of(first, second, deleted), lines.stream().map(ContactChangeResponse::getId).toList());
+        assertEquals("Agung Baru", lines.get(0).getFirstName());
+        assertEquals(List.of("kota"), lines.get(1).getAddresses().stream().map(AddressResponse::getCity).toList());
+        assertEquals(Boolean.TRUE, lines.get(2).getDeleted());
+        assertNull(lines.get(2).getFirstName());
+        assertTrue(lines.get(0).getSeq() > watermark);
+
+        long latest = Long.parseLong(delta.getResponse().getHeader(ContactController.CHANGE_WATERMARK_HEADER));
+        assertEquals(lines.get(2).getSeq(), latest);
+        assertEquals("", changes(latest).getResponse().getContentAsString());
+
+        mockMvc.perform(
+                get("/api/contacts/changes")
+                        .queryParam("since", String.valueOf(latest + 1))
+                        .header("X-API-TOKEN","test")
+        ).andExpect(status().isGone());
+        mockMvc.perform(
+                get("/api/contacts/changes")
+                        .queryParam("since", "-1")
+                        .header("X-API-TOKEN","test")
+        ).andExpect(status().isBadRequest());
+    }
+
+    private String createContact(String firstName) throws Exception {
+        CreateContactRequest request = CreateContactRequest.builder().firstName(firstName).build();
+        String content = mockMvc.perform(
+                post("/api/contacts")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request))
+                        .header("X-API-TOKEN","test")
+        ).andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(content).get("data").get("id").asText();
+    }
+
+    private MvcResult changes(Long since) throws Exception {
+        MockHttpServletRequestBuilder request = get("/api/contacts/changes")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .header("X-API-TOKEN","test");
+        if (Objects.nonNull(since)) {
+            request.queryParam("since", String.valueOf(since));
+        }
+        MvcResult asyncResult = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+        return mockMvc.perform(asyncDispatch(asyncResult)).andExpect(status().isOk()).andReturn();
+    }
+
+    private List<ContactChangeResponse> changeLines(MvcResult result) throws Exception {
+        List<ContactChangeResponse> lines = new ArrayList<>();
+        for (String line : result.getResponse().getContentAsString().split("\n")) {
+            if (!line.isBlank()) {
+                lines.add(objectMapper.readValue(line, ContactChangeResponse.class));
+            }
+        }
+        return lines;
+    }
+
+    private int searchCount(String param, String value) throws Exception {
+        String content = mockMvc.perform(
+                get("/api/contacts")
+                        .queryParam(param,value)
+                        .queryParam("size","10")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN","test")
+        ).andExpectAll(
+                status().isOk()
+        ).andReturn().getResponse().getContentAsString();
+        WebResponse<List<ContactResponse>> response = objectMapper.readValue(content, new TypeReference<>() {
+        });
+        return response.getData().size();
+    }
+}
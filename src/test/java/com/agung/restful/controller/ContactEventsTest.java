@@ -0,0 +1,252 @@
+package com.agung.restful.controller;
+
+import com.agung.restful.entity.User;
+import com.agung.restful.entity.UserSession;
+import com.agung.restful.model.request.CreateAddressRequest;
+import com.agung.restful.model.request.CreateContactRequest;
+import com.agung.restful.model.response.ContactEventResponse;
+import com.agung.restful.repository.AddressRepository;
+import com.agung.restful.repository.ContactRepository;
+import com.agung.restful.repository.UserRepository;
+import com.agung.restful.repository.UserSessionRepository;
+import com.agung.restful.security.BCrypt;
+import com.agung.restful.security.SessionCache;
+import com.agung.restful.service.ContactEventBus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class ContactEventsTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserSessionRepository userSessionRepository;
+
+    @Autowired
+    private ContactRepository contactRepository;
+
+    @Autowired
+    private AddressRepository addressRepository;
+
+    @Autowired
+    private SessionCache sessionCache;
+
+    @Autowired
+    private ContactEventBus contactEventBus;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // stream dari test sebelumnya masih terbuka di bus
+        contactEventBus.disconnect("test");
+        contactEventBus.disconnect("other");
+        await(() -> subscribers() == 0);
+
+        sessionCache.invalidateAll();
+        addressRepository.deleteAll();
+        contactRepository.deleteAll();
+        userRepository.deleteAll();
+        createUser("test");
+        createUser("other");
+    }
+
+    @Test
+    void changeEvents() throws Exception {
+        MvcResult stream = subscribe("test", null);
+        MvcResult otherStream = subscribe("other", null);
+
+        String contactId = createContact("test");
+        CreateAddressRequest address = CreateAddressRequest.builder().city("kota").country("Indonesia").build();
+        mockMvc.perform(
+                post("/api/contacts/" + contactId + "/addresses")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(address))
+                        .header("X-API-TOKEN", "test")
+        ).andExpect(status().isOk());
+        String deletedId = createContact("test");
+        mockMvc.perform(
+                delete("/api/contacts/" + deletedId)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN", "test")
+        ).andExpect(status().isOk());
+
+        await(() -> events(stream).size() == 4);
+        List<Event> events = events(stream);
+        assertEquals(List.of("change", "change", "change", "change"), events.stream().map(Event::name).toList());
+        assertEquals(List.of(contactId), events.get(0).data().getChanged());
+        assertEquals(List.of(contactId), events.get(1).data().getChanged());
+        assertEquals(List.of(deletedId), events.get(2).data().getChanged());
+        assertEquals(List.of(deletedId), events.get(3).data().getDeleted());
+        assertEquals(List.of(1L, 2L, 3L, 4L), events.stream().map(Event::id).toList());
+        assertEquals(4L, events.get(3).data().getSeq());
+
+        // event milik user lain tidak ikut terkirim
+        assertTrue(events(otherStream).isEmpty());
+    }
+
+    @Test
+    void resyncAfterReconnect() throws Exception {
+        createContact("test");
+        createContact("test");
+
+        MvcResult stream = subscribe("test", 1L);
+        await(() -> events(stream).size() == 1);
+        Event resync = events(stream).getFirst();
+        assertEquals(ContactEventBus.RESYNC, resync.name());
+        assertEquals(1L, resync.data().getSince());
+
+        // setelah resync event berikutnya dikirim seperti biasa
+        createContact("test");
+        await(() -> events(stream).size() == 2);
+        assertEquals(3L, events(stream).get(1).id());
+
+        // sudah terbaru: tidak ada resync
+        MvcResult upToDate = subscribe("test", 3L);
+        createContact("test");
+        await(() -> events(upToDate).size() == 1);
+        assertEquals("change", events(upToDate).getFirst().name());
+    }
+
+    @Test
+    void tooManyStreams() throws Exception {
+        for (int i = 0; i < 16; i++) {
+            subscribe("test", null);
+        }
+        mockMvc.perform(
+                get("/api/contacts/events")
+                        .header("X-API-TOKEN", "test")
+        ).andExpect(status().isTooManyRequests());
+
+        // batas per user
+        subscribe("other", null);
+    }
+
+    @Test
+    void lastEventIdAheadOfChanges() throws Exception {
+        mockMvc.perform(
+                get("/api/contacts/events")
+                        .header("Last-Event-ID", "5")
+                        .header("X-API-TOKEN", "test")
+        ).andExpect(status().isGone());
+        assertEquals(0, subscribers());
+    }
+
+    @Test
+    void logoutClosesStreams() throws Exception {
+        subscribe("test", null);
+        subscribe("other", null);
+        assertEquals(2, subscribers());
+
+        mockMvc.perform(
+                delete("/api/auth/logout")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN", "test")
+        ).andExpect(status().isOk());
+
+        await(() -> subscribers() == 1);
+    }
+
+    private MvcResult subscribe(String token, Long lastEventId) throws Exception {
+        MockHttpServletRequestBuilder request = get("/api/contacts/events")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .header("X-API-TOKEN", token);
+        if (lastEventId != null) {
+            request.header("Last-Event-ID", lastEventId);
+        }
+        return mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+    }
+
+    private String createContact(String token) throws Exception {
+        CreateContactRequest request = CreateContactRequest.builder().firstName("Agung").build();
+        String content = mockMvc.perform(
+                post("/api/contacts")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request))
+                        .header("X-API-TOKEN", token)
+        ).andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(content).get("data").get("id").asText();
+    }
+
+    private void createUser(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword(BCrypt.hashpw(username, BCrypt.gensalt()));
+        user.setName(username);
+        userRepository.save(user);
+        userSessionRepository.save(new UserSession(username, user.getUsername(), System.currentTimeMillis(), System.currentTimeMillis() + (60 * 60 * 1000)));
+    }
+
+    private double subscribers() {
+        return meterRegistry.get("contact.events.subscribers").gauge().value();
+    }
+
+    // event dikirim dari virtual thread setelah commit, tidak di thread request
+    private void await(BooleanSupplier condition) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timeout");
+            Thread.sleep(20);
+        }
+    }
+
+    private List<Event> events(MvcResult stream) {
+        List<Event> events = new ArrayList<>();
+        try {
+            for (String block : stream.getResponse().getContentAsString().split("\n\n")) {
+                String name = null;
+                Long id = null;
+                ContactEventResponse data = null;
+                for (String line : block.split("\n")) {
+                    if (line.startsWith("event:")) {
+                        name = line.substring("event:".length());
+                    } else if (line.startsWith("id:")) {
+                        id = Long.parseLong(line.substring("id:".length()));
+                    } else if (line.startsWith("data:")) {
+                        data = objectMapper.readValue(line.substring("data:".length()), ContactEventResponse.class);
+                    }
+                }
+                // heartbeat hanya komentar
+                if (name != null) {
+                    events.add(new Event(name, id, data));
+                }
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return events;
+    }
+
+    private record Event(String name, Long id, ContactEventResponse data) {
+    }
+}
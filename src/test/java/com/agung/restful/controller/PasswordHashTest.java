@@ -0,0 +1,162 @@
+package com.agung.restful.controller;
+
+import com.agung.restful.entity.User;
+import com.agung.restful.model.request.LoginUserRequest;
+import com.agung.restful.model.request.RegisterUserRequest;
+import com.agung.restful.repository.AddressRepository;
+import com.agung.restful.repository.ContactRepository;
+import com.agung.restful.repository.UserRepository;
+import com.agung.restful.security.BCrypt;
+import com.agung.restful.security.PasswordHasher;
+import com.agung.restful.security.SessionCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Pool BCrypt dengan satu thread dan antrian satu: login ketiga yang datang bersamaan langsung ditolak.
+ */
+@SpringBootTest(properties = {
+        "app.password-hash.threads=1",
+        "app.password-hash.queue-size=1",
+        "app.password-hash.log-rounds=4",
+        // hash cost 12 di rejectWhenQueueFull tidak ikut diganti di pool yang sedang diukur
+        "app.password-hash.rehash-on-login=false"
+})
+@AutoConfigureMockMvc
+class PasswordHashTest {
+
+    private static final int LOGINS = 8;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ContactRepository contactRepository;
+
+    @Autowired
+    private AddressRepository addressRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private SessionCache sessionCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        sessionCache.invalidateAll();
+        addressRepository.deleteAll();
+        contactRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void registerUsesConfiguredLogRounds() throws Exception {
+        RegisterUserRequest request = new RegisterUserRequest("test", "rahasia", "Test");
+        mockMvc.perform(
+                post("/api/users")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request))
+        ).andExpect(status().isOk());
+
+        String hash = userRepository.findById("test").orElseThrow().getPassword();
+        assertTrue(hash.startsWith("$2a$04$"), hash);
+        assertTrue(BCrypt.checkpw("rahasia", hash));
+    }
+
+    @Test
+    void rejectWhenQueueFull() throws Exception {
+        // cost 12 (ratusan ms) supaya login yang lain masih menunggu saat login berikutnya datang
+        User user = new User();
+        user.setUsername("test");
+        user.setPassword(BCrypt.hashpw("rahasia", BCrypt.gensalt(12)));
+        user.setName("Test");
+        userRepository.save(user);
+
+        LoginUserRequest request = new LoginUserRequest();
+        request.setUserName("test");
+        request.setPassword("rahasia");
+        String body = objectMapper.writeValueAsString(request);
+        double rejected = meterRegistry.get("password.hash.rejected").counter().count();
+
+        List<Integer> statuses = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(LOGINS)) {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < LOGINS; i++) {
+                futures.add(executor.submit(() -> mockMvc.perform(
+                        post("/api/auth/login")
+                                .accept(MediaType.APPLICATION_JSON)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(body)
+                ).andReturn().getResponse().getStatus()));
+            }
+            for (Future<Integer> future : futures) {
+                statuses.add(future.get());
+            }
+        }
+
+        assertTrue(statuses.contains(200), statuses::toString);
+        assertTrue(statuses.contains(429), statuses::toString);
+        assertTrue(statuses.stream().allMatch(status -> status == 200 || status == 429), statuses::toString);
+        long rejects = statuses.stream().filter(status -> status == 429).count();
+        assertEquals(rejects, meterRegistry.get("password.hash.rejected").counter().count() - rejected);
+
+        assertEquals(0, meterRegistry.get("executor.queued").tag("name", PasswordHasher.EXECUTOR_NAME).gauge().value());
+        assertEquals(LOGINS - rejects, meterRegistry.get("password.hash").tag("operation", "verify").timer().count());
+    }
+
+    @Test
+    void loginHoldsNoConnectionWhileHashing() throws Exception {
+        User user = new User();
+        user.setUsername("test");
+        user.setPassword(BCrypt.hashpw("rahasia", BCrypt.gensalt(12)));
+        user.setName("Test");
+        userRepository.save(user);
+
+        LoginUserRequest request = new LoginUserRequest();
+        request.setUserName("test");
+        request.setPassword("rahasia");
+        String body = objectMapper.writeValueAsString(request);
+
+        try (ExecutorService executor = Executors.newSingleThreadExecutor()) {
+            Future<Integer> login = executor.submit(() -> mockMvc.perform(
+                    post("/api/auth/login")
+                            .accept(MediaType.APPLICATION_JSON)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(body)
+            ).andReturn().getResponse().getStatus());
+
+            // user sudah dibaca dan hash sedang berjalan: koneksinya harus sudah kembali ke pool
+            while (meterRegistry.get("executor.active").tag("name", PasswordHasher.EXECUTOR_NAME).gauge().value() == 0) {
+                assertFalse(login.isDone());
+                Thread.onSpinWait();
+            }
+            assertEquals(0, meterRegistry.get("hikaricp.connections.active").gauge().value());
+            assertEquals(200, login.get());
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.agung.restful.controller;
+
+import com.agung.restful.entity.User;
+import com.agung.restful.model.request.LoginUserRequest;
+import com.agung.restful.repository.AddressRepository;
+import com.agung.restful.repository.ContactRepository;
+import com.agung.restful.repository.UserRepository;
+import com.agung.restful.security.BCrypt;
+import com.agung.restful.security.PasswordHasher;
+import com.agung.restful.security.SessionCache;
+import com.agung.restful.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Kalibrasi cost saat startup (target 1 ms: cost minimal log-rounds) dan penggantian hash lama setelah login.
+ */
+@SpringBootTest(properties = {
+        "app.password-hash.log-rounds=4",
+        "app.password-hash.target-ms=1"
+})
+@AutoConfigureMockMvc
+class PasswordRehashTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ContactRepository contactRepository;
+
+    @Autowired
+    private AddressRepository addressRepository;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private PasswordHasher passwordHasher;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private SessionCache sessionCache;
+
+    @BeforeEach
+    void setUp() {
+        sessionCache.invalidateAll();
+        addressRepository.deleteAll();
+        contactRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void calibratedCost() {
+        int cost = passwordHasher.getLogRounds();
+        assertTrue(cost >= 4 && cost <= 31, String.valueOf(cost));
+        assertFalse(passwordHasher.needsRehash(BCrypt.hashpw("rahasia", BCrypt.gensalt(cost))));
+        assertTrue(passwordHasher.needsRehash(BCrypt.hashpw("rahasia", BCrypt.gensalt(cost == 4 ? 5 : 4))));
+    }
+
+    @Test
+    void rehashAfterLogin() throws Exception {
+        int cost = passwordHasher.getLogRounds();
+        String oldHash = BCrypt.hashpw("rahasia", BCrypt.gensalt(cost == 4 ? 5 : 4));
+        createUser(oldHash);
+
+        login("rahasia");
+
+        await(() -> !userRepository.findById("test").orElseThrow().getPassword().equals(oldHash));
+        String hash = userRepository.findById("test").orElseThrow().getPassword();
+        assertEquals(String.format("$2a$%02d$", cost), hash.substring(0, 7));
+        assertTrue(BCrypt.checkpw("rahasia", hash));
+
+        // login berikutnya dengan hash baru tetap berhasil dan tidak mengganti hash lagi
+        login("rahasia");
+        assertEquals(hash, userRepository.findById("test").orElseThrow().getPassword());
+    }
+
+    @Test
+    void keepPasswordChangedBeforeRehash() {
+        int cost = passwordHasher.getLogRounds();
+        String oldHash = BCrypt.hashpw("rahasia", BCrypt.gensalt(cost == 4 ? 5 : 4));
+        createUser(oldHash);
+        String changed = BCrypt.hashpw("baru", BCrypt.gensalt(cost));
+        User user = userRepository.findById("test").orElseThrow();
+        user.setPassword(changed);
+        userRepository.save(user);
+
+        userService.updatePasswordHash("test", oldHash, BCrypt.hashpw("rahasia", BCrypt.gensalt(cost)));
+
+        assertEquals(changed, userRepository.findById("test").orElseThrow().getPassword());
+    }
+
+    private void createUser(String hash) {
+        User user = new User();
+        user.setUsername("test");
+        user.setPassword(hash);
+        user.setName("Test");
+        userRepository.save(user);
+    }
+
+    private void login(String password) throws Exception {
+        LoginUserRequest request = new LoginUserRequest();
+        request.setUserName("test");
+        request.setPassword(password);
+        mockMvc.perform(
+                post("/api/auth/login")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request))
+        ).andExpect(status().isOk());
+    }
+
+    // hash baru ditulis dari thread pool password-hash setelah response login
+    private void await(BooleanSupplier condition) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timeout");
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package com.agung.restful.controller;
+
+import com.agung.restful.StatementRecorder;
+import com.agung.restful.entity.Address;
+import com.agung.restful.entity.Contact;
+import com.agung.restful.entity.User;
+import com.agung.restful.entity.UserSession;
+import com.agung.restful.id.UuidV7;
+import com.agung.restful.model.request.BulkContactOperation;
+import com.agung.restful.model.request.BulkContactRequest;
+import com.agung.restful.model.request.CreateAddressRequest;
+import com.agung.restful.model.request.CreateContactRequest;
+import com.agung.restful.model.request.RegisterUserRequest;
+import com.agung.restful.model.request.UpdateAddressRequest;
+import com.agung.restful.model.request.UpdateContactRequest;
+import com.agung.restful.model.request.UpdateUserRequest;
+import com.agung.restful.repository.AddressRepository;
+import com.agung.restful.repository.ContactRepository;
+import com.agung.restful.repository.UserRepository;
+import com.agung.restful.repository.UserSessionRepository;
+import com.agung.restful.security.BCrypt;
+import com.agung.restful.security.SessionCache;
+import com.agung.restful.service.ContactCountCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Jumlah statement SQL yang dikirim ke database per endpoint, termasuk lookup token (session cache dikosongkan
+ * sebelum setiap request). Dihitung di DataSource ({@link StatementRecorder}), jadi statement lewat JdbcTemplate (index
+ * trigram, nomor perubahan, tombstone, export) ikut dihitung; satu batch dihitung satu.
+ * <p>
+ * statements() mengosongkan second-level cache dulu (jumlah saat cache dingin), cachedStatements() tidak.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@Import(StatementRecorder.class)
+class QueryCountControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserSessionRepository userSessionRepository;
+
+    @Autowired
+    private ContactRepository contactRepository;
+
+    @Autowired
+    private AddressRepository addressRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private SessionCache sessionCache;
+
+    @Autowired
+    private ContactCountCache contactCountCache;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private StatementRecorder statementRecorder;
+
+    private List<Contact> contacts;
+
+    private Address address;
+
+    @BeforeEach
+    void setUp() {
+        contactCountCache.invalidateAll();
+        addressRepository.deleteAll();
+        contactRepository.deleteAll();
+        userRepository.deleteAll();
+
+        User user = new User();
+        user.setUsername("test");
+        user.setPassword(BCrypt.hashpw("test", BCrypt.gensalt()));
+        user.setName("Test");
+        userRepository.save(user);
+        userSessionRepository.save(new UserSession("test", user.getUsername(), System.currentTimeMillis(), System.currentTimeMillis() + (60 * 60 * 1000)));
+
+        contacts = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Contact contact = new Contact();
+            contact.setId(UuidV7.generate());
+            contact.setFirstName("agung" + i);
+            contact.setUser(user);
+            contactRepository.save(contact);
+            contacts.add(contact);
+
+            Address contactAddress = new Address();
+            contactAddress.setId(UuidV7.generate());
+            contactAddress.setContact(contact);
+            contactAddress.setCity("Jakarta");
+            contactAddress.setCountry("Indonesia");
+            addressRepository.save(contactAddress);
+            address = i == 0 ? contactAddress : address;
+        }
+    }
+
+    @Test
+    void createContact() throws Exception {
+        CreateContactRequest request = CreateContactRequest.builder().firstName("Budi").build();
+
+        // token + insert + trigram batch + nomor perubahan (upsert, LAST_INSERT_ID, update contact)
+        assertEquals(6, statements(post("/api/contacts")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request))));
+    }
+
+    @Test
+    void bulkContacts() throws Exception {
+        List<BulkContactOperation> operations = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            operations.add(BulkContactOperation.builder().action(BulkContactOperation.CREATE).firstName("Budi" + i).build());
+        }
+        operations.add(BulkContactOperation.builder().action(BulkContactOperation.UPDATE)
+                .id(contacts.get(0).getId()).firstName("Agung").build());
+        operations.add(BulkContactOperation.builder().action(BulkContactOperation.DELETE)
+                .id(contacts.get(1).getId()).build());
+
+        // token + select contact (IN) + select addresses + insert batch + update batch + delete addresses
+        // + delete contact batch + trigram (insert baru, hapus + insert yang diubah)
+        // + nomor perubahan (upsert, LAST_INSERT_ID, update contact) + tombstone
+        assertEquals(14, statements(post("/api/contacts/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new BulkContactRequest(operations)))));
+    }
+
+    @Test
+    void getContact() throws Exception {
+        assertEquals(2, statements(get("/api/contacts/" + contacts.get(0).getId())));
+        // token + select contact + select addresses (Contact.addresses)
+        assertEquals(3, statements(get("/api/contacts/" + contacts.get(0).getId()).queryParam("include", "addresses")));
+    }
+
+    @Test
+    void cachedReads() throws Exception {
+        String contactId = contacts.get(0).getId();
+        List<MockHttpServletRequestBuilder> requests = List.of(
+                get("/api/contacts/" + contactId),
+                get("/api/contacts/" + contactId).queryParam("include", "addresses"),
+                get("/api/contacts/" + contactId + "/addresses/" + address.getId()),
+                get("/api/contacts/" + contactId + "/addresses"));
+        for (int i = 0; i < requests.size(); i++) {
+            cachedStatements(requests.get(i));
+            // hanya token
+            assertEquals(1, cachedStatements(requests.get(i)), "request " + i);
+        }
+    }
+
+    @Test
+    void conditionalReads() throws Exception {
+        String contactId = contacts.get(0).getId();
+        String contactEtag = etag(get("/api/contacts/" + contactId));
+        String addressEtag = etag(get("/api/contacts/" + contactId + "/addresses/" + address.getId()));
+        String listEtag = etag(get("/api/contacts/" + contactId + "/addresses"));
+
+        // token + query version, entity tidak dimuat
+        assertEquals(2, notModifiedStatements(get("/api/contacts/" + contactId), contactEtag, true));
+        assertEquals(2, notModifiedStatements(get("/api/contacts/" + contactId + "/addresses/" + address.getId()), addressEtag, true));
+        assertEquals(2, notModifiedStatements(get("/api/contacts/" + contactId + "/addresses"), listEtag, true));
+
+        // query version dari query cache, hanya token
+        assertEquals(1, notModifiedStatements(get("/api/contacts/" + contactId), contactEtag, false));
+        assertEquals(1, notModifiedStatements(get("/api/contacts/" + contactId + "/addresses/" + address.getId()), addressEtag, false));
+        assertEquals(1, notModifiedStatements(get("/api/contacts/" + contactId + "/addresses"), listEtag, false));
+    }
+
+    @Test
+    void updateContact() throws Exception {
+        UpdateContactRequest request = UpdateContactRequest.builder().firstName("Agung").build();
+
+        // token + select + update + trigram (hapus + insert batch) + nomor perubahan (upsert, LAST_INSERT_ID, update contact)
+        assertEquals(8, statements(put("/api/contacts/" + contacts.get(0).getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request))));
+    }
+
+    @Test
+    void deleteContact() throws Exception {
+        Contact contact = new Contact();
+        contact.setId(UuidV7.generate());
+        contact.setFirstName("tanpa address");
+        contact.setUser(userRepository.findById("test").orElseThrow());
+        contactRepository.save(contact);
+
+        // token + select + delete + nomor perubahan (upsert, LAST_INSERT_ID) + tombstone
+        assertEquals(6, statements(delete("/api/contacts/" + contact.getId())));
+    }
+
+    @Test
+    void searchContacts() throws Exception {
+        assertEquals(2, statements(get("/api/contacts").queryParam("size", "10")));
+        assertEquals(3, statements(get("/api/contacts").queryParam("size", "10").queryParam("count", "true")));
+        assertEquals(2, statements(get("/api/contacts").queryParam("size", "10").queryParam("cursor", "")));
+        assertEquals(3, statements(get("/api/contacts").queryParam("size", "10").queryParam("include", "addresses")));
+        assertEquals(2, statements(get("/api/contacts").queryParam("size", "10").queryParam("fields", "firstName")));
+        assertEquals(2, statements(get("/api/contacts").queryParam("name", "agung")));
+    }
+
+    @Test
+    void exportContacts() throws Exception {
+        sessionCache.invalidateAll();
+        statementRecorder.clear();
+        MvcResult result = mockMvc.perform(get("/api/contacts/export").header("X-API-TOKEN", "test"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+
+        // token + satu query stream untuk semua contact dan address
+        assertEquals(2, statementRecorder.count());
+    }
+
+    @Test
+    void importContacts() throws Exception {
+        // token + insert contact batch + insert address batch + trigram batch
+        // + nomor perubahan (upsert, LAST_INSERT_ID, update contact batch)
+        assertEquals(7, statements(post("/api/contacts/import")
+                .contentType("text/csv")
+                .content("firstName,city,country\nBudi,Bandung,Indonesia\nCitra,Surabaya,Indonesia\n")));
+    }
+
+    @Test
+    void createAddress() throws Exception {
+        CreateAddressRequest request = CreateAddressRequest.builder().city("Bandung").country("Indonesia").build();
+
+        // token + lock contact + insert + nomor perubahan (upsert, LAST_INSERT_ID, update contact)
+        assertEquals(6, statements(post("/api/contacts/" + contacts.get(0).getId() + "/addresses")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request))));
+    }
+
+    @Test
+    void getAddress() throws Exception {
+        assertEquals(2, statements(get("/api/contacts/" + contacts.get(0).getId() + "/addresses/" + address.getId())));
+    }
+
+    @Test
+    void updateAddress() throws Exception {
+        UpdateAddressRequest request = UpdateAddressRequest.builder().city("Bandung").country("Indonesia").build();
+
+        // token + lock contact + select + update + nomor perubahan (upsert, LAST_INSERT_ID, update contact)
+        assertEquals(7, statements(put("/api/contacts/" + contacts.get(0).getId() + "/addresses/" + address.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request))));
+    }
+
+    @Test
+    void deleteAddress() throws Exception {
+        // token + lock contact + select + delete + nomor perubahan (upsert, LAST_INSERT_ID, update contact)
+        assertEquals(7, statements(delete("/api/contacts/" + contacts.get(0).getId() + "/addresses/" + address.getId())));
+    }
+
+    @Test
+    void listAddresses() throws Exception {
+        assertEquals(2, statements(get("/api/contacts/" + contacts.get(0).getId() + "/addresses")));
+    }
+
+    @Test
+    void registerUser() throws Exception {
+        RegisterUserRequest request = new RegisterUserRequest();
+        request.setUsername("budi");
+        request.setPassword("rahasia");
+        request.setName("Budi");
+
+        // cek username + insert
+        assertEquals(2, statements(post("/api/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request))));
+    }
+
+    @Test
+    void getCurrentUser() throws Exception {
+        // session + user, user baru di-load saat dibaca
+        assertEquals(2, statements(get("/api/users/current")));
+    }
+
+    @Test
+    void updateCurrentUser() throws Exception {
+        UpdateUserRequest request = new UpdateUserRequest();
+        request.setName("Agung");
+
+        // session + user + update
+        assertEquals(3, statements(patch("/api/users/current")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request))));
+    }
+
+    @Test
+    void getEndpointsDoNotFlush() throws Exception {
+        String contactId = contacts.get(0).getId();
+        List<MockHttpServletRequestBuilder> requests = List.of(
+                get("/api/contacts/" + contactId),
+                get("/api/contacts/" + contactId).queryParam("include", "addresses"),
+                get("/api/contacts").queryParam("count", "true"),
+                get("/api/contacts").queryParam("cursor", "").queryParam("include", "addresses"),
+                get("/api/contacts/" + contactId + "/addresses/" + address.getId()),
+                get("/api/contacts/" + contactId + "/addresses"),
+                get("/api/users/current"));
+        for (int i = 0; i < requests.size(); i++) {
+            // transaksi readOnly: FlushMode.MANUAL dan entity read-only, tidak ada dirty checking saat commit
+            entityManagerFactory.unwrap(SessionFactory.class).getStatistics().clear();
+            statements(requests.get(i));
+            assertEquals(0, entityManagerFactory.unwrap(SessionFactory.class).getStatistics().getFlushCount(),
+                    "request " + i);
+        }
+    }
+
+    private long statements(MockHttpServletRequestBuilder request) throws Exception {
+        entityManagerFactory.getCache().evictAll();
+        return cachedStatements(request);
+    }
+
+    private long cachedStatements(MockHttpServletRequestBuilder request) throws Exception {
+        sessionCache.invalidateAll();
+        statementRecorder.clear();
+        mockMvc.perform(request
+                .accept(MediaType.APPLICATION_JSON)
+                .header("X-API-TOKEN", "test")
+        ).andExpect(status().isOk());
+        return statementRecorder.count();
+    }
+
+    private String etag(MockHttpServletRequestBuilder request) throws Exception {
+        return mockMvc.perform(request.header("X-API-TOKEN", "test"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+
+    private long notModifiedStatements(MockHttpServletRequestBuilder request, String etag, boolean evict) throws Exception {
+        if (evict) {
+            entityManagerFactory.getCache().evictAll();
+        }
+        sessionCache.invalidateAll();
+        statementRecorder.clear();
+        mockMvc.perform(request
+                .header("X-API-TOKEN", "test")
+                .header(HttpHeaders.IF_NONE_MATCH, etag)
+        ).andExpect(status().isNotModified());
+        return statementRecorder.count();
+    }
+}
@@ -0,0 +1,124 @@
+package com.agung.restful.controller;
+
+import com.agung.restful.entity.User;
+import com.agung.restful.entity.UserSession;
+import com.agung.restful.model.request.CreateContactRequest;
+import com.agung.restful.repository.AddressRepository;
+import com.agung.restful.repository.ContactRepository;
+import com.agung.restful.repository.UserRepository;
+import com.agung.restful.repository.UserSessionRepository;
+import com.agung.restful.security.BCrypt;
+import com.agung.restful.security.SessionCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * GET contact/address memakai pool replica, penulisan memakai pool primary. Replica di sini database yang sama
+ * dengan primary, yang dicek hanya pool mana yang dipakai (metrik hikaricp per pool).
+ */
+@SpringBootTest(properties = {
+        "app.datasource.replica.enabled=true",
+        "app.datasource.replica.jdbc-url=${spring.datasource.url}",
+        "app.datasource.replica.maximum-pool-size=5"
+})
+@AutoConfigureMockMvc
+class ReplicaRoutingTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserSessionRepository userSessionRepository;
+
+    @Autowired
+    private ContactRepository contactRepository;
+
+    @Autowired
+    private AddressRepository addressRepository;
+
+    @Autowired
+    private SessionCache sessionCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void setUp() {
+        sessionCache.invalidateAll();
+        addressRepository.deleteAll();
+        contactRepository.deleteAll();
+        userRepository.deleteAll();
+
+        User user = new User();
+        user.setUsername("test");
+        user.setPassword(BCrypt.hashpw("test", BCrypt.gensalt()));
+        user.setName("Test");
+        userRepository.save(user);
+        userSessionRepository.save(new UserSession("test", user.getUsername(), System.currentTimeMillis(), System.currentTimeMillis() + (60 * 60 * 1000)));
+    }
+
+    @Test
+    void readsUseReplicaAndWritesUsePrimary() throws Exception {
+        CreateContactRequest request = CreateContactRequest.builder().firstName("Agung").build();
+        String content = perform(post("/api/contacts")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)));
+        String contactId = objectMapper.readTree(content).get("data").get("id").asText();
+
+        // contact baru ada di second-level cache, dikosongkan supaya GET benar-benar ke database
+        entityManagerFactory.getCache().evictAll();
+        long primary = acquired("primary");
+        long replica = acquired("replica");
+        perform(get("/api/contacts/" + contactId));
+        perform(get("/api/contacts").queryParam("name", "agung"));
+        perform(get("/api/contacts/" + contactId + "/addresses"));
+        assertEquals(replica + 3, acquired("replica"));
+        // token sudah di session cache
+        assertEquals(primary, acquired("primary"));
+
+        perform(put("/api/contacts/" + contactId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)));
+        assertEquals(replica + 3, acquired("replica"));
+        assertTrue(acquired("primary") > primary);
+    }
+
+    private String perform(MockHttpServletRequestBuilder request) throws Exception {
+        return mockMvc.perform(request
+                .accept(MediaType.APPLICATION_JSON)
+                .header("X-API-TOKEN", "test")
+        ).andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+    }
+
+    private long acquired(String pool) {
+        // metrik baru terdaftar saat pool mulai dipakai
+        Timer timer = meterRegistry.find("hikaricp.connections.acquire").tag("pool", pool).timer();
+        return Objects.isNull(timer) ? 0 : timer.count();
+    }
+}
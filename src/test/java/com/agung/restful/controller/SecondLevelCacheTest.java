@@ -0,0 +1,262 @@
+package com.agung.restful.controller;
+
+import com.agung.restful.SecondLevelCacheConfiguration;
+import com.agung.restful.entity.Address;
+import com.agung.restful.entity.Contact;
+import com.agung.restful.entity.User;
+import com.agung.restful.entity.UserSession;
+import com.agung.restful.id.UuidV7;
+import com.agung.restful.model.request.BulkContactOperation;
+import com.agung.restful.model.request.BulkContactRequest;
+import com.agung.restful.model.request.CreateAddressRequest;
+import com.agung.restful.model.request.UpdateAddressRequest;
+import com.agung.restful.model.request.UpdateContactRequest;
+import com.agung.restful.repository.AddressRepository;
+import com.agung.restful.repository.ContactRepository;
+import com.agung.restful.repository.UserRepository;
+import com.agung.restful.repository.UserSessionRepository;
+import com.agung.restful.security.BCrypt;
+import com.agung.restful.security.SessionCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Setiap penulisan harus langsung terlihat di GET berikutnya walaupun GET sebelumnya sudah mengisi second-level cache.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class SecondLevelCacheTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserSessionRepository userSessionRepository;
+
+    @Autowired
+    private ContactRepository contactRepository;
+
+    @Autowired
+    private AddressRepository addressRepository;
+
+    @Autowired
+    private SessionCache sessionCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Contact contact;
+
+    private Address address;
+
+    @BeforeEach
+    void setUp() {
+        sessionCache.invalidateAll();
+        addressRepository.deleteAll();
+        contactRepository.deleteAll();
+        userRepository.deleteAll();
+
+        User user = new User();
+        user.setUsername("test");
+        user.setPassword(BCrypt.hashpw("test", BCrypt.gensalt()));
+        user.setName("Test");
+        userRepository.save(user);
+        userSessionRepository.save(new UserSession("test", user.getUsername(), System.currentTimeMillis(), System.currentTimeMillis() + (60 * 60 * 1000)));
+
+        contact = new Contact();
+        contact.setId(UuidV7.generate());
+        contact.setFirstName("agung");
+        contact.setUser(user);
+        contactRepository.save(contact);
+
+        address = new Address();
+        address.setId(UuidV7.generate());
+        address.setContact(contact);
+        address.setCity("Jakarta");
+        address.setCountry("Indonesia");
+        addressRepository.save(address);
+        // save() juga mengisi cache, setiap test dimulai dari cache kosong
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @Test
+    void updateContact() throws Exception {
+        perform(get("/api/contacts/" + contact.getId())).andExpect(jsonPath("$.data.firstName").value("agung"));
+
+        UpdateContactRequest request = UpdateContactRequest.builder().firstName("Budi").build();
+        perform(put("/api/contacts/" + contact.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)));
+
+        perform(get("/api/contacts/" + contact.getId())).andExpect(jsonPath("$.data.firstName").value("Budi"));
+    }
+
+    @Test
+    void deleteContact() throws Exception {
+        perform(get("/api/contacts/" + contact.getId()));
+
+        BulkContactOperation operation = BulkContactOperation.builder()
+                .action(BulkContactOperation.DELETE)
+                .id(contact.getId())
+                .build();
+        perform(post("/api/contacts/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new BulkContactRequest(List.of(operation)))));
+
+        mockMvc.perform(get("/api/contacts/" + contact.getId()).header("X-API-TOKEN", "test"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/contacts/" + contact.getId() + "/addresses/" + address.getId()).header("X-API-TOKEN", "test"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void createAddress() throws Exception {
+        String contactPath = "/api/contacts/" + contact.getId();
+        perform(get(contactPath).queryParam("include", "addresses")).andExpect(jsonPath("$.data.addresses.length()").value(1));
+        perform(get(contactPath + "/addresses")).andExpect(jsonPath("$.data.length()").value(1));
+
+        CreateAddressRequest request = CreateAddressRequest.builder().city("Bandung").country("Indonesia").build();
+        perform(post(contactPath + "/addresses")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)));
+
+        perform(get(contactPath).queryParam("include", "addresses")).andExpect(jsonPath("$.data.addresses.length()").value(2));
+        perform(get(contactPath + "/addresses")).andExpect(jsonPath("$.data.length()").value(2));
+    }
+
+    @Test
+    void updateAddress() throws Exception {
+        String addressPath = "/api/contacts/" + contact.getId() + "/addresses/" + address.getId();
+        perform(get(addressPath));
+        perform(get("/api/contacts/" + contact.getId() + "/addresses"));
+
+        UpdateAddressRequest request = UpdateAddressRequest.builder().city("Bandung").country("Indonesia").build();
+        perform(put(addressPath)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)));
+
+        perform(get(addressPath)).andExpect(jsonPath("$.data.city").value("Bandung"));
+        perform(get("/api/contacts/" + contact.getId() + "/addresses")).andExpect(jsonPath("$.data[0].city").value("Bandung"));
+        perform(get("/api/contacts/" + contact.getId()).queryParam("include", "addresses"))
+                .andExpect(jsonPath("$.data.addresses[0].city").value("Bandung"));
+    }
+
+    @Test
+    void deleteAddress() throws Exception {
+        String contactPath = "/api/contacts/" + contact.getId();
+        perform(get(contactPath).queryParam("include", "addresses"));
+        perform(get(contactPath + "/addresses"));
+        perform(get(contactPath + "/addresses/" + address.getId()));
+
+        perform(delete(contactPath + "/addresses/" + address.getId()));
+
+        perform(get(contactPath).queryParam("include", "addresses")).andExpect(jsonPath("$.data.addresses.length()").value(0));
+        perform(get(contactPath + "/addresses")).andExpect(jsonPath("$.data.length()").value(0));
+        mockMvc.perform(get(contactPath + "/addresses/" + address.getId()).header("X-API-TOKEN", "test"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void deleteKeepsOtherUsersAddresses() throws Exception {
+        User other = new User();
+        other.setUsername("other");
+        other.setPassword(BCrypt.hashpw("other", BCrypt.gensalt()));
+        other.setName("Other");
+        userRepository.save(other);
+        userSessionRepository.save(new UserSession("other", other.getUsername(), System.currentTimeMillis(), System.currentTimeMillis() + (60 * 60 * 1000)));
+
+        Contact otherContact = new Contact();
+        otherContact.setId(UuidV7.generate());
+        otherContact.setFirstName("budi");
+        otherContact.setUser(other);
+        contactRepository.save(otherContact);
+
+        Address otherAddress = new Address();
+        otherAddress.setId(UuidV7.generate());
+        otherAddress.setContact(otherContact);
+        otherAddress.setCity("Bandung");
+        otherAddress.setCountry("Indonesia");
+        addressRepository.save(otherAddress);
+        entityManagerFactory.getCache().evictAll();
+
+        mockMvc.perform(get("/api/contacts/" + otherContact.getId()).queryParam("include", "addresses")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN", "other"))
+                .andExpect(status().isOk());
+        assertCached(otherContact, otherAddress);
+
+        // tanpa If-Match
+        perform(delete("/api/contacts/" + contact.getId() + "/addresses/" + address.getId()));
+        assertCached(otherContact, otherAddress);
+
+        BulkContactOperation operation = BulkContactOperation.builder()
+                .action(BulkContactOperation.DELETE)
+                .id(contact.getId())
+                .build();
+        perform(post("/api/contacts/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new BulkContactRequest(List.of(operation)))));
+        assertCached(otherContact, otherAddress);
+    }
+
+    private void assertCached(Contact contact, Address address) {
+        Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        assertTrue(cache.containsEntity(Address.class, address.getId()));
+        assertTrue(cache.containsCollection(Contact.class.getName() + ".addresses", contact.getId()));
+    }
+
+    @Test
+    void hitMetrics() throws Exception {
+        double misses = gets(SecondLevelCacheConfiguration.CONTACT, "miss");
+        perform(get("/api/contacts/" + contact.getId()));
+        assertTrue(gets(SecondLevelCacheConfiguration.CONTACT, "miss") > misses);
+
+        double hits = gets(SecondLevelCacheConfiguration.CONTACT, "hit");
+        misses = gets(SecondLevelCacheConfiguration.CONTACT, "miss");
+        perform(get("/api/contacts/" + contact.getId()));
+        assertEquals(1, gets(SecondLevelCacheConfiguration.CONTACT, "hit") - hits);
+        assertEquals(0, gets(SecondLevelCacheConfiguration.CONTACT, "miss") - misses);
+    }
+
+    private double gets(String cache, String result) {
+        FunctionCounter counter = meterRegistry.find("cache.gets").tag("cache", cache).tag("result", result).functionCounter();
+        assertNotNull(counter);
+        return counter.count();
+    }
+
+    private ResultActions perform(MockHttpServletRequestBuilder request) throws Exception {
+        return mockMvc.perform(request
+                .accept(MediaType.APPLICATION_JSON)
+                .header("X-API-TOKEN", "test")
+        ).andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,146 @@
+package com.agung.restful.controller;
+
+import com.agung.restful.entity.User;
+import com.agung.restful.entity.UserSession;
+import com.agung.restful.model.request.LoginUserRequest;
+import com.agung.restful.repository.UserRepository;
+import com.agung.restful.repository.UserSessionRepository;
+import com.agung.restful.security.BCrypt;
+import com.agung.restful.security.SessionCache;
+import com.agung.restful.security.TokenWriteBehind;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Flush terjadwal diperlambat (satu jam), test memanggil flush() sendiri.
+ */
+@SpringBootTest(properties = {
+        "app.token.write-behind.enabled=true",
+        "app.token.write-behind.flush-ms=3600000"
+})
+@AutoConfigureMockMvc
+class TokenWriteBehindTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserSessionRepository userSessionRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private SessionCache sessionCache;
+
+    @Autowired
+    private TokenWriteBehind tokenWriteBehind;
+
+    @BeforeEach
+    void setUp() {
+        tokenWriteBehind.flush();
+        sessionCache.invalidateAll();
+        userRepository.deleteAll();
+
+        User user = new User();
+        user.setUsername("test");
+        user.setPassword(BCrypt.hashpw("rahasia", BCrypt.gensalt()));
+        user.setName("Test");
+        userRepository.save(user);
+    }
+
+    @Test
+    void tokenUsableBeforeFlush() throws Exception {
+        String token = login();
+        assertFalse(userSessionRepository.existsById(token));
+
+        getCurrent(token).andExpect(status().isOk());
+        // tanpa SessionCache token dicari di daftar pending
+        sessionCache.invalidateAll();
+        getCurrent(token).andExpect(status().isOk());
+
+        tokenWriteBehind.flush();
+        UserSession session = userSessionRepository.findById(token).orElseThrow();
+        assertEquals("test", session.getUsername());
+        assertNotNull(session.getExpiredAt());
+        sessionCache.invalidateAll();
+        getCurrent(token).andExpect(status().isOk());
+    }
+
+    @Test
+    void multipleLogins() throws Exception {
+        String first = login();
+        String second = login();
+        assertNotEquals(first, second);
+
+        getCurrent(first).andExpect(status().isOk());
+        getCurrent(second).andExpect(status().isOk());
+
+        tokenWriteBehind.flush();
+        assertEquals(2, userSessionRepository.findAll().size());
+        sessionCache.invalidateAll();
+        getCurrent(first).andExpect(status().isOk());
+        getCurrent(second).andExpect(status().isOk());
+    }
+
+    @Test
+    void logoutBeforeFlush() throws Exception {
+        String token = login();
+        String other = login();
+        mockMvc.perform(
+                delete("/api/auth/logout")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN", token)
+        ).andExpect(status().isOk());
+
+        tokenWriteBehind.flush();
+        assertFalse(userSessionRepository.existsById(token));
+        assertTrue(userSessionRepository.existsById(other));
+        getCurrent(token).andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void skipDeletedUser() throws Exception {
+        String token = login();
+        userRepository.deleteAll();
+
+        tokenWriteBehind.flush();
+        assertTrue(tokenWriteBehind.find(token).isEmpty());
+        assertFalse(userSessionRepository.existsById(token));
+    }
+
+    private String login() throws Exception {
+        LoginUserRequest request = new LoginUserRequest();
+        request.setUserName("test");
+        request.setPassword("rahasia");
+        String content = mockMvc.perform(
+                post("/api/auth/login")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request))
+        ).andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(content).get("data").get("token").asText();
+    }
+
+    private ResultActions getCurrent(String token) throws Exception {
+        return mockMvc.perform(
+                get("/api/users/current")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN", token)
+        );
+    }
+}
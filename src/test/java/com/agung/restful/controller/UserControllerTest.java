@@ -1,12 +1,15 @@
 package com.agung.restful.controller;
 
 import com.agung.restful.entity.User;
+import com.agung.restful.entity.UserSession;
 import com.agung.restful.model.request.RegisterUserRequest;
 import com.agung.restful.model.request.UpdateUserRequest;
 import com.agung.restful.model.response.UserResponse;
 import com.agung.restful.model.response.WebResponse;
 import com.agung.restful.repository.UserRepository;
+import com.agung.restful.repository.UserSessionRepository;
 import com.agung.restful.security.BCrypt;
+import com.agung.restful.security.SessionCache;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.SneakyThrows;
@@ -32,11 +35,18 @@ class UserControllerTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserSessionRepository userSessionRepository;
+
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private SessionCache sessionCache;
+
     @BeforeEach
     void setup() {
+        sessionCache.invalidateAll();
         userRepository.deleteAll();
     }
 
@@ -153,11 +163,10 @@ class UserControllerTest {
         User user = new User();
         user.setUsername("test");
         user.setPassword(BCrypt.hashpw("rahasia",BCrypt.gensalt()));
-        user.setToken("test-token");
-        user.setTokenExpiredAt(System.currentTimeMillis()+1000000000L);
         user.setName("Test");
 
         userRepository.save(user);
+        userSessionRepository.save(new UserSession("test-token", user.getUsername(), System.currentTimeMillis(), System.currentTimeMillis()+1000000000L));
 
         mockMvc.perform(
                 get("/api/user/current")
@@ -182,11 +191,10 @@ class UserControllerTest {
         User user = new User();
         user.setUsername("test");
         user.setPassword(BCrypt.hashpw("rahasia",BCrypt.gensalt()));
-        user.setToken("test-token");
-        user.setTokenExpiredAt(System.currentTimeMillis()-1000000000L);
         user.setName("Test");
 
         userRepository.save(user);
+        userSessionRepository.save(new UserSession("test-token", user.getUsername(), System.currentTimeMillis(), System.currentTimeMillis()-1000000000L));
 
         mockMvc.perform(
                 get("/api/user/current")
@@ -229,9 +237,8 @@ class UserControllerTest {
         user.setUsername("test");
         user.setPassword(BCrypt.hashpw("rahasia",BCrypt.gensalt()));
         user.setName("Test");
-        user.setToken("test-token");
-        user.setTokenExpiredAt(System.currentTimeMillis() + (60 * 60 * 1000));
         userRepository.save(user);
+        userSessionRepository.save(new UserSession("test-token", user.getUsername(), System.currentTimeMillis(), System.currentTimeMillis() + (60 * 60 * 1000)));
 
         UpdateUserRequest request = new UpdateUserRequest();
         request.setName("agung");
@@ -0,0 +1,185 @@
+package com.agung.restful.repository;
+
+import com.agung.restful.entity.Address;
+import com.agung.restful.entity.Contact;
+import com.agung.restful.entity.User;
+import com.agung.restful.id.UuidV7;
+import com.agung.restful.model.request.SearchContactRequest;
+import com.agung.restful.model.request.UpdateAddressRequest;
+import com.agung.restful.security.BCrypt;
+import com.agung.restful.service.AddressService;
+import com.agung.restful.service.ContactService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Jumlah statement JDBC per method service, supaya query tambahan (lookup ganda, relasi eager) membuat build gagal.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class QueryCountTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ContactRepository contactRepository;
+
+    @Autowired
+    private AddressRepository addressRepository;
+
+    @Autowired
+    private AddressService addressService;
+
+    @Autowired
+    private ContactService contactService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private User user;
+
+    private Contact contact;
+
+    private Address address;
+
+    @BeforeEach
+    void setUp() {
+        addressRepository.deleteAll();
+        contactRepository.deleteAll();
+        userRepository.deleteAll();
+
+        user = new User();
+        user.setUsername("test");
+        user.setPassword(BCrypt.hashpw("test", BCrypt.gensalt()));
+        user.setName("Test");
+        userRepository.save(user);
+
+        contact = new Contact();
+        contact.setId(UuidV7.generate());
+        contact.setFirstName("Agung");
+        contact.setUser(user);
+        contactRepository.save(contact);
+
+        address = new Address();
+        address.setId(UuidV7.generate());
+        address.setContact(contact);
+        address.setCity("Jakarta");
+        address.setCountry("Indonesia");
+        addressRepository.save(address);
+    }
+
+    @Test
+    void getAddress() {
+        assertEquals(1, statements(() -> addressService.get(user, contact.getId(), address.getId())));
+    }
+
+    @Test
+    void updateAddress() {
+        UpdateAddressRequest request = UpdateAddressRequest.builder()
+                .contactId(contact.getId())
+                .addressId(address.getId())
+                .city("Bandung")
+                .country("Indonesia")
+                .build();
+
+        // lock contact + select + update
+        assertEquals(3, statements(() -> addressService.update(user, request, null)));
+    }
+
+    @Test
+    void removeAddress() {
+        // lock contact + select + delete, DELETE HQL akan meng-evict cache address semua user
+        assertEquals(3, statements(() -> addressService.remove(user, contact.getId(), address.getId(), null)));
+        assertFalse(addressRepository.existsById(address.getId()));
+    }
+
+    @Test
+    void listAddresses() {
+        assertEquals(1, statements(() -> addressService.list(user, contact.getId())));
+    }
+
+    @Test
+    void getContactWithAddresses() {
+        assertEquals(1, statements(() -> contactService.get(user, contact.getId(), true)));
+    }
+
+    @Test
+    void searchWithAddresses() {
+        for (int i = 0; i < 5; i++) {
+            Contact other = new Contact();
+            other.setId(UuidV7.generate());
+            other.setFirstName("Budi" + i);
+            other.setUser(user);
+            contactRepository.save(other);
+        }
+        SearchContactRequest request = SearchContactRequest.builder()
+                .page(1)
+                .size(10)
+                .includeAddresses(true)
+                .build();
+
+        // satu query contact dan satu query addresses, berapapun jumlah contact di halaman
+        assertEquals(2, statements(() -> contactService.search(user, request)));
+
+        request.setCursor("");
+        assertEquals(2, statements(() -> contactService.searchAfter(user, request)));
+    }
+
+    @Test
+    void searchWithFields() {
+        SearchContactRequest request = SearchContactRequest.builder()
+                .page(1)
+                .size(10)
+                .name("agung")
+                .fields(Set.of("firstName"))
+                .build();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        // hanya satu SELECT kolom, tanpa entity Contact maupun User
+        assertEquals(1, statements(() -> contactService.search(user, request)));
+        assertEquals(0, statistics.getEntityLoadCount());
+
+        request.setCursor("");
+        assertEquals(1, statements(() -> contactService.searchAfter(user, request)));
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void notFoundKeepsErrors() {
+        ResponseStatusException contactNotFound = assertThrows(ResponseStatusException.class,
+                () -> addressService.get(user, UUID.randomUUID().toString(), address.getId()));
+        assertEquals("Contact Not Found", contactNotFound.getReason());
+
+        ResponseStatusException addressNotFound = assertThrows(ResponseStatusException.class,
+                () -> addressService.remove(user, contact.getId(), UUID.randomUUID().toString(), null));
+        assertEquals("Address Not Found", addressNotFound.getReason());
+
+        User other = new User();
+        other.setUsername("other");
+        other.setPassword(BCrypt.hashpw("other", BCrypt.gensalt()));
+        other.setName("Other");
+        userRepository.save(other);
+        ResponseStatusException otherUser = assertThrows(ResponseStatusException.class,
+                () -> addressService.remove(other, contact.getId(), address.getId(), null));
+        assertEquals("Contact Not Found", otherUser.getReason());
+        assertTrue(addressRepository.existsById(address.getId()));
+    }
+
+    private long statements(Runnable runnable) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        runnable.run();
+        return statistics.getPrepareStatementCount();
+    }
+}
@@ -0,0 +1,408 @@
+package com.agung.restful.repository;
+
+import com.agung.restful.StatementRecorder;
+import com.agung.restful.entity.Contact;
+import com.agung.restful.entity.User;
+import com.agung.restful.id.UuidBinaryType;
+import com.agung.restful.model.request.SearchContactRequest;
+import com.agung.restful.service.ContactChangeService;
+import com.agung.restful.service.ContactExportService;
+import com.agung.restful.service.ContactSearchIndex;
+import com.agung.restful.service.ContactService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * EXPLAIN untuk query milik ContactRepository, AddressRepository dan UserSessionRepository (dan query JdbcTemplate
+ * export/changes), supaya index yang hilang/berubah membuat build gagal.
+ * <p>
+ * Method repository/service dipanggil sungguhan; SQL dan parameter yang di-EXPLAIN diambil dari DataSource lewat
+ * {@link StatementRecorder}, jadi perubahan query di Hibernate atau di kode ikut teruji.
+ */
+@SpringBootTest
+@Import(StatementRecorder.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class QueryPlanTest {
+
+    private static final int CONTACTS_PER_USER = 500;
+
+    private static final Pattern TABLE_ALIAS = Pattern.compile("(?i)\\b(?:from|join)\\s+(\\w+)(?:\\s+(?:as\\s+)?(\\w+))?");
+
+    private static final Set<String> KEYWORDS = Set.of("where", "force", "use", "ignore", "left", "right", "inner",
+            "join", "on", "order", "group", "limit", "for");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private StatementRecorder statementRecorder;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ContactRepository contactRepository;
+
+    @Autowired
+    private AddressRepository addressRepository;
+
+    @Autowired
+    private UserSessionRepository userSessionRepository;
+
+    @Autowired
+    private ContactService contactService;
+
+    @Autowired
+    private ContactExportService contactExportService;
+
+    @Autowired
+    private ContactChangeService contactChangeService;
+
+    @BeforeAll
+    void setUp() {
+        cleanUp();
+
+        List<Object[]> users = new ArrayList<>();
+        List<Object[]> contacts = new ArrayList<>();
+        List<Object[]> addresses = new ArrayList<>();
+        List<Object[]> tombstones = new ArrayList<>();
+        List<Object[]> sessions = new ArrayList<>();
+        List<Object[]> ngrams = new ArrayList<>();
+        for (int u = 0; u < 4; u++) {
+            String username = "plan" + u;
+            users.add(new Object[]{username, "secret", "Plan " + u});
+            for (int i = 0; i < CONTACTS_PER_USER; i++) {
+                byte[] contactId = id(u, i, 0);
+                contacts.add(new Object[]{contactId, username, "First " + i, "Last " + i, "0812" + i, "c" + i + "@example.com", i + 1});
+                ngrams.addAll(ContactSearchIndex.rows(username, contactId, "First " + i, "Last " + i, "c" + i + "@example.com", "0812" + i));
+                addresses.add(new Object[]{id(u, i, 1), contactId, "Jakarta", "Indonesia"});
+                addresses.add(new Object[]{id(u, i, 2), contactId, "Bandung", "Indonesia"});
+                tombstones.add(new Object[]{username, CONTACTS_PER_USER + i + 1, id(u, CONTACTS_PER_USER + i, 0), 0});
+                // sebagian kecil sudah kadaluarsa, seperti saat SessionCleanup berjalan
+                sessions.add(new Object[]{username + "-" + i, username, 0, i % 10 == 0 ? 1 : Long.MAX_VALUE});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO users (username, password, name) VALUES (?, ?, ?)", users);
+        jdbcTemplate.batchUpdate("INSERT INTO contact (id, username, first_name, last_name, phone, email, change_seq) VALUES (?, ?, ?, ?, ?, ?, ?)", contacts);
+        jdbcTemplate.batchUpdate("INSERT INTO addresses (id, contact_id, city, country) VALUES (?, ?, ?, ?)", addresses);
+        jdbcTemplate.batchUpdate("INSERT INTO contact_tombstone (username, change_seq, contact_id, deleted_at) VALUES (?, ?, ?, ?)", tombstones);
+        jdbcTemplate.batchUpdate("INSERT INTO sessions (token, username, created_at, expired_at) VALUES (?, ?, ?, ?)", sessions);
+        jdbcTemplate.batchUpdate("INSERT INTO contact_ngram (username, field, gram, contact_id) VALUES (?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE contact_id = contact_id", ngrams);
+        jdbcTemplate.execute("ANALYZE TABLE users, contact, addresses, contact_tombstone, sessions, contact_ngram");
+    }
+
+    @AfterAll
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM contact_tombstone");
+        jdbcTemplate.update("DELETE FROM contact_ngram");
+        jdbcTemplate.update("DELETE FROM addresses");
+        jdbcTemplate.update("DELETE FROM contact");
+        jdbcTemplate.update("DELETE FROM revoked_tokens");
+        jdbcTemplate.update("DELETE FROM sessions");
+        jdbcTemplate.update("DELETE FROM users");
+    }
+
+    @Test
+    void findVersion() {
+        Plan plan = explain("contact", () -> contactRepository.findVersion("plan1", idString(1, 10, 0)));
+
+        assertKey(plan, "contact", "PRIMARY");
+    }
+
+    @Test
+    void existsByUserAndId() {
+        Plan plan = explain("contact", () -> contactRepository.existsByUserAndId(user("plan1"), idString(1, 11, 0)));
+
+        assertKey(plan, "contact", "PRIMARY");
+    }
+
+    @Test
+    void findLockedByUserAndId() {
+        Plan plan = explain("contact", () -> transactionTemplate.executeWithoutResult(status ->
+                contactRepository.findLockedByUserAndId(user("plan1"), idString(1, 12, 0))));
+
+        assertKey(plan, "contact", "PRIMARY");
+    }
+
+    @Test
+    void findLockedByUserAndIdIn() {
+        Plan plan = explain("contact", () -> transactionTemplate.executeWithoutResult(status ->
+                contactRepository.findLockedByUserAndIdIn(user("plan1"), List.of(idString(1, 13, 0), idString(1, 14, 0)))));
+
+        // range (username, id) hanya mengunci baris yang diminta, sama seperti lewat PRIMARY
+        assertKey(plan, "contact", "idx_contact_username_id");
+    }
+
+    @Test
+    void searchFirstPage() {
+        Plan plan = explain("contact", () -> contactService.search(user("plan1"), search().build()));
+
+        assertKey(plan, "contact", "idx_contact_username_id");
+        assertNoFilesort(plan);
+    }
+
+    @Test
+    void searchAfterCursor() {
+        String cursor = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(idString(1, 250, 0).getBytes(StandardCharsets.UTF_8));
+        Plan plan = explain("contact", () -> contactService.searchAfter(user("plan1"), search().cursor(cursor).build()));
+
+        assertKey(plan, "contact", "idx_contact_username_id");
+        assertNoFilesort(plan);
+    }
+
+    @Test
+    void searchProjected() {
+        Plan plan = explain("contact", () -> contactService.search(user("plan1"),
+                search().fields(Set.of("firstName")).build()));
+
+        assertKey(plan, "contact", "idx_contact_username_id");
+        assertNoFilesort(plan);
+    }
+
+    @Test
+    void countByName() {
+        // term pendek (tanpa trigram): hanya LIKE, dibaca dari index tanpa membuka baris contact
+        Plan plan = explain("contact", () -> contactService.count(user("plan1"), search().name("t1").build()));
+
+        assertKey(plan, "contact", "idx_contact_username_search");
+        assertCovering(plan, "contact");
+    }
+
+    @Test
+    void countByEmailAndPhone() {
+        Plan plan = explain("contact", () -> contactService.count(user("plan1"),
+                search().email("c1").phone("08").build()));
+
+        assertKey(plan, "contact", "idx_contact_username_search");
+        assertCovering(plan, "contact");
+    }
+
+    @Test
+    void searchByNgram() {
+        Plan plan = explain("contact", () -> contactService.search(user("plan1"), search().name("First 1").build()));
+
+        assertKey(plan, "contact_ngram", "PRIMARY");
+        assertNoFullScan(plan);
+    }
+
+    @Test
+    void exportStream() {
+        Plan plan = explain("contact", () -> {
+            try {
+                contactExportService.export("plan1", OutputStream.nullOutputStream());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        assertKey(plan, "contact", "idx_contact_username_id");
+        assertKey(plan, "addresses", "idx_addresses_contact_id");
+        assertNoFilesort(plan);
+    }
+
+    @Test
+    void changesSince() {
+        Plan plan = explain("contact", () -> changes(450L, 500L));
+
+        assertKey(plan, "contact", "idx_contact_username_change_seq");
+        assertKey(plan, "addresses", "idx_addresses_contact_id");
+        assertNoFilesort(plan);
+    }
+
+    @Test
+    void tombstonesSince() {
+        Plan plan = explain("contact_tombstone", () -> changes(950L, 1000L));
+
+        assertKey(plan, "contact_tombstone", "PRIMARY");
+        assertNoFilesort(plan);
+    }
+
+    @Test
+    void findAllScoped() {
+        Plan plan = explain("addresses", () -> addressRepository.findAllScoped("plan1", idString(1, 20, 0)));
+
+        assertKey(plan, "contact", "PRIMARY");
+        assertKey(plan, "addresses", "idx_addresses_contact_id");
+        assertNoFilesort(plan);
+    }
+
+    @Test
+    void findScoped() {
+        Plan plan = explain("addresses", () -> addressRepository.findScoped("plan1", idString(1, 21, 0), idString(1, 21, 1)));
+
+        assertKey(plan, "addresses", "PRIMARY");
+        assertKey(plan, "contact", "PRIMARY");
+    }
+
+    @Test
+    void findVersionScoped() {
+        Plan plan = explain("addresses", () -> addressRepository.findVersionScoped("plan1", idString(1, 22, 0), idString(1, 22, 1)));
+
+        assertKey(plan, "addresses", "PRIMARY");
+        assertKey(plan, "contact", "PRIMARY");
+    }
+
+    @Test
+    void findAllVersionsScoped() {
+        Plan plan = explain("addresses", () -> addressRepository.findAllVersionsScoped("plan1", idString(1, 23, 0)));
+
+        assertKey(plan, "contact", "PRIMARY");
+        assertKey(plan, "addresses", "idx_addresses_contact_id");
+        assertNoFilesort(plan);
+    }
+
+    @Test
+    void findAllByContactIn() {
+        List<Contact> contacts = contactRepository.findAllById(List.of(idString(1, 24, 0), idString(1, 25, 0)));
+        Plan plan = explain("addresses", () -> addressRepository.findAllByContactIn(contacts));
+
+        assertKey(plan, "addresses", "idx_addresses_contact_id");
+    }
+
+    @Test
+    void findAllByContactInOrderByIdAsc() {
+        List<Contact> contacts = contactRepository.findAllById(List.of(idString(1, 26, 0), idString(1, 27, 0)));
+        Plan plan = explain("addresses", () -> addressRepository.findAllByContactInOrderByIdAsc(contacts));
+
+        assertKey(plan, "addresses", "idx_addresses_contact_id");
+    }
+
+    @Test
+    void findSessionView() {
+        Plan plan = explain("sessions", () -> userSessionRepository.findViewByToken("plan1-10"));
+
+        assertKey(plan, "sessions", "PRIMARY");
+    }
+
+    @Test
+    void findExpiredSessions() {
+        Plan plan = explain("sessions", () -> userSessionRepository.findExpiredTokens(1000L, PageRequest.ofSize(1000)));
+
+        assertKey(plan, "sessions", "idx_sessions_expired_at");
+    }
+
+    // id BINARY(16) yang urut per user lalu per contact, seperti UUIDv7 yang urut berdasarkan waktu
+    private byte[] id(int user, int contact, int address) {
+        return UuidBinaryType.toBytes(idString(user, contact, address));
+    }
+
+    private String idString(int user, int contact, int address) {
+        return new UUID(user, ((long) contact << 8) | address).toString();
+    }
+
+    private User user(String username) {
+        return userRepository.findById(username).orElseThrow();
+    }
+
+    private SearchContactRequest.SearchContactRequestBuilder search() {
+        return SearchContactRequest.builder().page(0).size(10);
+    }
+
+    private void changes(long since, long watermark) {
+        try {
+            contactChangeService.changes("plan1", since, watermark, OutputStream.nullOutputStream());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Menjalankan call, lalu EXPLAIN statement yang FROM utamanya tabel table, dengan SQL dan parameter persis seperti
+     * yang dikirim Hibernate/JdbcTemplate.
+     */
+    private Plan explain(String table, Runnable call) {
+        statementRecorder.clear();
+        call.run();
+        Pattern from = Pattern.compile("(?i)^\\s*select\\b.*?\\bfrom\\s+" + table + "\\b", Pattern.DOTALL);
+        List<StatementRecorder.Statement> statements = statementRecorder.statements().stream()
+                .filter(statement -> from.matcher(statement.sql()).find())
+                .toList();
+        assertEquals(1, statements.size(), () -> "statement ke " + table + ": " + statementRecorder.statements());
+        StatementRecorder.Statement statement = statements.getFirst();
+        return new Plan(statement.sql(),
+                jdbcTemplate.queryForList("EXPLAIN " + statement.sql(), statement.parameters().toArray()));
+    }
+
+    private void assertKey(Plan plan, String table, String key) {
+        for (Map<String, Object> row : rows(plan, table)) {
+            assertEquals(key, row.get("key"), () -> "plan berubah: " + plan);
+        }
+        assertNoFullScan(plan);
+    }
+
+    private void assertNoFullScan(Plan plan) {
+        for (Map<String, Object> row : plan.rows()) {
+            // tabel sementara hasil materialisasi subquery (<subquery2>, <derived2>) memang dibaca penuh
+            if (Objects.toString(row.get("table"), "").startsWith("<")) {
+                continue;
+            }
+            assertNotEquals("ALL", row.get("type"), () -> "full table scan: " + plan);
+        }
+    }
+
+    private void assertNoFilesort(Plan plan) {
+        for (Map<String, Object> row : plan.rows()) {
+            assertFalse(extra(row).contains("Using filesort"), () -> "filesort: " + plan);
+        }
+    }
+
+    private void assertCovering(Plan plan, String table) {
+        for (Map<String, Object> row : rows(plan, table)) {
+            assertTrue(List.of(extra(row).split("; ")).contains("Using index"), () -> "bukan covering index: " + plan);
+        }
+    }
+
+    // kolom table di EXPLAIN berisi alias (c1_0, a, ...), dicari dari FROM/JOIN di SQL-nya
+    private List<Map<String, Object>> rows(Plan plan, String table) {
+        Set<String> aliases = new HashSet<>();
+        Matcher matcher = TABLE_ALIAS.matcher(plan.sql());
+        while (matcher.find()) {
+            if (matcher.group(1).equalsIgnoreCase(table)) {
+                String alias = matcher.group(2);
+                aliases.add(Objects.isNull(alias) || KEYWORDS.contains(alias.toLowerCase()) ? table : alias);
+            }
+        }
+        List<Map<String, Object>> rows = plan.rows().stream()
+                .filter(row -> aliases.contains(Objects.toString(row.get("table"), "")))
+                .toList();
+        assertFalse(rows.isEmpty(), () -> "tabel " + table + " tidak ada di plan: " + plan);
+        return rows;
+    }
+
+    private String extra(Map<String, Object> row) {
+        return Objects.toString(row.get("Extra"), "");
+    }
+
+    private record Plan(String sql, List<Map<String, Object>> rows) {
+    }
+}
@@ -0,0 +1,157 @@
+package com.agung.restful.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Hasil BCrypt harus sama persis dengan implementasi sebelumnya (LegacyBCrypt), termasuk bug sign extension $2x$ dan
+ * safety $2a$ untuk password dengan byte >= 0x80.
+ */
+class BCryptTest {
+
+    private static final String[] PREFIXES = {"$2a", "$2b", "$2y", "$2x", "$2"};
+
+    private final Random random = new Random(42);
+
+    @Test
+    void sameHashAsLegacy() {
+        for (String prefix : PREFIXES) {
+            for (int cost = 4; cost <= 5; cost++) {
+                for (int i = 0; i < 20; i++) {
+                    byte[] password = password(i % 3 == 0 ? 72 : random.nextInt(1, 73), i % 2 == 0);
+                    String salt = salt(prefix, cost);
+                    String hash = BCrypt.hashpw(password, salt);
+                    assertEquals(LegacyBCrypt.hashpw(password, salt), hash, salt);
+                    assertTrue(BCrypt.checkpw(password, hash));
+                }
+            }
+        }
+    }
+
+    @Test
+    void knownHashes() {
+        assertEquals("$2a$06$DCq7YPn5Rq63x1Lad4cll.TV4S6ytwfsfvkgY8jIucDrjc8deX1s.",
+                BCrypt.hashpw("", "$2a$06$DCq7YPn5Rq63x1Lad4cll."));
+        assertEquals("$2a$10$fVH8e28OQRj9tqiDXs1e1uxpsjN0c7II7YPKXua2NAKYvM6iQk7dq",
+                BCrypt.hashpw("abcdefghijklmnopqrstuvwxyz", "$2a$10$fVH8e28OQRj9tqiDXs1e1u"));
+        // byte >= 0x80: $2x$ meniru bug sign extension, $2y$ benar, $2a$ menyimpang saat bug dan hasil benar bertabrakan
+        assertEquals("$2x$05$/OK.fbVrR/bpIqNJ5ianF.CE5elHaaO4EbggVDjb8P19RukzXSM3e",
+                BCrypt.hashpw(new byte[]{(byte) 0xa3}, "$2x$05$/OK.fbVrR/bpIqNJ5ianF."));
+        assertEquals("$2y$05$/OK.fbVrR/bpIqNJ5ianF.Sa7shbm4.OzKpvFnX1pQLmQW96oUlCq",
+                BCrypt.hashpw(new byte[]{(byte) 0xa3}, "$2y$05$/OK.fbVrR/bpIqNJ5ianF."));
+        assertEquals("$2a$05$/OK.fbVrR/bpIqNJ5ianF.nqd1wy.pTMdcvrRWxyiGL2eMz.2a85.",
+                BCrypt.hashpw(new byte[]{(byte) 0xff, (byte) 0xff, (byte) 0xa3}, "$2a$05$/OK.fbVrR/bpIqNJ5ianF."));
+    }
+
+    @Test
+    void checkpw() {
+        String hash = BCrypt.hashpw("rahasia", BCrypt.gensalt(4));
+        assertTrue(BCrypt.checkpw("rahasia", hash));
+        assertFalse(BCrypt.checkpw("rahasib", hash));
+        assertFalse(BCrypt.checkpw("rahasia", hash.substring(0, 59)));
+        assertFalse(BCrypt.checkpw("rahasia", hash + "x"));
+
+        // cost 00 hanya diterima saat verifikasi
+        String zero = "$2a$00$" + hash.substring(7, 29);
+        String legacyHash = LegacyBCrypt.hashpw(new byte[0], "$2a$04$" + hash.substring(7, 29));
+        assertThrows(IllegalArgumentException.class, () -> BCrypt.hashpw("rahasia", zero));
+        assertFalse(BCrypt.checkpw("rahasia", zero + legacyHash.substring(29)));
+        for (String prefix : PREFIXES) {
+            String salt = salt(prefix, 4).replace("$04$", "$00$");
+            byte[] password = password(10, true);
+            assertEquals(LegacyBCrypt.checkpw(password, salt), BCrypt.checkpw(password, salt));
+        }
+    }
+
+    @Test
+    void sameErrorsAsLegacy() {
+        String salt = BCrypt.gensalt(4);
+        List<String> salts = List.of("", "$2a$04$short", "$3a$04$" + salt.substring(7), "$2c$04$" + salt.substring(7),
+                "$2a$4$$" + salt.substring(7), "$2a$03$" + salt.substring(7), "$2a$32$" + salt.substring(7),
+                "$2a$04$" + "!".repeat(22));
+        for (String invalid : salts) {
+            IllegalArgumentException expected = assertThrows(IllegalArgumentException.class,
+                    () -> LegacyBCrypt.hashpw("rahasia", invalid));
+            IllegalArgumentException actual = assertThrows(IllegalArgumentException.class,
+                    () -> BCrypt.hashpw("rahasia", invalid));
+            assertEquals(expected.getClass(), actual.getClass(), invalid);
+            // pesan NumberFormatException dari Integer.parseInt berbeda untuk substring dan range
+            if (!(expected instanceof NumberFormatException)) {
+                assertEquals(expected.getMessage(), actual.getMessage(), invalid);
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> BCrypt.hashpw(new byte[73], salt));
+    }
+
+    @Test
+    void concurrentHashes() throws Exception {
+        // state dipakai ulang per thread, hash di thread lain tidak boleh saling mengganggu
+        List<byte[]> passwords = new ArrayList<>();
+        List<String> salts = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            passwords.add(password(random.nextInt(1, 73), true));
+            salts.add(salt(PREFIXES[i % PREFIXES.length], 4));
+        }
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < passwords.size(); i++) {
+                byte[] password = passwords.get(i);
+                String salt = salts.get(i);
+                futures.add(executor.submit(() -> BCrypt.hashpw(password, salt)));
+            }
+            for (int i = 0; i < passwords.size(); i++) {
+                assertEquals(LegacyBCrypt.hashpw(passwords.get(i), salts.get(i)), futures.get(i).get());
+            }
+        }
+    }
+
+    @Test
+    void stateClearedAfterHash() throws Exception {
+        String hash = BCrypt.hashpw("rahasia", BCrypt.gensalt(4));
+        assertState();
+        assertTrue(BCrypt.checkpw("rahasia", hash));
+        assertState();
+        assertThrows(IllegalArgumentException.class, () -> BCrypt.hashpw("rahasia", "$2a$03$" + hash.substring(7)));
+        assertState();
+    }
+
+    // password (key, keyWords) dan hasil (out) tidak tertinggal di state milik thread
+    private void assertState() throws ReflectiveOperationException {
+        Field stateField = BCrypt.class.getDeclaredField("STATE");
+        stateField.setAccessible(true);
+        Object state = ((ThreadLocal<?>) stateField.get(null)).get();
+        for (String name : List.of("key", "keyWords", "out")) {
+            Field field = BCrypt.class.getDeclaredField(name);
+            field.setAccessible(true);
+            Object array = field.get(state);
+            for (int i = 0; i < Array.getLength(array); i++) {
+                Object value = Array.get(array, i);
+                int number = value instanceof Character c ? c : ((Number) value).intValue();
+                assertEquals(0, number, name);
+            }
+        }
+    }
+
+    private byte[] password(int length, boolean highBytes) {
+        byte[] password = new byte[length];
+        for (int i = 0; i < length; i++) {
+            password[i] = (byte) (highBytes ? random.nextInt(1, 256) : random.nextInt(0x20, 0x7f));
+        }
+        return password;
+    }
+
+    private String salt(String prefix, int cost) {
+        String salt = BCrypt.gensalt("$2a", cost);
+        return prefix + salt.substring(3);
+    }
+}